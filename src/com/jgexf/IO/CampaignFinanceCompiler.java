@@ -5,19 +5,37 @@
 package com.jgexf.IO;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.text.DateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.jgexf.gexf.GraphAttribute;
 import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphData;
 import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
 import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSchema;
+import com.jgexf.gexf.GraphTime;
+import com.jgexf.gexf.util.TimeCodec;
 
 /**
  * @author bskarin
@@ -30,6 +48,33 @@ public class CampaignFinanceCompiler extends SocialNetworkCompiler {
 	 */
 	private static String paramFile = "parameters.gexf";
 	
+	/**
+	 * Contributor node attribute columns:
+	 * 0-electioncycle,1-contributorstate,4-amount,11-zip,16-gender,17-employer
+	 */
+	private static final int[] CONTRIBUTOR_COLUMNS = {0, 1, 4, 11, 16, 17};
+	
+	/**
+	 * Self financed contributor node attribute columns, adding 3-recipientparty
+	 */
+	private static final int[] SELF_FINANCE_COLUMNS = {0, 1, 3, 4, 11, 16, 17};
+	
+	/**
+	 * Recipient node attribute columns:
+	 * 0-electioncycle,2-recipientstate,3-recipientparty,4-amount
+	 */
+	private static final int[] RECIPIENT_COLUMNS = {0, 2, 3, 4};
+	
+	/**
+	 * Edge attribute columns: 3-recipientparty, 4-contribution
+	 */
+	private static final int[] EDGE_COLUMNS = {3, 4};
+	
+	/**
+	 * Bytes of input per range when reading in parallel
+	 */
+	private static final int CHUNK_SIZE = 4 << 20;
+	
 	/* (non-Javadoc)
 	 * @see com.jgexf.IO.SocialNetworkCompiler#init()
 	 */
@@ -44,6 +89,11 @@ public class CampaignFinanceCompiler extends SocialNetworkCompiler {
 	 */
 	@Override
 	public void buildGraphFromFile(String filePath) {
+		//Incremental output and external builds depend on the records arriving in order
+		if(ingestPool != null && externalMemoryBudget <= 0 && !incrementalOutput){
+			buildGraphInParallel(filePath, ingestPool);
+			return;
+		}
 		FileInputStream inputFile = null;
 		try 
 		{
@@ -54,10 +104,23 @@ public class CampaignFinanceCompiler extends SocialNetworkCompiler {
 		//Skip the header
 		br.readLine();
 				
-		DateFormat formatter = NetworkInterface.dateFormat;
-		Calendar c = Calendar.getInstance();
+		//Resolve the attribute fed by each column once rather than per row
+		RecordBuilder records = new RecordBuilder(nodeAttributes.getSchema(), edgeAttributes.getSchema());
+		
+		//When writing incrementally, find the last line referencing each node and edge (one entry per id)
+		Map<String, Integer> lastNodeLine = null;
+		Map<String, Integer> lastEdgeLine = null;
+		if(externalMemoryBudget > 0){
+			networkInterface.startExternalBuild(externalMemoryBudget, null);
+		}
+		else if(incrementalOutput){
+			lastNodeLine = new HashMap<String, Integer>();
+			lastEdgeLine = new HashMap<String, Integer>();
+			scanLastReferences(filePath, lastNodeLine, lastEdgeLine);
+			networkInterface.startIncrementalOutput();
+		}
+		
 		String line = "";
-		String format = "datetime";
 		int lineNumber = 1;
 		//For each line/record add the node and edge data
 		while((line = br.readLine()) != null){
@@ -67,6 +130,292 @@ public class CampaignFinanceCompiler extends SocialNetworkCompiler {
 			String[] splitLine = line.split("\\|");
 			
 			//Set candidate id
+			Contributor contributor = new Contributor(splitLine);
+			String cid = contributor.id;
+			Record record = records.build(splitLine, contributor);
+			
+			//Check date cutoff
+			if(record != null){
+				networkInterface.updateNode(record.contributor);
+				networkInterface.updateNode(record.recipient);
+				networkInterface.addEdge(record.edge);
+			}
+			//Provide a warning if there is a problem with the date
+			else{
+				warnDate(lineNumber, splitLine[10]);
+			}
+			//Write out what no later line will update
+			if(lastNodeLine != null){
+				String rid = splitLine[18].trim();
+				String id = cid + "-" + rid;
+				if(isLastReference(lastEdgeLine, id, lineNumber)){
+					networkInterface.finalizeEdge(id);
+				}
+				if(isLastReference(lastNodeLine, cid, lineNumber)){
+					networkInterface.finalizeNode(cid);
+				}
+				if(isLastReference(lastNodeLine, rid, lineNumber)){
+					networkInterface.finalizeNode(rid);
+				}
+			}
+			int mod = lineNumber % 10000;
+			if(mod == 0){
+				System.out.println("Completed line: " + lineNumber);
+			}
+		}//end while lines
+		br.close();
+		}//end try
+		catch (FileNotFoundException e)
+		{
+			e.printStackTrace();
+		} 
+		catch (OutOfMemoryError e)
+		{
+			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			if(inputFile != null)
+				try {
+					inputFile.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+		}
+	}
+
+	/**
+	 * Build the graph from byte ranges of the file read on a pool, with the same result as reading
+	 * it on one thread: each range is split into records on a worker, which builds their nodes and
+	 * edges and routes them by id partition. Ranges are then folded, in file order, into one running
+	 * aggregate per partition, every partition on its own worker, while later ranges are still being
+	 * parsed. Finally the partitions are interleaved back into order of first occurrence and handed
+	 * to the network interface.
+	 * @param filePath
+	 * @param pool
+	 */
+	private void buildGraphInParallel(String filePath, ForkJoinPool pool) {
+		RandomAccessFile inputFile = null;
+		try
+		{
+		inputFile = new RandomAccessFile(filePath, "r");
+		FileChannel channel = inputFile.getChannel();
+		long length = channel.size();
+		RecordBuilder records = new RecordBuilder(nodeAttributes.getSchema(), edgeAttributes.getSchema());
+		int partitions = pool.getParallelism();
+		Aggregate[] nodes = new Aggregate[partitions];
+		Aggregate[] edges = new Aggregate[partitions];
+		for(int p = 0; p < partitions; p++){
+			nodes[p] = new Aggregate();
+			edges[p] = new Aggregate();
+		}
+		
+		//Skip the header
+		long position = nextLine(channel, 0);
+		int chunkIndex = 0;
+		int lineNumber = 1;
+		Deque<Future<Chunk>> window = new ArrayDeque<Future<Chunk>>();
+		List<Future<?>> folds = new ArrayList<Future<?>>(partitions);
+		try {
+			while(position < length || !window.isEmpty()){
+				//Keep a couple of ranges per worker in flight
+				while(position < length && window.size() < 2 * partitions){
+					long end = nextLine(channel, position + CHUNK_SIZE);
+					window.add(pool.submit(new ChunkTask(channel, position, end, chunkIndex++, records, partitions)));
+					position = end;
+				}
+				Chunk chunk = window.poll().get();
+				
+				//Report the range's lines as if read one by one
+				int warning = 0;
+				for(int line = 1; line <= chunk.lines; line++){
+					lineNumber++;
+					if(warning < chunk.warningLines.size() && chunk.warningLines.get(warning) == line){
+						warnDate(lineNumber, chunk.warningStarts.get(warning++));
+					}
+					if(lineNumber % 10000 == 0){
+						System.out.println("Completed line: " + lineNumber);
+					}
+				}
+				
+				//Partitions are independent, so fold them concurrently
+				folds.clear();
+				for(int p = 0; p < partitions; p++){
+					folds.add(pool.submit(new FoldTask(nodes[p], chunk.nodes[p], edges[p], chunk.edges[p])));
+				}
+				for(Future<?> fold : folds){
+					fold.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading " + filePath, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Failed to read " + filePath, cause);
+		} finally {
+			for(Future<Chunk> future : window){
+				future.cancel(false);
+			}
+		}
+		
+		for(GraphElement node : interleave(nodes)){
+			networkInterface.updateNode((GraphNode) node);
+		}
+		for(GraphElement edge : interleave(edges)){
+			networkInterface.addEdge((GraphEdge) edge);
+		}
+		}//end try
+		catch (FileNotFoundException e)
+		{
+			e.printStackTrace();
+		} 
+		catch (OutOfMemoryError e)
+		{
+			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			if(inputFile != null)
+				try {
+					inputFile.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+		}
+	}
+	
+	/**
+	 * @param channel
+	 * @param from
+	 * @return the offset following the first line break at or after from, or the end of the file
+	 * @throws IOException
+	 */
+	private static long nextLine(FileChannel channel, long from) throws IOException {
+		long length = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = from;
+		while(position < length){
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if(read < 0){
+				break;
+			}
+			for(int i = 0; i < read; i++){
+				if(buffer.get(i) == '\n'){
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return length;
+	}
+	
+	/**
+	 * Merge the partitions' elements back into order of first occurrence.
+	 */
+	private static List<GraphElement> interleave(Aggregate[] partitions){
+		int total = 0;
+		PriorityQueue<Aggregate> queue = new PriorityQueue<Aggregate>(partitions.length);
+		for(Aggregate partition : partitions){
+			total += partition.elements.size();
+			if(!partition.elements.isEmpty()){
+				queue.add(partition);
+			}
+		}
+		List<GraphElement> elements = new ArrayList<GraphElement>(total);
+		while(!queue.isEmpty()){
+			Aggregate partition = queue.poll();
+			elements.add(partition.elements.get(partition.next++));
+			if(partition.next < partition.elements.size()){
+				queue.add(partition);
+			}
+		}
+		return elements;
+	}
+	
+	/**
+	 * Warn that a record was left out of the graph.
+	 */
+	private static void warnDate(int lineNumber, String start){
+		System.out.println("Warning, line number: " + lineNumber + " was not added because date: " + start + " was null or outside of the reporting cycle." );
+	}
+
+	/**
+	 * Read the records once without building anything, noting the last line on which each
+	 * node and edge id appears (line numbers as in {@link #buildGraphFromFile(String)}).
+	 * <p>
+	 * Incremental output finalizes by these last references, not by an ingestion clock: contributor,
+	 * recipient and edge ids do not carry their cycle and can recur at any date, so no time proves an
+	 * element done. The mode therefore makes no claim to bound memory by an active window: the input
+	 * is read twice, the maps hold an entry per id not yet finalized, and an element stays in memory
+	 * from its first line to its last, so peak memory is still O(#ids).
+	 * </p>
+	 * @param filePath
+	 * @param lastNodeLine filled with node id to last line
+	 * @param lastEdgeLine filled with edge id to last line
+	 * @throws IOException
+	 */
+	private static void scanLastReferences(String filePath, Map<String, Integer> lastNodeLine,
+			Map<String, Integer> lastEdgeLine) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(filePath))));
+		try {
+			//Skip the header
+			br.readLine();
+			String line;
+			int lineNumber = 1;
+			while((line = br.readLine()) != null){
+				lineNumber++;
+				String[] splitLine = line.split("\\|");
+				String cid = new Contributor(splitLine).id;
+				String rid = splitLine[18].trim();
+				Integer last = Integer.valueOf(lineNumber);
+				lastNodeLine.put(cid, last);
+				lastNodeLine.put(rid, last);
+				lastEdgeLine.put(cid + "-" + rid, last);
+			}
+		} finally {
+			br.close();
+		}
+	}
+	
+	/**
+	 * @return true, removing the entry, if the id is last referenced on the given line
+	 */
+	private static boolean isLastReference(Map<String, Integer> lastLine, String id, int lineNumber){
+		Integer last = lastLine.get(id);
+		if(last == null || last.intValue() != lineNumber){
+			return false;
+		}
+		lastLine.remove(id);
+		return true;
+	}
+	
+	/**
+	 * The contributor named by a record: the candidate id, or for self financing (transaction
+	 * code 15C) the recipient's id, joined with the label.
+	 */
+	private static final class Contributor {
+		final String id;
+		final String label;
+		final boolean selfFinance;
+		
+		Contributor(String[] splitLine){
 			String cid = splitLine[6].trim();
 			String label = splitLine[7].trim();
 			boolean selfFinance = false;
@@ -82,187 +431,335 @@ public class CampaignFinanceCompiler extends SocialNetworkCompiler {
 				}
 				else cid = "na";
 			}
-			cid = cid + "_" + label;
+			this.id = cid + "_" + label;
+			this.label = label;
+			this.selfFinance = selfFinance;
+		}
+	}
+	
+	/**
+	 * The contributor node, recipient node and edge built from a record.
+	 */
+	private static final class Record {
+		final GraphNode contributor;
+		final GraphNode recipient;
+		final GraphEdge edge;
+		
+		Record(GraphNode contributor, GraphNode recipient, GraphEdge edge){
+			this.contributor = contributor;
+			this.recipient = recipient;
+			this.edge = edge;
+		}
+	}
+	
+	/**
+	 * Builds the elements of a record, with the attribute fed by each column resolved up front.
+	 * Holds no per-record state, so one instance can be shared by the workers.
+	 */
+	private static final class RecordBuilder {
+		private static final String FORMAT = "datetime";
+		private final TimeCodec codec = GraphTime.getTimeCodec();
+		private final String[] contributorIDs = columnIDs("n", CONTRIBUTOR_COLUMNS);
+		private final String[] selfFinanceIDs = columnIDs("n", SELF_FINANCE_COLUMNS);
+		private final String[] recipientIDs = columnIDs("n", RECIPIENT_COLUMNS);
+		private final String[] edgeIDs = columnIDs("e", EDGE_COLUMNS);
+		private final GraphAttribute[] contributorAtts;
+		private final GraphAttribute[] selfFinanceAtts;
+		private final GraphAttribute[] recipientAtts;
+		private final GraphAttribute[] edgeAtts;
+		private final GraphAttribute nodeCountAtt;
+		private final GraphAttribute edgeCountAtt;
+		
+		RecordBuilder(GraphSchema nodeSchema, GraphSchema edgeSchema){
+			contributorAtts = columnAttributes(nodeSchema, contributorIDs);
+			selfFinanceAtts = columnAttributes(nodeSchema, selfFinanceIDs);
+			recipientAtts = columnAttributes(nodeSchema, recipientIDs);
+			edgeAtts = columnAttributes(edgeSchema, edgeIDs);
+			nodeCountAtt = nodeSchema.getAttributeByID("total count");
+			edgeCountAtt = edgeSchema.getAttributeByID("count");
+		}
+		
+		/**
+		 * @param splitLine record columns
+		 * @param contributor
+		 * @return the record's elements, null if its date is unreadable or outside of the reporting cycle
+		 */
+		Record build(String[] splitLine, Contributor contributor){
+			String format = FORMAT;
+			String cid = contributor.id;
 			String start = splitLine[10];
 			int cycle = Integer.parseInt(splitLine[0]);
 			//Only load records that are within the cycle
 			String cycleStart = (cycle - 2) + "-01-01 00:00:00";
 			String cycleEnd = (cycle + 1) + "-01-01 00:00:00";
-			Date dateTime = null;
-			Date dateStart = null;
-			Date dateEnd = null;
-			boolean dateOkay = true;
+			long dateTime = 0;
+			long dateStart = 0;
+			long dateEnd = 0;
 			try{
-				dateTime = formatter.parse(start);
-				dateStart = formatter.parse(cycleStart);
-				dateEnd = formatter.parse(cycleEnd);
-				c.setTime(dateTime);
+				dateTime = codec.parse(start);
+				dateStart = codec.parse(cycleStart);
+				dateEnd = codec.parse(cycleEnd);
 			}
-			catch(Exception e){
-				dateOkay = false;
+			catch(DateTimeParseException e){
 				e.printStackTrace();
+				return null;
 			}
-			//If parsing is fine check cutoff dates
-			if(dateOkay){
-				if(dateTime.before(dateStart) || dateTime.after(dateEnd)){
-					dateOkay = false;
-				}
+			//Check cutoff dates
+			if(dateTime < dateStart || dateTime > dateEnd){
+				return null;
 			}
 			
-			//Check date cutoff
-			if(dateOkay){
-				c.add(Calendar.DATE, 30); //add 30 days to serve as the life of the contribution
-				String end = formatter.format(c.getTime());
-				
-				//Do contributor node
-				GraphNode gn = new GraphNode(cid, label, start, end, format);		
-					
-				//Now write attributes
-				int col = 0;
-				for(String val : splitLine){
-					boolean isAttribute = false;
-					//0-electioncycle,1-contributorstate,4-amount
-					//11-zip,12-recip_code,16-gender,17-employer
-					switch(col){
-						case 0: case 1: case 4: case 11: case 16: case 17:
-							isAttribute = true;
-							break; 
-					}
-					if(col== 3 && selfFinance){
-						isAttribute = true;
-					}
-					if(isAttribute){
-						String aid = "n" + col;
-						val = val.trim();
-						if(val.isEmpty()){
-							val = "na";
-						}
-						GraphAttributeValue gav = new GraphAttributeValue(aid, val, start, end, format);
-						GraphAttribute ga = nodeAttributes.getAttributeByID(aid);
-						gav.setGraphAttribute(ga);
-						gn.addAttribute(gav);
-					}
-					col++;
-				}
-				//Add count attribute
-				String aID = "total count";
-				GraphAttributeValue gav = new GraphAttributeValue(aID, "1", start, end, format);
-				GraphAttribute ga = nodeAttributes.getAttributeByID(aID);
-				gav.setGraphAttribute(ga);
-				gn.addAttribute(gav);
-				
-				networkInterface.updateNode(gn);
-				
-				//Do recipient node
-				String rid = splitLine[18].trim();
-				label = splitLine[18].trim();
-				gn = new GraphNode(rid, label, start, end, format);		
-					
-				//write attributes
-				col = 0;
-				for(String val : splitLine){
-					boolean isAttribute = false;
-					switch(col){
-					//0-electioncycle,2-recipientstate,3-recipientparty,4-amount
-						case 0: case 2: case 3: case 4:
-							isAttribute = true;
-							break; 
-					}
-					if(isAttribute){
-						String aid = "n" + col;
-						val = val.trim();
-						if(val.isEmpty()){
-							val = "na";
-						}
-						gav = new GraphAttributeValue(aid, val, start, end, format);
-						ga = nodeAttributes.getAttributeByID(aid);
-						gav.setGraphAttribute(ga);
-						gn.addAttribute(gav);
-					}
-					col++;
-				}
-				//Add count attribute
-				aID = "total count";
-				gav = new GraphAttributeValue(aID, "1", start, end, format);
-				ga = nodeAttributes.getAttributeByID(aID);
-				gav.setGraphAttribute(ga);
-				gn.addAttribute(gav);
-				
-				networkInterface.updateNode(gn);
-				
-				//Do edges
-				String source = cid;
-				String target = rid;
-				String id = source + "-" + target;
-				
-				GraphEdge ge = new GraphEdge(id, source, target, start, end, format);
-				
-				col = 0;
-				for(String val : splitLine){
-					boolean isAttribute = false;
-					switch(col){
-						//3-recipientparty, 4-contribution
-						case 3: case 4:
-							isAttribute = true;
-							break; 
-					}
-					if(isAttribute){
-						val = val.trim();
-						if(val.isEmpty()){
-							val = "na";
-						}
-						aID = "e" + col;
-						gav = new GraphAttributeValue(aID, val, start, end, format);
-						ga = edgeAttributes.getAttributeByID(aID);
-						gav.setGraphAttribute(ga);
-						ge.addAttribute(gav);
-					}
-					col++;
-				}//End for columns
-				
-				//Add count attribute
-				aID = "count";
-				gav = new GraphAttributeValue(aID, "1", start, end, format);
-				ga = edgeAttributes.getAttributeByID(aID);
-				gav.setGraphAttribute(ga);
-				ge.addAttribute(gav);
+			//add 30 days to serve as the life of the contribution
+			String end = codec.format(codec.plusDays(dateTime, 30));
+			
+			//Do contributor node
+			GraphNode contributorNode = new GraphNode(cid, contributor.label, start, end, format);
 				
-				//Set the weight
-				ge.setWeight(splitLine[4]);
+			//Now write attributes
+			if(contributor.selfFinance){
+				addColumnAttributes(contributorNode, splitLine, SELF_FINANCE_COLUMNS, selfFinanceIDs, selfFinanceAtts, start, end, format);
+			}
+			else{
+				addColumnAttributes(contributorNode, splitLine, CONTRIBUTOR_COLUMNS, contributorIDs, contributorAtts, start, end, format);
+			}
+			//Add count attribute
+			GraphAttributeValue gav = new GraphAttributeValue("total count", "1", start, end, format);
+			gav.setGraphAttribute(nodeCountAtt);
+			contributorNode.addAttribute(gav);
+			
+			//Do recipient node
+			String rid = splitLine[18].trim();
+			String label = splitLine[18].trim();
+			GraphNode recipientNode = new GraphNode(rid, label, start, end, format);
 				
-				networkInterface.addEdge(ge);
-			}//End if date okay
-			//Provide a warning if there is a problem with the date
+			//write attributes
+			addColumnAttributes(recipientNode, splitLine, RECIPIENT_COLUMNS, recipientIDs, recipientAtts, start, end, format);
+			//Add count attribute
+			gav = new GraphAttributeValue("total count", "1", start, end, format);
+			gav.setGraphAttribute(nodeCountAtt);
+			recipientNode.addAttribute(gav);
+			
+			//Do edges
+			String source = cid;
+			String target = rid;
+			String id = source + "-" + target;
+			
+			GraphEdge ge = new GraphEdge(id, source, target, start, end, format);
+			
+			addColumnAttributes(ge, splitLine, EDGE_COLUMNS, edgeIDs, edgeAtts, start, end, format);
+			
+			//Add count attribute
+			gav = new GraphAttributeValue("count", "1", start, end, format);
+			gav.setGraphAttribute(edgeCountAtt);
+			ge.addAttribute(gav);
+			
+			//Set the weight
+			ge.setWeight(splitLine[4]);
+			
+			return new Record(contributorNode, recipientNode, ge);
+		}
+	}
+	
+	/**
+	 * Elements with their positions in the file (range index in the high bits, place within the
+	 * range in the low bits), in increasing order.
+	 */
+	private static class Elements {
+		final List<GraphElement> elements = new ArrayList<GraphElement>();
+		final List<Long> order = new ArrayList<Long>();
+		
+		void add(GraphElement element, long position){
+			elements.add(element);
+			order.add(position);
+		}
+	}
+	
+	/**
+	 * Elements of one id partition folded by id, in order of first occurrence.
+	 */
+	private static final class Aggregate extends Elements implements Comparable<Aggregate> {
+		final Map<String, GraphElement> byId = new HashMap<String, GraphElement>();
+		int next = 0;
+		
+		/**
+		 * Fold an element in as {@link com.jgexf.gexf.GraphData#addOrAppendElement(GraphElement)} would.
+		 */
+		@Override
+		void add(GraphElement element, long position){
+			GraphElement existing = byId.get(element.getId());
+			if(existing == null){
+				byId.put(element.getId(), element);
+				super.add(element, position);
+			}
 			else{
-				System.out.println("Warning, line number: " + lineNumber + " was not added because date: " + start + " was null or outside of the reporting cycle." );
-			}		
-			int mod = lineNumber % 10000;
-			if(mod == 0){
-				System.out.println("Completed line: " + lineNumber);
+				GraphData.appendElement(existing, element);
 			}
-		}//end while lines
-		br.close();
-		}//end try
-		catch (FileNotFoundException e)
-		{
-			e.printStackTrace();
-		} 
-		catch (OutOfMemoryError e)
-		{
-			e.printStackTrace();
-		} catch (NumberFormatException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-		finally {
-			if(inputFile != null)
-				try {
-					inputFile.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+		
+		/**
+		 * Fold in later elements one at a time; appending is order sensitive (attribute values
+		 * merge by time), so partial aggregates could not be combined instead.
+		 */
+		void addAll(Elements later){
+			for(int i = 0; i < later.elements.size(); i++){
+				add(later.elements.get(i), later.order.get(i));
+			}
+		}
+		
+		@Override
+		public int compareTo(Aggregate other){
+			return Long.compare(order.get(next), other.order.get(other.next));
+		}
+	}
+	
+	/**
+	 * What a worker made of one byte range: its elements by partition and the lines left out.
+	 */
+	private static final class Chunk {
+		final Elements[] nodes;
+		final Elements[] edges;
+		int lines = 0;
+		final List<Integer> warningLines = new ArrayList<Integer>(); //line within the range
+		final List<String> warningStarts = new ArrayList<String>();
+		
+		Chunk(int partitions){
+			nodes = new Elements[partitions];
+			edges = new Elements[partitions];
+			for(int p = 0; p < partitions; p++){
+				nodes[p] = new Elements();
+				edges[p] = new Elements();
+			}
+		}
+	}
+	
+	/**
+	 * Reads one byte range of whole lines and builds its records.
+	 */
+	private static final class ChunkTask implements Callable<Chunk> {
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final long index;
+		private final RecordBuilder records;
+		private final int partitions;
+		
+		ChunkTask(FileChannel channel, long start, long end, int index, RecordBuilder records, int partitions){
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.index = index;
+			this.records = records;
+			this.partitions = partitions;
+		}
+		
+		@Override
+		public Chunk call() throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+			while(buffer.hasRemaining()){
+				if(channel.read(buffer, start + buffer.position()) < 0){
+					break;
 				}
+			}
+			BufferedReader br = new BufferedReader(new InputStreamReader(
+					new ByteArrayInputStream(buffer.array(), 0, buffer.position())));
+			Chunk chunk = new Chunk(partitions);
+			long base = index << 32;
+			String line;
+			while((line = br.readLine()) != null){
+				chunk.lines++;
+				String[] splitLine = line.split("\\|");
+				Record record = records.build(splitLine, new Contributor(splitLine));
+				if(record != null){
+					//Both nodes of a record come before the next record's
+					long position = base + 2L * chunk.lines;
+					chunk.nodes[partition(record.contributor)].add(record.contributor, position);
+					chunk.nodes[partition(record.recipient)].add(record.recipient, position + 1);
+					chunk.edges[partition(record.edge)].add(record.edge, base + chunk.lines);
+				}
+				else{
+					chunk.warningLines.add(chunk.lines);
+					chunk.warningStarts.add(splitLine[10]);
+				}
+			}
+			return chunk;
+		}
+		
+		private int partition(GraphElement element){
+			return Math.floorMod(element.getId().hashCode(), partitions);
+		}
+	}
+	
+	/**
+	 * Folds one range's share of a partition into the partition's running aggregate.
+	 */
+	private static final class FoldTask implements Runnable {
+		private final Aggregate nodes;
+		private final Elements chunkNodes;
+		private final Aggregate edges;
+		private final Elements chunkEdges;
+		
+		FoldTask(Aggregate nodes, Elements chunkNodes, Aggregate edges, Elements chunkEdges){
+			this.nodes = nodes;
+			this.chunkNodes = chunkNodes;
+			this.edges = edges;
+			this.chunkEdges = chunkEdges;
+		}
+		
+		@Override
+		public void run(){
+			nodes.addAll(chunkNodes);
+			edges.addAll(chunkEdges);
+		}
+	}
+
+	/**
+	 * Add an attribute value for each of the given columns of a record.
+	 * @param ge the node or edge
+	 * @param splitLine record columns
+	 * @param columns the columns to add
+	 * @param ids attribute id per entry in columns
+	 * @param attributes resolved attribute per entry in columns
+	 * @param start
+	 * @param end
+	 * @param format
+	 */
+	private static void addColumnAttributes(GraphElement ge, String[] splitLine, int[] columns,
+			String[] ids, GraphAttribute[] attributes, String start, String end, String format){
+		for(int i = 0; i < columns.length; i++){
+			String val = splitLine[columns[i]].trim();
+			if(val.isEmpty()){
+				val = "na";
+			}
+			GraphAttributeValue gav = new GraphAttributeValue(ids[i], val, start, end, format);
+			gav.setGraphAttribute(attributes[i]);
+			ge.addAttribute(gav);
+		}
+	}
+	
+	/**
+	 * @param prefix n (node) or e (edge)
+	 * @param columns
+	 * @return the attribute id for each column
+	 */
+	private static String[] columnIDs(String prefix, int[] columns){
+		String[] ids = new String[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			ids[i] = prefix + columns[i];
+		}
+		return ids;
+	}
+	
+	/**
+	 * @param schema
+	 * @param ids
+	 * @return the declared attribute for each id (null if not declared)
+	 */
+	private static GraphAttribute[] columnAttributes(GraphSchema schema, String[] ids){
+		GraphAttribute[] attributes = new GraphAttribute[ids.length];
+		for(int i = 0; i < ids.length; i++){
+			attributes[i] = schema.getAttributeByID(ids[i]);
 		}
+		return attributes;
 	}
 
 	/* (non-Javadoc)
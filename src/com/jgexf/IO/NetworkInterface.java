@@ -3,12 +3,15 @@ package com.jgexf.IO;
 import com.jgexf.gexf.GraphAttributeList;
 import com.jgexf.gexf.GraphData;
 import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
 import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphTime;
+import com.jgexf.gexf.util.ExternalGraphBuilder;
 import com.jgexf.gexf.util.GraphParser;
+import com.jgexf.gexf.util.IncrementalGraphWriter;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -40,10 +43,15 @@ public final class NetworkInterface {
 	private Date earliestDate;
 	
 	/**
-	 * The date format required by Gephi for parsing GEXF graph files.
+	 * Receives finalized elements while the graph is built, null unless incremental output was started
 	 */
-	public static DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
+	private IncrementalGraphWriter incrementalWriter;
+	
+	/**
+	 * Receives all elements when building out of core, null unless an external build was started
+	 */
+	private ExternalGraphBuilder externalBuilder;
+	
 	/**
 	 * Initializes a new graph
 	 * @param graphID the look-up key for the graph
@@ -74,7 +82,7 @@ public final class NetworkInterface {
 	 */
 	private void updateGraphStartTime(Date newStart) {
 		earliestDate = newStart;
-		String startup_time = dateFormat.format(earliestDate);
+		String startup_time = GraphTime.getTimeCodec().format(earliestDate.getTime());
 		graphData.setStartTime(startup_time);
 	}
 	
@@ -87,18 +95,14 @@ public final class NetworkInterface {
 	public boolean updateNode(GraphNode node) {
 		
 		//Check if the graph start time needs to be updated
-		String nodeTimeString = node.getStart();
-		Date nodeTime = null;
-		try {
-			nodeTime=dateFormat.parse(nodeTimeString);
-			if (nodeTime!=null && nodeTime.before(earliestDate)) {
-				
-				updateGraphStartTime(nodeTime);
-			}
-		} catch (ParseException e) {
-			e.printStackTrace();
+		if (node.hasStart() && node.getStartValue() < earliestDate.getTime()) {
+			
+			updateGraphStartTime(new Date((long) node.getStartValue()));
 		}
 		
+		if(externalBuilder != null) {
+			return addExternal(node);
+		}
 		graphData.addOrAppendElement(node);
 		return true;
 	}
@@ -151,9 +155,130 @@ public final class NetworkInterface {
 	 */
 	public boolean addEdge(GraphEdge edge) {	
 
-		
+		if(externalBuilder != null) {
+			//Self-loops are removed before writing, so they need not be kept
+			return !edge.getSource().equals(edge.getTarget()) && addExternal(edge);
+		}
 		graphData.addOrAppendElement(edge);
 		return true;
 	}
 	
+	/**
+	 * Start handing finalized elements to an {@link IncrementalGraphWriter} spooling to the system temporary directory.
+	 * @throws IOException if the spool files can't be created
+	 */
+	public void startIncrementalOutput() throws IOException {
+		startIncrementalOutput(null);
+	}
+	
+	/**
+	 * Start handing finalized elements to an {@link IncrementalGraphWriter}.
+	 * Elements passed to {@link #finalizeNode(String)} and {@link #finalizeEdge(String)} are written
+	 * out and removed from the graph, so they must not be updated again.
+	 * @param spoolDirectory where to keep the temporary sections, null for the system default
+	 * @throws IOException if the spool files can't be created
+	 */
+	public void startIncrementalOutput(File spoolDirectory) throws IOException {
+		if(incrementalWriter != null) {
+			incrementalWriter.close();
+		}
+		incrementalWriter = new IncrementalGraphWriter(spoolDirectory);
+	}
+	
+	/**
+	 * @return true if finalized elements are being written out during the build
+	 */
+	public boolean isIncremental() {
+		return incrementalWriter != null;
+	}
+	
+	/**
+	 * Write a node that will not be updated again and drop it from the graph.
+	 * @param nodeID
+	 * @return true if the node was written
+	 * @throws IOException
+	 */
+	public boolean finalizeNode(String nodeID) throws IOException {
+		GraphNode node = graphData.removeNode(nodeID);
+		if(node == null) {
+			return false;
+		}
+		incrementalWriter.writeNode(node);
+		return true;
+	}
+	
+	/**
+	 * Write an edge that will not be updated again and drop it from the graph.
+	 * Self-loops are dropped without being written.
+	 * @param edgeID
+	 * @return true if the edge was written
+	 * @throws IOException
+	 */
+	public boolean finalizeEdge(String edgeID) throws IOException {
+		GraphEdge edge = graphData.removeEdge(edgeID);
+		if(edge == null || edge.getSource().equals(edge.getTarget())) {
+			return false;
+		}
+		incrementalWriter.writeEdge(edge);
+		return true;
+	}
+	
+	/**
+	 * Write the complete graph: the finalized elements followed by those still held, without self-loops.
+	 * @param fileName the .gexf (or .gexf.gz) file
+	 * @throws IOException
+	 */
+	public void finishIncrementalOutput(String fileName) throws IOException {
+		for(GraphEdge edge : graphData.getEdgeList()) {
+			if(edge.getSource().equals(edge.getTarget())) {
+				graphData.removeEdge(edge.getId());
+			}
+		}
+		IncrementalGraphWriter writer = incrementalWriter;
+		incrementalWriter = null;
+		writer.finish(graphData, fileName);
+	}
+	
+	/**
+	 * Build the graph out of core: elements go to an {@link ExternalGraphBuilder} that spills sorted
+	 * runs to disk whenever its memory budget is reached, and {@link #getNode(String)} and
+	 * {@link #getEdge(String)} no longer find them. Self-loop edges are dropped.
+	 * @param memoryBudget estimated bytes of elements to hold before spilling
+	 * @param spoolDirectory where to keep the runs, null for the system default
+	 */
+	public void startExternalBuild(long memoryBudget, File spoolDirectory) {
+		if(externalBuilder != null) {
+			externalBuilder.close();
+		}
+		externalBuilder = new ExternalGraphBuilder(graphData, memoryBudget, spoolDirectory);
+	}
+	
+	/**
+	 * @return true if the graph is being built out of core
+	 */
+	public boolean isExternal() {
+		return externalBuilder != null;
+	}
+	
+	/**
+	 * Merge the out of core build and write it.
+	 * @param fileName the .gexf (or .gexf.gz) file
+	 * @throws IOException
+	 */
+	public void finishExternalBuild(String fileName) throws IOException {
+		ExternalGraphBuilder builder = externalBuilder;
+		externalBuilder = null;
+		builder.finish(fileName);
+	}
+	
+	private boolean addExternal(GraphElement element) {
+		try {
+			externalBuilder.addOrAppendElement(element);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
 }
@@ -1,15 +1,15 @@
 package com.jgexf.IO;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import com.jgexf.gexf.GraphEdge;
 import com.jgexf.gexf.GraphAttributeList;
 import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.util.GraphWriter;
 
 /**
  * A class for working with a variety of social network sources.
@@ -37,6 +37,26 @@ public abstract class SocialNetworkCompiler {
 	 */
 	public String outputFileName;
 	
+	/**
+	 * Write the graph as .gexf.gz instead of .gexf
+	 */
+	protected boolean compressOutput = false;
+	
+	/**
+	 * Write finalized elements out while the graph is built
+	 */
+	protected boolean incrementalOutput = false;
+	
+	/**
+	 * Estimated bytes of elements to hold before spilling to disk, 0 to build in memory
+	 */
+	protected long externalMemoryBudget = 0;
+	
+	/**
+	 * Pool reading the input in parallel, null to read it on one thread
+	 */
+	protected ForkJoinPool ingestPool = null;
+	
 	/**
 	 * The attributes for the node of the graph
 	 * 
@@ -68,6 +88,68 @@ public abstract class SocialNetworkCompiler {
 		this.outputFileName = outputFileName;
 	}
 
+	/**
+	 * @return true if the graph is written gzip compressed
+	 */
+	public boolean isCompressOutput() {
+		return compressOutput;
+	}
+
+	/**
+	 * @param compressOutput true to write the graph as .gexf.gz, compressed on the common pool
+	 */
+	public void setCompressOutput(boolean compressOutput) {
+		this.compressOutput = compressOutput;
+	}
+
+	/**
+	 * @return true if finalized elements are written out during the build
+	 */
+	public boolean isIncrementalOutput() {
+		return incrementalOutput;
+	}
+
+	/**
+	 * Must be set before the graph is built. JSON output is not available in this mode.
+	 * Elements are released once the compiler knows no later record refers to them; this is not a
+	 * bound on memory, which still grows with the number of distinct ids (see the compiler).
+	 * @param incrementalOutput true to write finalized elements out during the build
+	 */
+	public void setIncrementalOutput(boolean incrementalOutput) {
+		this.incrementalOutput = incrementalOutput;
+	}
+
+	/**
+	 * @return the memory budget of an out of core build, 0 if the graph is built in memory
+	 */
+	public long getExternalMemoryBudget() {
+		return externalMemoryBudget;
+	}
+
+	/**
+	 * Must be set before the graph is built. JSON output is not available in this mode.
+	 * @param externalMemoryBudget estimated bytes of elements to hold before spilling sorted runs to disk, 0 to build in memory
+	 */
+	public void setExternalMemoryBudget(long externalMemoryBudget) {
+		this.externalMemoryBudget = externalMemoryBudget;
+	}
+
+	/**
+	 * @return the pool reading the input in parallel, null if it is read on one thread
+	 */
+	public ForkJoinPool getIngestPool() {
+		return ingestPool;
+	}
+
+	/**
+	 * Must be set before the graph is built. Compilers that can't split their input, and builds
+	 * with incremental output or an external memory budget, read on one thread regardless.
+	 * @param ingestPool the pool reading the input in parallel, null to read it on one thread
+	 */
+	public void setIngestPool(ForkJoinPool ingestPool) {
+		this.ingestPool = ingestPool;
+	}
+
 	/**
 	 * The constructor will initialize a network interface instance, then initialize itself
 	 */
@@ -110,6 +192,24 @@ public abstract class SocialNetworkCompiler {
 	public void processAndWriteGraph(boolean json, String outputFile) 
 	{
 		setOutputFileName(outputFile);
+		if(networkInterface.isIncremental() || networkInterface.isExternal()) {
+			if(json) {
+				System.out.println("Warning, JSON output is not available when writing incrementally");
+			}
+			try {
+				String fileName = outputFileName + (compressOutput ? ".gexf.gz" : ".gexf");
+				if(networkInterface.isExternal()) {
+					networkInterface.finishExternalBuild(fileName);
+				}
+				else {
+					networkInterface.finishIncrementalOutput(fileName);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			System.out.println("Finished writing changes");
+			return;
+		}
 		GraphData graph = networkInterface.getGraph();
 		Map<String, GraphEdge> graphEdges = graph.getEdges();
 		
@@ -138,19 +238,15 @@ public abstract class SocialNetworkCompiler {
 	public void writeGraph(GraphData graph, boolean writeJson, String outGraph)
 	{
 		setOutputFileName(outGraph);
-		BufferedWriter out = null;
+		Writer out = null;
 		try {
-			out = new BufferedWriter(
-					new OutputStreamWriter(
-							new FileOutputStream(outputFileName + ".gexf"),"UTF8"));
+			out = GraphWriter.openWriter(outputFileName + (compressOutput ? ".gexf.gz" : ".gexf"), null);
 			graph.toXML(out);
 			out.close();
 
 			if(writeJson){
-				BufferedWriter outJson = new BufferedWriter(
-						new OutputStreamWriter(
-								new FileOutputStream(outputFileName + ".json"),"UTF8"));
-			
+				Writer outJson = GraphWriter.openWriter(outputFileName + ".json", null);
+
 				graph.toJSON(outJson);
 
 				outJson.close();
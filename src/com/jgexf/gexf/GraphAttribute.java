@@ -4,6 +4,10 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 /**
  * Instantiated from the parameters.gefx file, attributes define the id, title, type, and data mode
@@ -12,7 +16,7 @@ package com.jgexf.gexf;
  * @author bskarin
  *
  */
-public class GraphAttribute {
+public class GraphAttribute implements XMLWritable {
 	private String id;
 	private String title;
 	private String type; // GEXF permitted data types {integer, float, double, boolean, string}
@@ -22,6 +26,11 @@ public class GraphAttribute {
 	public static final String ADD = "add"; //Sum integer and double values for overlapping instances of the attribute, append strings
 	public static final String MERGE = "merge"; //Merge all instances of the attribute while preventing duplicate overlaps
 	public static final String TOTAL = "total"; //Sum integer and double values for all instances of the attribute, append strings
+	
+	/**
+	 * Bumped whenever any attribute's id or title changes, so cached lookups can tell they are stale
+	 */
+	private static final AtomicInteger RENAMES = new AtomicInteger();
 
 	public GraphAttribute() {
 		type = "string";
@@ -51,16 +60,23 @@ public class GraphAttribute {
 	 * @return XML string
 	 */
 	public String toXML() {
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("      <attribute id=\"");
-		buddy.append(id);
-		buddy.append("\" title=\"");
-		buddy.append(title);
-		buddy.append("\" type=\"");
-		buddy.append(type);
-		buddy.append("\">");
-		buddy.append("</attribute>\n");
-		return buddy.toString();
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write XML representation of {@link GraphAttribute} directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("      <attribute id=\"");
+		out.write(id);
+		out.write("\" title=\"");
+		out.write(title);
+		out.write("\" type=\"");
+		out.write(type);
+		out.write("\">");
+		out.write("</attribute>\n");
 	}
 	
 	/**
@@ -76,6 +92,7 @@ public class GraphAttribute {
 	 */
 	public void setId(String id) {
 		this.id = id;
+		RENAMES.incrementAndGet();
 	}
 
 	/**
@@ -91,6 +108,14 @@ public class GraphAttribute {
 	 */
 	public void setTitle(String title) {
 		this.title = title;
+		RENAMES.incrementAndGet();
+	}
+	
+	/**
+	 * @return a count that changes whenever any attribute's id or title is set
+	 */
+	static int getRenameCount() {
+		return RENAMES.get();
 	}
 
 	/**
@@ -108,6 +133,22 @@ public class GraphAttribute {
 		this.type = type;
 	}
 
+	/**
+	 * @return true if values of this attribute are numbers (integer, long, float, double)
+	 */
+	public boolean isNumeric() {
+		return isNumericType(type);
+	}
+	
+	/**
+	 * @param type GEXF data type
+	 * @return true if the type is a number (integer, long, float, double)
+	 */
+	public static boolean isNumericType(String type) {
+		return type != null && (type.startsWith("int") || type.equalsIgnoreCase("long")
+				|| type.equalsIgnoreCase("double") || type.equalsIgnoreCase("float"));
+	}
+
 	/**
 	 * @return the mode
 	 */
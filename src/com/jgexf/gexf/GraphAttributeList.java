@@ -4,7 +4,11 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.UnaryOperator;
 
 /**
  * 
@@ -13,7 +17,7 @@ import java.util.ArrayList;
  * @author bskarin
  *
  */
-public class GraphAttributeList extends ArrayList<GraphAttribute>{
+public class GraphAttributeList extends ArrayList<GraphAttribute> implements XMLWritable {
 
 	private static final long serialVersionUID = 7861489609367186110L;
 	
@@ -25,6 +29,10 @@ public class GraphAttributeList extends ArrayList<GraphAttribute>{
 	public static String STATIC = "static";
 	public static String DYNAMIC = "dynamic";
 	
+	private transient GraphSchema schema; //hashed snapshot, rebuilt when the list or an attribute's id/title changes
+	private transient int schemaModCount = -1;
+	private transient int schemaRenameCount = -1;
+	
 	public GraphAttributeList() {
 		
 	}
@@ -34,12 +42,7 @@ public class GraphAttributeList extends ArrayList<GraphAttribute>{
 	}
 	
 	public GraphAttribute getAttributeByID(String id){
-		for(GraphAttribute ga : this){
-			if(ga.getId().equals(id)){
-				return ga;
-			}
-		}
-		return null;
+		return getSchema().getAttributeByID(id);
 	}
 	/**
 	 * 
@@ -47,12 +50,43 @@ public class GraphAttributeList extends ArrayList<GraphAttribute>{
 	 * @return the GraphAttribute with the matching title
 	 */
 	public GraphAttribute getAttributeByTitle(String title){
-		for(GraphAttribute ga : this){
-			if(ga.getTitle().equals(title)){
-				return ga;
-			}
+		return getSchema().getAttributeByTitle(title);
+	}
+	
+	/**
+	 * Hashed, immutable snapshot of the list. A new snapshot is taken whenever the list is modified
+	 * or an attribute is renamed, so resolve attributes through a held schema in hot loops rather
+	 * than calling this per lookup.
+	 * @return the schema for the current contents
+	 */
+	public GraphSchema getSchema(){
+		int renames = GraphAttribute.getRenameCount();
+		if(schema == null || schemaModCount != modCount || schemaRenameCount != renames){
+			schema = new GraphSchema(attributeClass, this);
+			schemaModCount = modCount;
+			schemaRenameCount = renames;
 		}
-		return null;
+		return schema;
+	}
+	
+	//Replacing elements does not count as a modification of an ArrayList, so drop the schema here
+	
+	@Override
+	public GraphAttribute set(int index, GraphAttribute element) {
+		schema = null;
+		return super.set(index, element);
+	}
+	
+	@Override
+	public void replaceAll(UnaryOperator<GraphAttribute> operator) {
+		schema = null;
+		super.replaceAll(operator);
+	}
+	
+	@Override
+	public void sort(Comparator<? super GraphAttribute> c) {
+		schema = null;
+		super.sort(c);
 	}
 	
 	/**
@@ -60,17 +94,24 @@ public class GraphAttributeList extends ArrayList<GraphAttribute>{
 	 * @return the XML for the attribute list
 	 */
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("    <attributes class=\"");
-		buddy.append(attributeClass);
-		buddy.append("\" mode=\"");
-		buddy.append(mode);
-		buddy.append("\">\n");
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write the attribute list directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("    <attributes class=\"");
+		out.write(attributeClass);
+		out.write("\" mode=\"");
+		out.write(mode);
+		out.write("\">\n");
 		for(GraphAttribute ga : this){
-			buddy.append(ga.toXML());
+			ga.writeXML(out);
 		} 
-		buddy.append("    </attributes>\n");
-		return buddy.toString();
+		out.write("    </attributes>\n");
 	}
 	
 	/**
@@ -84,6 +125,7 @@ public class GraphAttributeList extends ArrayList<GraphAttribute>{
 	 */
 	public void setAttributeClass(String attributeClass) {
 		this.attributeClass = attributeClass;
+		schema = null;
 	}
 	/**
 	 * @return the mode
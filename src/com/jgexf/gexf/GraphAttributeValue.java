@@ -4,7 +4,12 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import com.jgexf.gexf.util.GraphWriter;
+import com.jgexf.gexf.util.JSONEscaper;
+import com.jgexf.gexf.util.XMLEscaper;
 
 /**
  * Object for storing the instance of a graph attribute.
@@ -13,9 +18,11 @@ import com.jgexf.gexf.util.GraphWriter;
  *
  */
 
-public class GraphAttributeValue extends GraphTime{
+public class GraphAttributeValue extends GraphTime implements XMLWritable {
 	private String id;
-	private String value;
+	private String value; //null while the value is held in the numeric accumulator
+	private double total; //running total for aggregated numeric values
+	private boolean accumulated; //true once the total is the authoritative value
 	
 	private GraphAttribute graphAttribute; //The parent attribute for the value
 	
@@ -23,8 +30,7 @@ public class GraphAttributeValue extends GraphTime{
 	 * Basic Graph Attribute Value constructor
 	 */
 	public GraphAttributeValue() {
-		setStart("");
-		setEnd("");
+		
 	}
 	/**
 	 * 
@@ -44,8 +50,8 @@ public class GraphAttributeValue extends GraphTime{
 	 */
 	public GraphAttributeValue(String id, String value, String start, String format) {
 		this(id, value);
-		setStart(start);
 		setFormat(format);
+		setStart(start);
 	}
 	/**
 	 * 
@@ -61,32 +67,31 @@ public class GraphAttributeValue extends GraphTime{
 	
 	@Override
 	public String toString() {
-		return "(id=" + id + ", title=" + graphAttribute.getTitle() + ", value=" + value + ")";
+		return "(id=" + id + ", title=" + graphAttribute.getTitle() + ", value=" + getValue() + ")";
 	}
 	
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append(new String("          <attvalue for=\""));
-		buddy.append(id);
-		buddy.append("\" value=\"");
-		String cleanValue = value;
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write the attribute value directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("          <attvalue for=\"");
+		out.write(id);
+		out.write("\" value=\"");
 		if (graphAttribute.getType().equals("string")) {
-			cleanValue = GraphWriter.cleanText(value);
-		}
-		buddy.append(cleanValue);
-		buddy.append("\"");
-		if(!getStart().isEmpty()){
-			buddy.append(" start=\"");
-			buddy.append(getStartXML());
-			buddy.append("\"");
+			XMLEscaper.write(out, getValue());
 		}
-		if(!getEnd().isEmpty()){
-			buddy.append(" end=\"");
-			buddy.append(getEndXML());
-			buddy.append("\"");
+		else {
+			out.write(String.valueOf(getValue())); //"null" when unset, as toXML has always written it
 		}
-		buddy.append("></attvalue>\n");
-		return buddy.toString();
+		out.write('"');
+		writeTimeXML(out);
+		out.write("></attvalue>\n");
 	}
 	
 	
@@ -101,18 +106,18 @@ public class GraphAttributeValue extends GraphTime{
 		buddy.append(new String(tab_spacing+"<attvalue for=\""));
 		buddy.append(id);
 		buddy.append("\" value=\"");
-		String cleanValue = value;
+		String cleanValue = getValue();
 		if (graphAttribute.getType().equals("string")) {
-			cleanValue = GraphWriter.cleanText(value);
+			cleanValue = GraphWriter.cleanText(cleanValue);
 		}
 		buddy.append(cleanValue);
 		buddy.append("\"");
-		if(!getStart().isEmpty()){
+		if(hasStart()){
 			buddy.append(" start=\"");
 			buddy.append(getStartXML());
 			buddy.append("\"");
 		}
-		if(!getEnd().isEmpty()){
+		if(hasEnd()){
 			buddy.append(" end=\"");
 			buddy.append(getEndXML());
 			buddy.append("\"");
@@ -124,13 +129,9 @@ public class GraphAttributeValue extends GraphTime{
 	public String toJSON(){
 		StringBuilder buddy = new StringBuilder();
 		buddy.append(new String("\""));
-		buddy.append(graphAttribute.getTitle());
+		buddy.append(JSONEscaper.escape(graphAttribute.getTitle()));
 		buddy.append("\":\"");
-		String cleanValue = value;
-		if (graphAttribute.getType().equals("string")) {
-			cleanValue = GraphWriter.cleanText(value);
-		} 
-		buddy.append(cleanValue);
+		buddy.append(JSONEscaper.escape(getValue()));
 		buddy.append("\"");
 
 		return buddy.toString();
@@ -153,6 +154,10 @@ public class GraphAttributeValue extends GraphTime{
 	 * @return the value
 	 */
 	public String getValue() {
+		//Render an accumulated total once; an unset value stays null
+		if(value == null && accumulated){
+			value = Double.toString(total);
+		}
 		return value;
 	}
 	
@@ -161,6 +166,9 @@ public class GraphAttributeValue extends GraphTime{
 	 * @return the value as a double
 	 */
 	public double getValueAsDouble(){
+		if(accumulated){
+			return total;
+		}
 		double val = 0;
 		try{
 			val = Double.parseDouble(value);
@@ -171,11 +179,44 @@ public class GraphAttributeValue extends GraphTime{
 		return val;
 	}
 	
+	/**
+	 * @return true if the value is held as a running numeric total
+	 */
+	public boolean isAccumulated() {
+		return accumulated;
+	}
+	
 	/**
 	 * @param value the value to set
 	 */
 	public void setValue(String value) {
 		this.value = value;
+		this.accumulated = false;
+	}
+	
+	/**
+	 * Set the value as a running numeric total, as if it had been accumulated by {@link #addToValue(double)}.
+	 * @param total
+	 */
+	public void setValueTotal(double total) {
+		this.total = total;
+		this.accumulated = true;
+		this.value = null;
+	}
+	
+	/**
+	 * Add to a numeric value without going through its text form.
+	 * The text is only rendered again when the value is read.
+	 * @param amount the amount to add
+	 * @throws NumberFormatException if the current value is not a number
+	 */
+	public void addToValue(double amount) {
+		if(!accumulated){
+			total = Double.parseDouble(value);
+			accumulated = true;
+		}
+		total += amount;
+		value = null;
 	}
 
 	/**
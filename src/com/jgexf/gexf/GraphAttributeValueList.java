@@ -4,16 +4,30 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * A list for storing the attribute values of a node or edge.
  * Ensures that attributes added do not produce any duplicate
  * instances for the same time period.
+ * <p>
+ * Values are kept in insertion order for output, and indexed per attribute id
+ * in a timeline ordered by start time, so resolving a new value only looks at
+ * values of the same attribute near its period. The index is rebuilt on demand
+ * if the list is modified other than through {@link #addGraphAttribute(GraphAttributeValue)}.
+ * Values sharing an id are expected to share their {@link GraphAttribute}, and values must not
+ * have their id or times changed while they are in the list.
+ * </p>
  * @author Bruce
  *
  */
-public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
+public class GraphAttributeValueList extends ArrayList<GraphAttributeValue> implements XMLWritable {
 
 	/**
 	 * 
@@ -21,6 +35,9 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 	private static final long serialVersionUID = -1251728200937571619L;
 	private boolean verbose = false;
 	
+	private transient HashMap<String, Timeline> timelines;
+	private transient int indexedModCount = -1;
+	
 	public GraphAttributeValueList() {
 		
 	}
@@ -30,56 +47,106 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 	 * @param gav
 	 */
 	public void addGraphAttribute(GraphAttributeValue gav){
+		Timeline timeline = getTimeline(gav.getId());
 		//Check for merge, aggregate, and duplicates
 		boolean noDuplicate = true;
-		for(GraphAttributeValue gav2 : this){
-			//Check for match
-			if(gav.getId().equals(gav2.getId())){
-				//Check for total, aggregate, or merge
-				if(gav2.getGraphAttribute() != null){
-					GraphAttribute ga = gav2.getGraphAttribute();
-					//If the type starts with 'a' then append or aggregate the result
-					String mode = ga.getDataMode();
-					String type = ga.getType();
-					if(mode.equalsIgnoreCase(GraphAttribute.TOTAL)){	
-						aggregateValue(gav2, gav, type);
-						noDuplicate = false;
-						break;
-					}
-					else if(mode.equalsIgnoreCase(GraphAttribute.ADD) && gav.overlaps(gav2)){
-						aggregateValue(gav2, gav, type);
-						noDuplicate = false;
-						break;
-					}
-					else if(mode.equalsIgnoreCase(GraphAttribute.MERGE)){
-						noDuplicate = mergeValue(gav2, gav);
-						//If merge action is completed, exit the loop, otherwise check other instances for a match
-						if(!noDuplicate){
-							break;
-						}
-					}
-					//Still check duplicate if it is a standard or not specified
-					else if(gav.getStart().equals(gav2.getStart())){
-						if(verbose)
-							System.out.println("Warning, attribute " + ga.getTitle() + " value: " + gav2.getValue() + " could not be added because it is at a duplicate time");
-						noDuplicate = false;
-						break;
+		if(timeline != null){
+			GraphAttribute ga = timeline.first.gav.getGraphAttribute();
+			//Check for total, aggregate, or merge
+			if(ga != null){
+				String mode = ga.getDataMode();
+				String type = ga.getType();
+				Entry match = null;
+				if(GraphAttribute.TOTAL.equalsIgnoreCase(mode)){
+					match = timeline.first;
+					aggregateValue(match.gav, gav, type);
+					timeline.update(match);
+					noDuplicate = false;
+				}
+				else if(GraphAttribute.ADD.equalsIgnoreCase(mode) && (match = timeline.findOverlap(gav, false)) != null){
+					aggregateValue(match.gav, gav, type);
+					timeline.update(match);
+					noDuplicate = false;
+				}
+				else if(GraphAttribute.MERGE.equalsIgnoreCase(mode)){
+					//If the new value is na it can be ignored, otherwise merge with the first overlapping value
+					match = (gav.getValue().equals("na") ? timeline.first : timeline.findOverlap(gav, true));
+					if(match != null){
+						noDuplicate = mergeValue(match.gav, gav);
+						timeline.update(match);
 					}
-				}//End if attribute
-				//Otherwise Check for duplicate
-				else if(gav.getStart().equals(gav2.getStart())){
+				}
+				//Still check duplicate if it is a standard or not specified
+				else if((match = timeline.findStart(gav)) != null){
 					if(verbose)
-						System.out.println("Warning, attribute value: " + gav2.getValue() + " could not be added because it is at a duplicate time");
+						System.out.println("Warning, attribute " + ga.getTitle() + " value: " + match.gav.getValue() + " could not be added because it is at a duplicate time");
+					noDuplicate = false;
+				}
+			}//End if attribute
+			//Otherwise Check for duplicate
+			else {
+				Entry match = timeline.findStart(gav);
+				if(match != null){
+					if(verbose)
+						System.out.println("Warning, attribute value: " + match.gav.getValue() + " could not be added because it is at a duplicate time");
 					noDuplicate = false;
-					break;
 				}
 			}
 		}
 		if(noDuplicate){
+			int seq = size();
 			this.add(gav);
+			if(timeline == null){
+				timeline = new Timeline();
+				timelines.put(gav.getId(), timeline);
+			}
+			timeline.insert(new Entry(gav, seq));
+			indexedModCount = modCount;
 		}
 	}
 	
+	//Replacing elements does not count as a modification of an ArrayList, so drop the index here
+	
+	@Override
+	public GraphAttributeValue set(int index, GraphAttributeValue element) {
+		timelines = null;
+		return super.set(index, element);
+	}
+	
+	@Override
+	public void replaceAll(UnaryOperator<GraphAttributeValue> operator) {
+		timelines = null;
+		super.replaceAll(operator);
+	}
+	
+	@Override
+	public void sort(Comparator<? super GraphAttributeValue> c) {
+		timelines = null;
+		super.sort(c);
+	}
+	
+	/**
+	 * Look up the timeline for an attribute id, rebuilding the index if the list was changed directly.
+	 * @param id
+	 * @return the timeline, or null if there are no values for the id
+	 */
+	private Timeline getTimeline(String id){
+		if(timelines == null || indexedModCount != modCount){
+			timelines = new HashMap<String, Timeline>();
+			for(int i = 0; i < size(); i++){
+				GraphAttributeValue gav = get(i);
+				Timeline timeline = timelines.get(gav.getId());
+				if(timeline == null){
+					timeline = new Timeline();
+					timelines.put(gav.getId(), timeline);
+				}
+				timeline.insert(new Entry(gav, i));
+			}
+			indexedModCount = modCount;
+		}
+		return timelines.get(id);
+	}
+	
 	/**
 	 * Aggregate numeric values of {@link GraphAttribute}s.
 	 * @param gav1
@@ -87,16 +154,13 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 	 * @param type
 	 */
 	public void aggregateValue(GraphAttributeValue gav1, GraphAttributeValue gav2, String type){
-		String newValue = gav1.getValue();
-		//if numeric, parse the value and add them
-		if(type.startsWith("int") || type.equalsIgnoreCase("double") || type.equalsIgnoreCase("float")){
-			double dValue = Double.parseDouble(gav1.getValue()) + Double.parseDouble(gav2.getValue());
-			newValue = "" + dValue;
+		//if numeric, add to the running total
+		if(GraphAttribute.isNumericType(type)){
+			gav1.addToValue(gav2.isAccumulated() ? gav2.getValueAsDouble() : Double.parseDouble(gav2.getValue()));
 		}
 		else{
-			newValue += ", " + gav2.getValue();
+			gav1.setValue(gav1.getValue() + ", " + gav2.getValue());
 		}
-		gav1.setValue(newValue);
 		//Update the time
 		gav1.updateGraphTime(gav2);
 	}
@@ -139,22 +203,25 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 	 * 			first {@link GraphAttributeValue} with matching id
 	 */
 	public GraphAttributeValue getGraphAttributeValueByID(String id){
-		for(GraphAttributeValue gav : this){
-			if(gav.getId().equals(id)){
-				return gav;
-			}
-		}
-		return null;
+		Timeline timeline = getTimeline(id);
+		return (timeline == null ? null : timeline.first.gav);
 	}
 		
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("        <attvalues>\n");
-		for(GraphAttributeValue gav : this){
-			buddy.append(gav.toXML());
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write the attribute values directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("        <attvalues>\n");
+		for(int i = 0; i < size(); i++){
+			get(i).writeXML(out);
 		}
-		buddy.append("        </attvalues>\n");
-		return buddy.toString();
+		out.write("        </attvalues>\n");
 	}
 
 	public String toXML(int depth){
@@ -173,6 +240,13 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 		return buddy.toString();
 	}
 	
+	@Override
+	public Object clone() {
+		GraphAttributeValueList temp = (GraphAttributeValueList) super.clone();
+		temp.timelines = null;
+		return temp;
+	}
+	
 	public void setVerbose(boolean verbose) {
 		this.verbose = verbose;
 	}
@@ -194,4 +268,130 @@ public class GraphAttributeValueList extends ArrayList<GraphAttributeValue>{
 		return buddy.toString();
 	}
 	
+	/**
+	 * A value and its position in the list.
+	 */
+	private static final class Entry {
+		final GraphAttributeValue gav;
+		final int seq;
+		
+		Entry(GraphAttributeValue gav, int seq) {
+			this.gav = gav;
+			this.seq = seq;
+		}
+	}
+	
+	/**
+	 * The values of one attribute ordered by start time. Values without an end are
+	 * also tracked separately since {@link GraphTime#checkOverlap(GraphTime)} treats
+	 * them as overlapping any later period.
+	 */
+	private static final class Timeline {
+		private final List<Entry> byStart = new ArrayList<Entry>();
+		private final List<Entry> open = new ArrayList<Entry>();
+		private double maxSpan = 0;
+		/** First value added, the one the unindexed scan would have hit first */
+		private Entry first;
+		
+		void insert(Entry entry) {
+			GraphAttributeValue gav = entry.gav;
+			byStart.add(lowerBound(gav.getStartValue()), entry);
+			if(!gav.hasEnd()){
+				open.add(entry);
+			}
+			else if(gav.getEndValue() - gav.getStartValue() > maxSpan){
+				maxSpan = gav.getEndValue() - gav.getStartValue();
+			}
+			if(first == null || entry.seq < first.seq){
+				first = entry;
+			}
+		}
+		
+		/**
+		 * Re-position a value whose period may have been extended.
+		 * @param entry
+		 */
+		void update(Entry entry) {
+			byStart.remove(indexOf(entry));
+			open.remove(entry);
+			insert(entry);
+		}
+		
+		/**
+		 * @param gav
+		 * @param closed use {@link GraphTime#checkOverlap(GraphTime)} rather than {@link GraphTime#overlaps(GraphTime)}
+		 * @return the earliest added value overlapping gav, or null
+		 */
+		Entry findOverlap(GraphAttributeValue gav, boolean closed) {
+			if(!gav.hasStart()){
+				return null;
+			}
+			double hi = gav.hasEnd() ? gav.getEndValue() : (closed ? Double.POSITIVE_INFINITY : gav.getStartValue());
+			Entry match = null;
+			for(int i = lowerBound(gav.getStartValue() - maxSpan); i < byStart.size(); i++){
+				Entry entry = byStart.get(i);
+				if(Double.compare(entry.gav.getStartValue(), hi) > 0){
+					break;
+				}
+				if((match == null || entry.seq < match.seq) && entry.gav.hasStart()
+						&& (closed ? entry.gav.checkOverlap(gav) : entry.gav.overlaps(gav))){
+					match = entry;
+				}
+			}
+			if(closed){
+				for(Entry entry : open){
+					if((match == null || entry.seq < match.seq) && entry.gav.hasStart() && entry.gav.checkOverlap(gav)){
+						match = entry;
+					}
+				}
+			}
+			return match;
+		}
+		
+		/**
+		 * @param gav
+		 * @return the earliest added value with the same start as gav, or null
+		 */
+		Entry findStart(GraphAttributeValue gav) {
+			Entry match = null;
+			for(int i = lowerBound(gav.getStartValue()); i < byStart.size(); i++){
+				Entry entry = byStart.get(i);
+				if(Double.compare(entry.gav.getStartValue(), gav.getStartValue()) != 0){
+					break;
+				}
+				if(match == null || entry.seq < match.seq){
+					match = entry;
+				}
+			}
+			return match;
+		}
+		
+		/**
+		 * @param start
+		 * @return index of the first value starting at or after start
+		 */
+		private int lowerBound(double start) {
+			int lo = 0, hi = byStart.size();
+			while(lo < hi){
+				int mid = (lo + hi) >>> 1;
+				if(Double.compare(byStart.get(mid).gav.getStartValue(), start) < 0){
+					lo = mid + 1;
+				}
+				else{
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+		
+		private int indexOf(Entry entry) {
+			for(int i = lowerBound(entry.gav.getStartValue()); i < byStart.size(); i++){
+				if(byStart.get(i) == entry){
+					return i;
+				}
+			}
+			//Start moved since insertion, fall back to a scan
+			return byStart.indexOf(entry);
+		}
+	}
 }
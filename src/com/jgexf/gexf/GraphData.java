@@ -12,10 +12,16 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.jgexf.gexf.util.GraphJSONWriter;
+import com.jgexf.gexf.util.ParallelWriter;
 
 /**
  * The root object for constructing gexf network graphs from
@@ -66,12 +72,53 @@ public class GraphData {
 		return null;
 	}
 	
+	/**
+	 * @param attributeClass node/edge
+	 * @return the attribute schema for the class, or null if no attributes are declared for it
+	 */
+	public GraphSchema getSchema(String attributeClass){
+		GraphAttributeList gal = getGraphAttributeListByClass(attributeClass);
+		return (gal == null ? null : gal.getSchema());
+	}
+	
 	/**
 	 * Write output to the given Writer 
 	 * @param out
 	 * @throws IOException 
 	 */
 	public void toXML(Writer out) throws IOException {
+		toXML(out, null);
+	}
+	
+	/**
+	 * Write output to the given Writer, rendering nodes and edges in chunks on the given pool.
+	 * The output is identical to {@link #toXML(Writer)}.
+	 * @param out
+	 * @param pool pool to render on, or null to write on the calling thread
+	 * @throws IOException 
+	 */
+	public void toXML(Writer out, ForkJoinPool pool) throws IOException {
+		writeXMLHeader(out);
+		
+		//write nodes, each streamed straight to the writer
+		writeXMLSectionStart(out, "nodes", nodes.size());
+		writeElementsXML(nodes.values(), out, pool);
+		writeXMLSectionEnd(out, "nodes");
+		
+		//write edges
+		writeXMLSectionStart(out, "edges", edges.size());
+		writeElementsXML(edges.values(), out, pool);
+		writeXMLSectionEnd(out, "edges");
+		writeXMLFooter(out);
+	}
+	
+	/**
+	 * Write the document up to the nodes section: declaration, graph element and attribute lists.
+	 * Used with the other writeXML* methods by writers that produce the element sections themselves.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXMLHeader(Writer out) throws IOException {
 		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
 		out.write("<gexf xmlns=\"http://www.gexf.net/1.3\" version=\"1.3\" xmlns:viz=\"http://www.gexf.net/1.3/viz\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://www.gexf.net/1.3 http://www.gexf.net/1.3/gexf.xsd\">\n");
 		out.write("<creator>jgexf</creator>\n");
@@ -92,58 +139,83 @@ public class GraphData {
 
 		//write attributes
 		for(GraphAttributeList ga : attributeLists){
-			out.write(ga.toXML());
-		}
-		
-		//write nodes
-		out.write("    <nodes count=\"" + nodes.size() + "\">\n"); // including the node/edge count saves on parser runtime
-		for(GraphNode gn : nodes.values()){
-			out.write(gn.toXML());
-		}
-		out.write("    </nodes>\n");
-		
-		//write edges
-		out.write("    <edges count=\"" + edges.size() + "\">\n");
-		for(GraphEdge ge : edges.values()){
-			out.write(ge.toXML());
+			ga.writeXML(out);
 		}
-		out.write("    </edges>\n");
+	}
+	
+	/**
+	 * Open the nodes or edges section.
+	 * @param out
+	 * @param section "nodes" or "edges"
+	 * @param count number of elements in the section
+	 * @throws IOException
+	 */
+	public static void writeXMLSectionStart(Writer out, String section, int count) throws IOException {
+		out.write("    <");
+		out.write(section);
+		out.write(" count=\""); // including the node/edge count saves on parser runtime
+		out.write(Integer.toString(count));
+		out.write("\">\n");
+	}
+	
+	/**
+	 * Close the nodes or edges section.
+	 * @param out
+	 * @param section "nodes" or "edges"
+	 * @throws IOException
+	 */
+	public static void writeXMLSectionEnd(Writer out, String section) throws IOException {
+		out.write("    </");
+		out.write(section);
+		out.write(">\n");
+	}
+	
+	/**
+	 * Close the graph and document.
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writeXMLFooter(Writer out) throws IOException {
 		out.write("  </graph>\n");
 		out.write("</gexf>");
 	}
 	
 	/**
-	 * Write output directly to given Writer 
+	 * Write elements in order, in parallel chunks if a pool is given and there is more than one chunk.
+	 * @param elements
 	 * @param out
-	 * @throws IOException 
+	 * @param pool
+	 * @throws IOException
 	 */
-	public void toJSON(Writer out) throws IOException {
-		out.write("{\"edges\":[");
-
-		
-		int edgeCounter = 0;
-		for(GraphEdge ge : edges.values()){
-			out.write(ge.toJSON());
-
-			edgeCounter++;
-			if (edgeCounter<edges.size()) {
-				out.write(",");
+	private static void writeElementsXML(Collection<? extends GraphElement> elements, Writer out, ForkJoinPool pool) throws IOException {
+		if(pool == null || elements.size() <= ParallelWriter.DEFAULT_CHUNK_SIZE){
+			for(GraphElement ge : elements){
+				ge.writeXML(out);
 			}
 		}
-		
-		out.write("],\"nodes\":[");
-		
-		int nodeCounter = 0;
+		else{
+			new ParallelWriter<GraphElement>(pool, ParallelWriter.DEFAULT_CHUNK_SIZE, XML_RENDERER).write(elements, out);
+		}
+	}
 	
-		for(GraphNode gn : nodes.values()){
-				out.write(gn.toJSON());
-				nodeCounter++;
-				if (nodeCounter<nodes.size()) {
-					out.write(",");
-				}
-		} 
-
-		out.write("]}");
+	/**
+	 * Renders an element's XML for {@link ParallelWriter}
+	 */
+	private static final ParallelWriter.Renderer<GraphElement> XML_RENDERER = new ParallelWriter.Renderer<GraphElement>() {
+		@Override
+		public void render(GraphElement item, Writer out) throws IOException {
+			item.writeXML(out);
+		}
+	};
+	
+	/**
+	 * Write output directly to given Writer in the {@link GraphJSONWriter.Layout#SIGMA} layout.
+	 * Use a {@link GraphJSONWriter} for the graphology/NDJSON layouts, spells or dynamic values.
+	 * @param out
+	 * @throws IOException 
+	 */
+	public void toJSON(Writer out) throws IOException {
+		new GraphJSONWriter().write(this, out);
 	}
 	
 	public boolean verifyTimeIntervals(){
@@ -177,22 +249,13 @@ public class GraphData {
 	}
 	
 	public String getNodeAttributeID(String name){
-		for(GraphAttribute ga : getAttributeLists().get(0)){
-			if(ga.getTitle().equals(name)){
-				return ga.getId();
-			}
-		}
-
-		return "NA";
+		GraphAttribute ga = getAttributeLists().get(0).getAttributeByTitle(name);
+		return (ga == null ? "NA" : ga.getId());
 	}
 	
 	public String getEdgeAttributeID(String name){
-		for(GraphAttribute ga : getAttributeLists().get(1)){
-			if(ga.getTitle().equals(name)){
-				return ga.getId();
-			}
-		}
-		return "NA";
+		GraphAttribute ga = getAttributeLists().get(1).getAttributeByTitle(name);
+		return (ga == null ? "NA" : ga.getId());
 	}
 	
 	/**
@@ -333,6 +396,13 @@ public class GraphData {
 		temp.putAll(nodes);
 		return temp;
 	}
+	/**
+	 * @return read-only view of the nodes in insertion order (live, not copied)
+	 */
+	public Collection<GraphNode> getNodeView() {
+		return Collections.unmodifiableCollection(nodes.values());
+	}
+	
 	public List<GraphNode> getNodeList() {
 		List<GraphNode> temp = new ArrayList<GraphNode>(nodes.values());
 		return temp;
@@ -389,6 +459,13 @@ public class GraphData {
 		return temp;
 	}
 	
+	/**
+	 * @return read-only view of the edges in insertion order (live, not copied)
+	 */
+	public Collection<GraphEdge> getEdgeView() {
+		return Collections.unmodifiableCollection(edges.values());
+	}
+	
 	public List<GraphEdge> getEdgeList() {
 		List<GraphEdge> temp = new ArrayList<GraphEdge>();
 		temp.addAll(edges.values());
@@ -412,6 +489,24 @@ public class GraphData {
 			edges.put(edgeId,graphEdge);
 	}
 
+	/**
+	 * Remove a node from the graph, e.g. once it has been written out.
+	 * @param nodeID
+	 * @return the node removed, or null if there was none
+	 */
+	public GraphNode removeNode(String nodeID) {
+		return nodes.remove(nodeID);
+	}
+	
+	/**
+	 * Remove an edge from the graph, e.g. once it has been written out.
+	 * @param edgeID
+	 * @return the edge removed, or null if there was none
+	 */
+	public GraphEdge removeEdge(String edgeID) {
+		return edges.remove(edgeID);
+	}
+
 	/**
 	 * Update existing instance of {@link GraphElement} or add if it doesn't exist.
 	 * @param newElement
@@ -420,19 +515,7 @@ public class GraphData {
 		Map<String, ? extends GraphElement> collection = (newElement instanceof GraphNode ? nodes : edges);
 		String elemId = newElement.getId();
 		if(collection.containsKey(elemId)) {
-			GraphElement oldElement = collection.get(elemId);
-			//Modify spell or add new spell and all other new attributes
-			GraphSpell gs = new GraphSpell(newElement.getStart(), newElement.getEnd(), getTimeFormat());
-			oldElement.addSpell(gs);
-			for(GraphAttributeValue gav : newElement.getAttributes()) {
-				oldElement.addAttribute(gav);
-			}
-			//If element is an edge, update the weight and messages
-			if(newElement instanceof GraphEdge) {
-				GraphEdge oldEdge = (GraphEdge)oldElement;
-				GraphEdge newEdge = (GraphEdge)newElement;
-				oldEdge.updateWeight(newEdge.getWeight());
-			}
+			appendElement(collection.get(elemId), newElement);
 		}
 		else {
 			if(newElement instanceof GraphNode)
@@ -442,6 +525,34 @@ public class GraphData {
 		}
 	}
 
+	/**
+	 * Fold a later occurrence of an element into an earlier one with the same id: its time as a spell,
+	 * its attribute values and, for edges, its weight. A new element that was itself aggregated
+	 * contributes each of its spells, so partial aggregates of the same element can be combined.
+	 * @param oldElement the element to update
+	 * @param newElement the later occurrence, not modified
+	 */
+	public static void appendElement(GraphElement oldElement, GraphElement newElement) {
+		//Modify spell or add new spell and all other new attributes
+		if(newElement.getSpellView().isEmpty()) {
+			oldElement.addSpell(new GraphSpell(newElement));
+		}
+		else {
+			for(GraphSpell gs : newElement.getSpells()) {
+				oldElement.addSpell(new GraphSpell(gs));
+			}
+		}
+		for(GraphAttributeValue gav : newElement.getAttributes()) {
+			oldElement.addAttribute(gav);
+		}
+		//If element is an edge, update the weight and messages
+		if(newElement instanceof GraphEdge) {
+			GraphEdge oldEdge = (GraphEdge)oldElement;
+			GraphEdge newEdge = (GraphEdge)newElement;
+			oldEdge.updateWeight(newEdge);
+		}
+	}
+
 	/**
 	 * Retrieve list of {@link GraphElement}s given the element class (node/edge).
 	 * @param elementClass
@@ -4,10 +4,12 @@
  */
 package com.jgexf.gexf;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
-import com.jgexf.gexf.util.GraphWriter;
+import com.jgexf.gexf.util.GraphJSONWriter;
+import com.jgexf.gexf.util.XMLEscaper;
 
 
 /**
@@ -22,7 +24,9 @@ public class GraphEdge extends GraphElement {
 	private GraphElement sourceNode = null;
 	private GraphElement targetNode = null;
 	
-	private String weight;
+	private String weight; //null while the weight is held in the numeric accumulator
+	private double weightTotal; //running total once weights have been added
+	private boolean weightAccumulated; //true once the total is the authoritative weight
 	
 	/**
 	 * Basic {@link GraphEdge} Constructor
@@ -61,8 +65,8 @@ public class GraphEdge extends GraphElement {
 	 */
 	public GraphEdge(String id, String source, String target, String start, String format){
 		this(id, source, target);
-		setStart(start);
 		setFormat(format);
+		setStart(start);
 	}
 	
 	/**
@@ -110,53 +114,45 @@ public class GraphEdge extends GraphElement {
 	 * Convert {@link GraphEdge} attributes to XML String.
 	 */
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("      <edge id=\"");
-		buddy.append(GraphWriter.cleanText(getId()));
-		buddy.append("\" source=\"");
-		buddy.append(GraphWriter.cleanText(source));
-		buddy.append("\" target=\"");
-		buddy.append(GraphWriter.cleanText(target));
-		buddy.append("\"");
-		if(!weight.isEmpty()){
-			buddy.append(" weight=\"" + weight + "\"");
-		}
-		buddy.append(super.toXML()); // GraphTime attributes
-		buddy.append(">\n");
-		if(!getSpells().isEmpty()){
-			buddy.append(getSpells().toXML());
-		}
-		if(!getAttributes().isEmpty()){
-			buddy.append(getAttributes().toXML());
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write {@link GraphEdge} XML representation directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	@Override
+	public void writeXML(Writer out) throws IOException {
+		out.write("      <edge id=\"");
+		XMLEscaper.write(out, getId());
+		out.write("\" source=\"");
+		XMLEscaper.write(out, source);
+		out.write("\" target=\"");
+		XMLEscaper.write(out, target);
+		out.write('"');
+		if(hasWeight()){
+			out.write(" weight=\"");
+			out.write(getWeight());
+			out.write('"');
 		}
-		buddy.append("      </edge>\n");
-		return buddy.toString();
+		writeTimeXML(out); // GraphTime attributes
+		out.write(">\n");
+		writeContentXML(out);
+		out.write("      </edge>\n");
 	}
 
+	/**
+	 * @return JSON representation in the {@link GraphJSONWriter.Layout#SIGMA} layout
+	 */
 	public String toJSON(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("{\"id\":\"");
-		buddy.append(getId());
-		buddy.append("\",\"source\":\"");
-		buddy.append(source);
-		buddy.append("\",\"target\":\"");
-		buddy.append(target);
-		buddy.append("\"");
-		if(!weight.isEmpty()){
-			buddy.append(" ,\"attributes\":{\"Weight\":\"" + weight + "\"}");
+		StringWriter out = new StringWriter();
+		try {
+			new GraphJSONWriter().writeEdge(this, out);
+		} catch (IOException e) {
+			e.printStackTrace(); //not thrown by StringWriter
 		}
-		
-		buddy.append("}");
-		
-		//Remove newlines from stringbuilder (tweets often add them)
-		Pattern newlineFinder = Pattern.compile("\n|\r");
-		
-		Matcher newlineMatcher = newlineFinder.matcher(buddy.toString());
-		
-		String outString = newlineMatcher.replaceAll("");
-		outString = outString.replaceAll("\\\\{1,2}",  Matcher.quoteReplacement("\\\\"));
-
-		return outString;
+		return out.toString();
 	}
 	
 	/**
@@ -191,6 +187,9 @@ public class GraphEdge extends GraphElement {
 	 * @return the weight
 	 */
 	public String getWeight() {
+		if(weight == null){
+			weight = Double.toString(weightTotal);
+		}
 		return weight;
 	}
 
@@ -198,16 +197,79 @@ public class GraphEdge extends GraphElement {
 	 * @param weight the weight to set
 	 */
 	public void setWeight(String weight) {
-		this.weight = weight;
+		this.weight = (weight == null ? "" : weight);
+		this.weightAccumulated = false;
+	}
+	
+	/**
+	 * @return true if the edge has a weight
+	 */
+	public boolean hasWeight() {
+		return weightAccumulated || !weight.isEmpty();
+	}
+	
+	/**
+	 * @return the weight as a number
+	 * @throws NumberFormatException if the weight is not set or not a number
+	 */
+	public double getWeightAsDouble() {
+		return weightAccumulated ? weightTotal : Double.parseDouble(weight);
+	}
+	
+	/**
+	 * @return true if the weight is held as a running numeric total
+	 */
+	public boolean isWeightAccumulated() {
+		return weightAccumulated;
+	}
+	
+	/**
+	 * Set the weight as a running numeric total, as if it had been accumulated by {@link #updateWeight(String)}.
+	 * @param total
+	 */
+	public void setWeightTotal(double total) {
+		weightTotal = total;
+		weightAccumulated = true;
+		weight = null;
+	}
+	
+	/**
+	 * Add to the weight, keeping a running total rather than re-formatting the text each time.
+	 * @param w2 the amount to add
+	 */
+	private void addWeight(double w2){
+		if(!weightAccumulated){
+			weightTotal = Double.parseDouble(weight);
+			weightAccumulated = true;
+		}
+		weightTotal += w2;
+		weight = null;
 	}
 	
 	public void updateWeight(String w2){
-		if(weight.isEmpty() && !w2.isEmpty()){
+		if(!hasWeight() && !w2.isEmpty()){
 			setWeight(w2);
 		}
-		else if(!weight.isEmpty() && !w2.isEmpty()){
-			double total = Double.parseDouble(weight) + Double.parseDouble(w2);
-			setWeight("" + total);
+		else if(hasWeight() && !w2.isEmpty()){
+			addWeight(Double.parseDouble(w2));
+		}
+	}
+	
+	/**
+	 * Add the weight of another edge, using its running total if it has one.
+	 * @param edge
+	 */
+	public void updateWeight(GraphEdge edge){
+		if(!edge.weightAccumulated){
+			updateWeight(edge.weight);
+		}
+		else if(!hasWeight()){
+			weightTotal = edge.weightTotal;
+			weightAccumulated = true;
+			weight = null;
+		}
+		else{
+			addWeight(edge.weightTotal);
 		}
 	}
 
@@ -234,15 +296,8 @@ public class GraphEdge extends GraphElement {
 	 */
 	public void merge(GraphEdge edge) {
 				
-		Double internalWeight = Double.parseDouble(this.getWeight());
-		Double otherWeight = Double.parseDouble(edge.getWeight());
-		
-		if (internalWeight != null && otherWeight!=null) {
-			
-			this.updateGraphTime(edge);
-			this.setWeight(String.valueOf(internalWeight+otherWeight));
-			
-		}
+		addWeight(edge.getWeightAsDouble());
+		this.updateGraphTime(edge);
 		
 	}
 }
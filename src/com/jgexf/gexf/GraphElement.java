@@ -1,12 +1,17 @@
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Representation of {@link GraphNode} and {@link GraphEdge} to 
  * unify the handling of {@link GraphAttribute}s and {@link GraphSpell}s.
  * @author bskarin
  *
  */
-public class GraphElement extends GraphTime {
+public class GraphElement extends GraphTime implements XMLWritable {
 
 	private GraphAttributeValueList attributes;
 	private GraphSpellList spells;
@@ -80,6 +85,14 @@ public class GraphElement extends GraphTime {
 		temp.addAll(attributes);
 		return temp;
 	}
+	/**
+	 * Read-only view of the element's attribute values, for writers that must not copy them.
+	 * @return the attributes (live, unmodifiable)
+	 */
+	public Collection<GraphAttributeValue> getAttributeView() {
+		return Collections.unmodifiableCollection(attributes);
+	}
+	
 	/**
 	 * Sets element's {@link GraphAttributeValueList}.
 	 * @param attributes the element attributes to set
@@ -109,7 +122,7 @@ public class GraphElement extends GraphTime {
 			}
 			else{
 				//Otherwise add the base period spell and then the new spell
-				GraphSpell gs = new GraphSpell(getStart(), getEnd(), spell.getFormat());
+				GraphSpell gs = new GraphSpell(this);
 				spells.add(gs);
 				spells.add(spell);
 			}
@@ -125,9 +138,15 @@ public class GraphElement extends GraphTime {
 	 * @return the spells
 	 */
 	public GraphSpellList getSpells() {
-		GraphSpellList temp = new GraphSpellList();
-		temp.addAll(spells);
-		return temp;
+		return (GraphSpellList) spells.clone();
+	}
+
+	/**
+	 * Read-only view of the element's spells, for writers that must not copy them.
+	 * @return the spells (live, unmodifiable)
+	 */
+	public Collection<GraphSpell> getSpellView() {
+		return Collections.unmodifiableCollection(spells);
 	}
 
 	/**
@@ -140,6 +159,31 @@ public class GraphElement extends GraphTime {
 	
 	
 	
+	/**
+	 * Write the element's XML representation directly to the given Writer.
+	 * Implemented by {@link GraphNode} and {@link GraphEdge}; a bare element has no representation.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		
+	}
+	
+	/**
+	 * Write the element's spells and attribute values (if any) directly to the given Writer,
+	 * without copying either list.
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeContentXML(Writer out) throws IOException {
+		if(!spells.isEmpty()){
+			spells.writeXML(out);
+		}
+		if(!attributes.isEmpty()){
+			attributes.writeXML(out);
+		}
+	}
+	
 	/**
 	 * Returns hash based on element's String id.
 	 */
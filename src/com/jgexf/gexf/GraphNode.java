@@ -1,8 +1,12 @@
 package com.jgexf.gexf;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
-import com.jgexf.gexf.util.GraphWriter;
+import com.jgexf.gexf.util.GraphJSONWriter;
+import com.jgexf.gexf.util.XMLEscaper;
 
 /**
  * Represents graph node within {@link GraphData}.
@@ -50,22 +54,25 @@ public class GraphNode extends GraphElement {
 	 * @return XML String
 	 */
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("      <node id=\"");
-		buddy.append(GraphWriter.cleanText(getId()));
-		buddy.append("\" label=\"");
-		buddy.append(GraphWriter.cleanText(label));
-		buddy.append("\"");
-		buddy.append(super.toXML()); // GraphTime attributes
-		buddy.append(">\n");
-		if(!getSpells().isEmpty()){
-			buddy.append(getSpells().toXML());
-		}
-		if(!getAttributes().isEmpty()){
-			buddy.append(getAttributes().toXML());
-		}
-		buddy.append("      </node>\n");
-		return buddy.toString();
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write {@link GraphNode} XML representation directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	@Override
+	public void writeXML(Writer out) throws IOException {
+		out.write("      <node id=\"");
+		XMLEscaper.write(out, getId());
+		out.write("\" label=\"");
+		XMLEscaper.write(out, label);
+		out.write('"');
+		writeTimeXML(out); // GraphTime attributes
+		out.write(">\n");
+		writeContentXML(out);
+		out.write("      </node>\n");
 	}
 
 	/**
@@ -98,36 +105,17 @@ public class GraphNode extends GraphElement {
 		return buddy.toString();
 	}
 	
+	/**
+	 * @return JSON representation in the {@link GraphJSONWriter.Layout#SIGMA} layout
+	 */
 	public String toJSON() {
-
-		//TODO: Compute size based on degrees (in/out)
-		if (getSize()==0) {
-			setSize(10);
-		}
-		
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("{\"id\":\"");
-		buddy.append(getId());
-		buddy.append("\", \"label\":\"");
-		buddy.append(label);
-		buddy.append("\",");
-		buddy.append("\"size\":");
-		buddy.append(getSize()+",");
-		//date time may not be supported
-		buddy.append(super.toJSON()); // GraphTime attributes
-		buddy.append(",");
-		
-		//Spells likely not supported?
-		/*if(!getSpells().isEmpty()){
-			buddy.append(getSpells().toJSON());
-		}*/
-
-		if(!getAttributes().isEmpty()){
-			buddy.append(getAttributes().toJSON());
+		StringWriter out = new StringWriter();
+		try {
+			new GraphJSONWriter().writeNode(this, out);
+		} catch (IOException e) {
+			e.printStackTrace(); //not thrown by StringWriter
 		}
-		
-		buddy.append("}");
-		return buddy.toString();
+		return out.toString();
 	}
 	
 	/**
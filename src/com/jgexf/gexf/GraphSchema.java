@@ -0,0 +1,72 @@
+package com.jgexf.gexf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, hashed view of the {@link GraphAttribute}s declared for one element class (node/edge).
+ * <p>
+ * Resolves an attribute id or title with one hash lookup instead of scanning the declaring
+ * {@link GraphAttributeList}. Where ids or titles repeat, the first declaration wins, as with the list lookups.
+ * </p>
+ * @author bskarin
+ *
+ */
+public final class GraphSchema {
+	
+	private final String attributeClass;
+	private final int size;
+	private final Map<String, GraphAttribute> attributesByID;
+	private final Map<String, GraphAttribute> attributesByTitle;
+	
+	/**
+	 * Snapshot the given attributes.
+	 * @param attributeClass node/edge
+	 * @param attributes the declared attributes, in declaration order
+	 */
+	public GraphSchema(String attributeClass, List<GraphAttribute> attributes) {
+		this.attributeClass = attributeClass;
+		this.size = attributes.size();
+		this.attributesByID = new HashMap<String, GraphAttribute>();
+		this.attributesByTitle = new HashMap<String, GraphAttribute>();
+		for(GraphAttribute ga : attributes){
+			if(!attributesByID.containsKey(ga.getId())){
+				attributesByID.put(ga.getId(), ga);
+			}
+			if(!attributesByTitle.containsKey(ga.getTitle())){
+				attributesByTitle.put(ga.getTitle(), ga);
+			}
+		}
+	}
+	
+	/**
+	 * @param id attribute id
+	 * @return the attribute, or null if not declared
+	 */
+	public GraphAttribute getAttributeByID(String id) {
+		return attributesByID.get(id);
+	}
+	
+	/**
+	 * @param title attribute title
+	 * @return the attribute, or null if not declared
+	 */
+	public GraphAttribute getAttributeByTitle(String title) {
+		return attributesByTitle.get(title);
+	}
+	
+	/**
+	 * @return the number of attributes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the attributeClass (node/edge)
+	 */
+	public String getAttributeClass() {
+		return attributeClass;
+	}
+}
@@ -4,12 +4,15 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  *Used by Gephi to support the filtering of graphs by time
  * @author Bruce
  *
  */
-public class GraphSpell extends GraphTime{
+public class GraphSpell extends GraphTime implements XMLWritable {
 
 	/**
 	 * Basic Graph Spell constructor
@@ -27,21 +30,27 @@ public class GraphSpell extends GraphTime{
 		super(start, end, format);
 	}
 	
+	/**
+	 * Spell covering the same period as the given {@link GraphTime}.
+	 * @param gt
+	 */
+	public GraphSpell(GraphTime gt) {
+		super(gt);
+	}
+	
 	public String toXML(){
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("          <spell");
-		if(!getStart().isEmpty()){
-			buddy.append(" start=\"");
-			buddy.append(getStartXML());
-			buddy.append("\"");
-		}
-		if(!getEnd().isEmpty()){
-			buddy.append(" end=\"");
-			buddy.append(getEndXML());
-			buddy.append("\"");
-		}
-		buddy.append("/>\n");
-		return buddy.toString();
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write the spell directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("          <spell");
+		writeTimeXML(out);
+		out.write("/>\n");
 	}
 	
 	public String toXML(int depth){
@@ -53,12 +62,12 @@ public class GraphSpell extends GraphTime{
 		
 		StringBuilder buddy = new StringBuilder();
 		buddy.append(tab_spacing+"<spell");
-		if(!getStart().isEmpty()){
+		if(hasStart()){
 			buddy.append(" start=\"");
 			buddy.append(getStartXML());
 			buddy.append("\"");
 		}
-		if(!getEnd().isEmpty()){
+		if(hasEnd()){
 			buddy.append(" end=\"");
 			buddy.append(getEndXML());
 			buddy.append("\"");
@@ -4,76 +4,243 @@
  */
 package com.jgexf.gexf;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
- * The list object for storing  {@link GraphSpell} objects and ensuring there are no duplicates 
+ * The list object for storing  {@link GraphSpell} objects and ensuring there are no duplicates.
+ * <p>
+ * Spells are kept ordered by start time and never overlap: each added spell is coalesced with
+ * its neighbours as it is inserted, so adding a spell costs O(log n) plus the spells it absorbs.
+ * Spells without a start never overlap anything, so they are kept as added, ahead of the others.
+ * Spells without an end only overlap spells with the same start, which absorb them (there is no
+ * end to extend to); they are held apart so they never come between spells that do overlap.
+ * </p>
+ * The list is read-only apart from {@link #add(GraphSpell)} and {@link #clear()}; indexed access
+ * copies the spells out once per modification.
  * @author bskarin
  *
  */
-public class GraphSpellList extends ArrayList<GraphSpell> {
+public class GraphSpellList extends AbstractList<GraphSpell> implements Cloneable, XMLWritable {
 	
 	/**
-	 * 
+	 * Orders spells by start time, then end time
 	 */
-	private static final long serialVersionUID = 4356412485151704929L;
+	private static final Comparator<GraphSpell> BY_START = new Comparator<GraphSpell>() {
+		@Override
+		public int compare(GraphSpell gs1, GraphSpell gs2) {
+			int c = Double.compare(gs1.getStartValue(), gs2.getStartValue());
+			return (c != 0 ? c : Double.compare(gs1.getEndValue(), gs2.getEndValue()));
+		}
+	};
+	
+	/**
+	 * Spells with a start and an end
+	 */
+	private TreeSet<GraphSpell> spells;
+	
+	/**
+	 * Spells without a start, in the order added
+	 */
+	private List<GraphSpell> openStart;
+	
+	/**
+	 * Spells with a start but no end, by start
+	 */
+	private TreeMap<Double, GraphSpell> openEnd;
+	
+	/**
+	 * All spells in list order for indexed access, null when out of date
+	 */
+	private GraphSpell[] ordered;
 	
 	/**
 	 * Basic graph spell list constructor
 	 */
 	GraphSpellList(){
-		
+		spells = new TreeSet<GraphSpell>(BY_START);
+		openStart = new ArrayList<GraphSpell>(0);
+		openEnd = new TreeMap<Double, GraphSpell>();
 	}
 	
 	/**
-	 * Add spell to list or update overlapping spells.
-	 * @param gs2 spell to be added
+	 * Add spell to list, coalescing it with any spells it overlaps.
+	 * Spells already in the list are replaced rather than modified, so copies of the list stay intact.
+	 * @param gs spell to be added
+	 * @return true
 	 */
-	public void addOrAppendSpell(GraphSpell gs2){
-		boolean checkForMerge = false;
-		for(GraphSpell gs1 : this){
-			if(gs1.overlaps(gs2)){
-				gs1.updateGraphTime(gs2);
-				checkForMerge = true;
-				break;
+	@Override
+	public boolean add(GraphSpell gs){
+		ordered = null;
+		modCount++;
+		//Without a start there is nothing to order by or overlap
+		if(!gs.hasStart()){
+			openStart.add(gs);
+			return true;
+		}
+		Double start = gs.getStartValue();
+		if(!gs.hasEnd()){
+			GraphSpell lower = spells.floor(gs);
+			if(!openEnd.containsKey(start) && (lower == null || !lower.sameStart(gs))){
+				openEnd.put(start, gs);
 			}
-		}//End for spell
-		if(checkForMerge){
-			checkForMerges();
+			return true;
+		}
+		//A spell without an end at the same start is absorbed
+		openEnd.remove(start);
+		GraphSpell merged = gs;
+		//Merge with the spell starting at or before the new one
+		GraphSpell lower = spells.floor(gs);
+		if(lower != null && lower.overlaps(gs)){
+			spells.remove(lower);
+			merged = new GraphSpell(lower);
+			merged.updateGraphTime(gs);
 		}
-		else{
-			this.add(gs2);
+		//Absorb any following spells now covered
+		GraphSpell higher = spells.ceiling(merged);
+		while(higher != null && merged.overlaps(higher)){
+			spells.remove(higher);
+			if(merged == gs){
+				merged = new GraphSpell(gs);
+			}
+			merged.updateGraphTime(higher);
+			higher = spells.ceiling(merged);
 		}
+		spells.add(merged);
+		return true;
+	}
+	
+	/**
+	 * Add spell to list or update overlapping spells.
+	 * @param gs2 spell to be added
+	 */
+	public void addOrAppendSpell(GraphSpell gs2){
+		add(gs2);
 	}
 	
 	/**
 	 * Check to see if any {@link GraphSpell}s in list are overlapping and thus need to be merged.
-	 * @return false if no merge is needed
+	 * @return false, spells are coalesced as they are added so a merge is never needed
+	 * @deprecated the list is always fully merged
 	 */
+	@Deprecated
 	public boolean checkForMerges(){
-		if(this.size() < 2){
-			return false;
+		return false;
+	}
+	
+	/**
+	 * @return the earliest spell, or null if empty
+	 */
+	public GraphSpell first(){
+		if(!openStart.isEmpty()){
+			return openStart.get(0);
 		}
-		boolean needMerge = false;
-		GraphSpell gs1 = this.get(0);
-		GraphSpell gs2 = this.get(1);
-		//Loop through triangle and check for merges
-		for(int i=0; i < this.size() && !needMerge; i++){
-			for(int j=0; j < i && !needMerge; j++){
-				if(i != j){
-					gs1 = this.get(i);
-					gs2 = this.get(j);
-					if(gs1.overlaps(gs2)){
-						needMerge=true;
+		if(openEnd.isEmpty()){
+			return spells.isEmpty() ? null : spells.first();
+		}
+		GraphSpell open = openEnd.firstEntry().getValue();
+		return (spells.isEmpty() || BY_START.compare(open, spells.first()) < 0 ? open : spells.first());
+	}
+	
+	/**
+	 * @return the latest spell, or null if empty
+	 */
+	public GraphSpell last(){
+		if(!openEnd.isEmpty()){
+			GraphSpell open = openEnd.lastEntry().getValue();
+			return (spells.isEmpty() || BY_START.compare(open, spells.last()) > 0 ? open : spells.last());
+		}
+		if(!spells.isEmpty()){
+			return spells.last();
+		}
+		return openStart.isEmpty() ? null : openStart.get(openStart.size() - 1);
+	}
+	
+	@Override
+	public GraphSpell get(int index) {
+		if(ordered == null){
+			ordered = new GraphSpell[size()];
+			int i = 0;
+			for(GraphSpell gs : this){
+				ordered[i++] = gs;
+			}
+		}
+		return ordered[index];
+	}
+	
+	@Override
+	public Iterator<GraphSpell> iterator() {
+		if(openStart.isEmpty() && openEnd.isEmpty()){
+			return Collections.unmodifiableSet(spells).iterator();
+		}
+		final Iterator<GraphSpell> open = openStart.iterator();
+		final Iterator<GraphSpell> closed = spells.iterator();
+		final Iterator<GraphSpell> openEnded = openEnd.values().iterator();
+		return new Iterator<GraphSpell>() {
+			private GraphSpell nextClosed = (closed.hasNext() ? closed.next() : null);
+			private GraphSpell nextOpenEnded = (openEnded.hasNext() ? openEnded.next() : null);
+
+			@Override
+			public boolean hasNext() {
+				return open.hasNext() || nextClosed != null || nextOpenEnded != null;
+			}
+
+			@Override
+			public GraphSpell next() {
+				if(open.hasNext()){
+					return open.next();
+				}
+				//Interleave the spells with and without an end by start
+				GraphSpell gs;
+				if(nextOpenEnded == null || (nextClosed != null && BY_START.compare(nextClosed, nextOpenEnded) < 0)){
+					if(nextClosed == null){
+						throw new NoSuchElementException();
 					}
+					gs = nextClosed;
+					nextClosed = (closed.hasNext() ? closed.next() : null);
 				}
+				else{
+					gs = nextOpenEnded;
+					nextOpenEnded = (openEnded.hasNext() ? openEnded.next() : null);
+				}
+				return gs;
 			}
-		}//End check triangle
-		if(needMerge){
-			gs1.updateGraphTime(gs2);
-			this.remove(gs2);
-		}
-		return needMerge;
+		};
+	}
+
+	@Override
+	public int size() {
+		return openStart.size() + spells.size() + openEnd.size();
+	}
+	
+	@Override
+	public void clear() {
+		ordered = null;
+		modCount++;
+		spells.clear();
+		openStart.clear();
+		openEnd.clear();
+	}
+	
+	/**
+	 * @return a copy of the list sharing the same spells
+	 */
+	@Override
+	public Object clone() {
+		GraphSpellList temp = new GraphSpellList();
+		temp.spells = new TreeSet<GraphSpell>(spells);
+		temp.openStart = new ArrayList<GraphSpell>(openStart);
+		temp.openEnd = new TreeMap<Double, GraphSpell>(openEnd);
+		return temp;
 	}
 	
 	/**
@@ -81,13 +248,20 @@ public class GraphSpellList extends ArrayList<GraphSpell> {
 	 * @return XML representation
 	 */
 	public String toXML() {
-		StringBuilder buddy = new StringBuilder();
-		buddy.append("        <spells>\n");
+		return XMLWritable.toXML(this);
+	}
+	
+	/**
+	 * Write the spells directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeXML(Writer out) throws IOException {
+		out.write("        <spells>\n");
 		for(GraphSpell gs : this){
-			buddy.append(gs.toXML());
+			gs.writeXML(out);
 		}
-		buddy.append("        </spells>\n");
-		return buddy.toString();
+		out.write("        </spells>\n");
 	}
 	
 	/**
@@ -5,28 +5,38 @@
  */
 package com.jgexf.gexf;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
+import com.jgexf.gexf.util.TimeCodec;
+
 /**
- * Base class for all other time dependent classes
+ * Base class for all other time dependent classes.
+ * <p>
+ * The interval is held as a pair of primitive values parsed once when the start/end is set:
+ * epoch milliseconds for the "datetime" format and the raw number for the "double" format.
+ * Unset times are stored as {@link Double#NaN}. The text form is only kept as given or rendered
+ * on demand, so interval comparisons never touch a String.
+ * </p>
  * @author bskarin
  *
  */
 public class GraphTime {
-	private String start;
-	private String end;
+	private double start;
+	private double end;
+	private String startText;
+	private String endText;
 	private String format;
-	private static SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	private static SimpleDateFormat XML_date_formatter= new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+	private static volatile TimeCodec timeCodec = new TimeCodec();
 	
 	/**
 	 * Basic graph time constructor
 	 */
 	public GraphTime(){
-		start = "";
-		end = "";
+		start = Double.NaN;
+		end = Double.NaN;
 		format = "double";
 	}
 	
@@ -37,9 +47,38 @@ public class GraphTime {
 	 * @param format (datetime/double)
 	 */
 	GraphTime(String start, String end, String format){
-		this.start = start;
-		this.end = end;
-		this.setFormat(format);
+		this();
+		this.format = format;
+		setStart(start);
+		setEnd(end);
+	}
+	
+	/**
+	 * Copy the interval and format of another {@link GraphTime} without re-parsing.
+	 * @param gt
+	 */
+	GraphTime(GraphTime gt){
+		this.start = gt.start;
+		this.end = gt.end;
+		this.startText = gt.startText;
+		this.endText = gt.endText;
+		this.format = gt.format;
+	}
+	
+	/**
+	 * @return the codec shared by all times for reading and writing datetime text
+	 */
+	public static TimeCodec getTimeCodec(){
+		return timeCodec;
+	}
+	
+	/**
+	 * Replace the shared codec, e.g. to read/write in a fixed zone.
+	 * Only affects times parsed or written afterwards.
+	 * @param codec
+	 */
+	public static void setTimeCodec(TimeCodec codec){
+		timeCodec = codec;
 	}
 	
 	/**
@@ -52,14 +91,9 @@ public class GraphTime {
 		
 		if(!time.isEmpty()){
 			try {
-				dt = formatter.parse(time);
-			} catch (ParseException e) {
-				
-				try {
-					dt = XML_date_formatter.parse(time);
-				} catch (ParseException e2) {
-					e.printStackTrace();
-				}
+				dt = new Date(timeCodec.parse(time));
+			} catch (DateTimeParseException e) {
+				e.printStackTrace();
 			}
 		}
 		else{
@@ -76,7 +110,7 @@ public class GraphTime {
 	 * @return the String for the given date
 	 */
 	public static String getDateAsString(Date dt){ 
-		String dateString = formatter.format(dt);
+		String dateString = timeCodec.format(dt.getTime());
 		return dateString;
 	}
 
@@ -87,22 +121,70 @@ public class GraphTime {
 	 * @return the String for the given date
 	 */
 	public static String getDateAsXMLString(Date dt){ 
-		String dateString = XML_date_formatter.format(dt);
+		String dateString = timeCodec.formatXML(dt.getTime());
 		return dateString;
 	}
 	
+	/**
+	 * Parse a time string into its primitive value for the current format.
+	 * @param time
+	 * @return epoch milliseconds (datetime), the number (double), or NaN if empty/unparseable
+	 */
+	private double parseTime(String time){
+		if(time == null || time.isEmpty()){
+			return Double.NaN;
+		}
+		if(isDateTime()){
+			try {
+				return timeCodec.parse(time);
+			} catch (DateTimeParseException e) {
+				e.printStackTrace();
+				return Double.NaN;
+			}
+		}
+		else{
+			try {
+				return Double.parseDouble(time);
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+	}
+	
+	/**
+	 * Render a primitive time value as text for the current format.
+	 * @param time
+	 * @return the text form
+	 */
+	private String formatTime(double time){
+		if(Double.isNaN(time)){
+			return "";
+		}
+		else if(isDateTime()){
+			return timeCodec.format((long) time);
+		}
+		else return Double.toString(time);
+	}
+	
+	/**
+	 * @return true if the format is "datetime"
+	 */
+	private boolean isDateTime(){
+		return "datetime".equals(format);
+	}
+	
 	/**
 	 * 
 	 * @param gt
 	 * @return true if the time overlaps
 	 */
 	public boolean overlaps(GraphTime gt){
-		if(start.isEmpty() || gt.getStart().isEmpty()){
+		if(!hasStart() || !gt.hasStart()){
 			System.out.println("Warning: start time not set for:" + this);
 			return false;
 		}
 		
-		else if(getEnd().isEmpty() || gt.getEnd().isEmpty()){
+		else if(!hasEnd() || !gt.hasEnd()){
 			
 			return checkStart(gt);
 		}
@@ -117,41 +199,30 @@ public class GraphTime {
 	 */
 	private boolean checkStart(GraphTime gt){
 		
-		if(getStart().equals(gt.getStart())) return true;
-		
-		else return false;
+		return sameStart(gt);
 		
 	}
 	
+	/**
+	 * 
+	 * @param gt
+	 * @return true if the start times are equal (or both not set)
+	 */
+	public boolean sameStart(GraphTime gt){
+		return start == gt.start || (!hasStart() && !gt.hasStart());
+	}
+	
 	public boolean checkOverlap(GraphTime gt){
 		
-		if(gt.getStart().isEmpty() || start.isEmpty()){
+		if(!gt.hasStart() || !hasStart()){
 			System.out.println("Warning: start time not set for:" + this);
 			return false;
 		}
 		
-		else if(format.equals("datetime")){
-			Date s1 = getAsDate(start);
-			Date s2 = getAsDate(gt.getStart());
-			Date e1 = getAsDate(end);
-			Date e2 = getAsDate(gt.getEnd());
-			
-			if(e1.before(s2) || e2.before(s1)){
-				return false;
-			}
-			else return true;
-		}
-		else{
-			Double s1 = Double.parseDouble(start);
-			Double s2 = Double.parseDouble(gt.getStart());
-			Double e1 = Double.parseDouble(end);
-			Double e2 = Double.parseDouble(gt.getEnd());
-			
-			if(e1 < s2 || e2 < s1){
-				return false;
-			}
-			else return true;
+		else if(end < gt.start || gt.end < start){
+			return false;
 		}
+		else return true;
 	}
 	
 	/**
@@ -159,37 +230,17 @@ public class GraphTime {
 	 * @param gt
 	 */
 	public void updateGraphTime(GraphTime gt){
-		if(gt.getStart().isEmpty() || start.isEmpty() || gt.getEnd().isEmpty() || end.isEmpty()){
+		if(!gt.hasStart() || !hasStart() || !gt.hasEnd() || !hasEnd()){
 			System.out.println("Warning: time not set for:" + this);
 		}
 		else {
-		
-			if(format.equals("datetime")){
-				Date s1 = getAsDate(start);
-				Date s2 = getAsDate(gt.getStart());
-				Date e1 = getAsDate(end);
-				Date e2 = getAsDate(gt.getEnd());
-				
-				if(s1.after(s2)){
-					start = gt.getStart();
-				}
-				if(e1.before(e2)){
-					end = gt.getEnd();
-				}			
-			} //End if date
-			else{
-				Double s1 = Double.parseDouble(start);
-				Double s2 = Double.parseDouble(gt.getStart());
-				Double e1 = Double.parseDouble(end);
-				Double e2 = Double.parseDouble(gt.getEnd());
-				
-				if(s1 > s2){
-					start = gt.getStart();
-				}
-	
-				if(e1 < e2){
-					end = gt.getEnd();
-				}
+			if(start > gt.start){
+				start = gt.start;
+				startText = gt.startText;
+			}
+			if(end < gt.end){
+				end = gt.end;
+				endText = gt.endText;
 			}
 		}
 	}
@@ -199,41 +250,71 @@ public class GraphTime {
 	 */
 	public boolean checkInterval(){
 		
-		if(!getEnd().isEmpty()){
-		
-			if(format.equals("datetime")){
-				Date s1 = getAsDate(start);
-				Date e1 = getAsDate(end);
-				
-				if(s1.after(e1)){
-					return false;
-				}
-				else return true;		
-			} //End if date
-			else{
-				Double s1 = Double.parseDouble(start);
-				Double e1 = Double.parseDouble(end);
-				
-				if(s1 > e1){
-					return false;
-				}
-				else return true;
-			}
+		if(hasEnd()){
+			return !(start > end);
 		}
 		else return true;
 	}
 	
+	/**
+	 * @return true if the start time is set
+	 */
+	public boolean hasStart() {
+		return !Double.isNaN(start);
+	}
+	
+	/**
+	 * @return true if the end time is set
+	 */
+	public boolean hasEnd() {
+		return !Double.isNaN(end);
+	}
+	
+	/**
+	 * @return the start as epoch milliseconds (datetime) or number (double), NaN if not set
+	 */
+	public double getStartValue() {
+		return start;
+	}
+	
+	/**
+	 * @param start the start as epoch milliseconds (datetime) or number (double)
+	 */
+	public void setStartValue(double start) {
+		this.start = start;
+		this.startText = null;
+	}
+	
+	/**
+	 * @return the end as epoch milliseconds (datetime) or number (double), NaN if not set
+	 */
+	public double getEndValue() {
+		return end;
+	}
+	
+	/**
+	 * @param end the end as epoch milliseconds (datetime) or number (double)
+	 */
+	public void setEndValue(double end) {
+		this.end = end;
+		this.endText = null;
+	}
+	
 	/**
 	 * @return the start
 	 */
 	public String getStart() {
-		return start;
+		if(startText == null){
+			startText = formatTime(start);
+		}
+		return startText;
 	}
 	/**
 	 * @param start the start date to set
 	 */
 	public void setStart(String start) {
-		this.start = start;
+		this.start = parseTime(start);
+		this.startText = (start == null ? "" : start);
 	}
 	
 	
@@ -241,13 +322,17 @@ public class GraphTime {
 	 * @return the end
 	 */
 	public String getEnd() {
-		return end;
+		if(endText == null){
+			endText = formatTime(end);
+		}
+		return endText;
 	}
 	/**
 	 * @param end the end date to set
 	 */
 	public void setEnd(String end) {
-		this.end = end;
+		this.end = parseTime(end);
+		this.endText = (end == null ? "" : end);
 	}
 
 	/**
@@ -256,9 +341,10 @@ public class GraphTime {
 	 */
 	public String getStartXML(){ 
 
-		Date start_date = getAsDate(start);
-		String dateString = XML_date_formatter.format(start_date);
-		return dateString;
+		if(!isDateTime()){
+			return getStart();
+		}
+		return timeCodec.formatXML((long) start);
 	}
 
 	/**
@@ -267,9 +353,10 @@ public class GraphTime {
 	 */
 	public String getEndXML(){ 
 
-		Date end_date = getAsDate(end);
-		String dateString = XML_date_formatter.format(end_date);
-		return dateString;
+		if(!isDateTime()){
+			return getEnd();
+		}
+		return timeCodec.formatXML((long) end);
 	}
 	
 	/**
@@ -280,10 +367,20 @@ public class GraphTime {
 	}
 
 	/**
+	 * Set the format, re-parsing any start/end text that was set under a different format.
 	 * @param format the type of to set ({@link Date} "datetime" or {@link Double})
 	 */
 	public void setFormat(String format) {
+		boolean changed = (format == null ? this.format != null : !format.equals(this.format));
 		this.format = format;
+		if(changed){
+			if(startText != null && !startText.isEmpty()){
+				start = parseTime(startText);
+			}
+			if(endText != null && !endText.isEmpty()){
+				end = parseTime(endText);
+			}
+		}
 	}
 	
 	/**
@@ -292,28 +389,40 @@ public class GraphTime {
 	 * @return XML String
 	 */
 	public String toXML() {
-		StringBuilder buddy = new StringBuilder();
-		if(!getStart().isEmpty()){
-			buddy.append(" start=\"");
-			buddy.append( getStartXML());
-			buddy.append("\"");
+		return XMLWritable.toXML(new XMLWritable() {
+			@Override
+			public void writeXML(Writer out) throws IOException {
+				writeTimeXML(out);
+			}
+		});
+	}
+	
+	/**
+	 * Write the start/end XML attributes (if set) directly to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTimeXML(Writer out) throws IOException {
+		if(hasStart()){
+			out.write(" start=\"");
+			out.write(getStartXML());
+			out.write('"');
 		}
-		if(!getEnd().isEmpty()){
-			buddy.append(" end=\"");
-			buddy.append(getEndXML());
-			buddy.append("\"");
+		if(hasEnd()){
+			out.write(" end=\"");
+			out.write(getEndXML());
+			out.write('"');
 		}
-		return buddy.toString();
 	}
 	
 	public String toJSON() {
 		StringBuilder buddy = new StringBuilder();
-		if(!getStart().isEmpty()){
+		if(hasStart()){
 			buddy.append(" \"start\":\"");
 			buddy.append( getStartXML());
 			buddy.append("\",");
 		}
-		if(!getEnd().isEmpty()){
+		if(hasEnd()){
 			buddy.append(" \"end\":\"");
 			buddy.append(getEndXML());
 			buddy.append("\"");
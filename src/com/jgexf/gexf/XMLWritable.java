@@ -0,0 +1,35 @@
+package com.jgexf.gexf;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * A piece of the graph that can write its GEXF representation directly to a Writer.
+ * @author bskarin
+ *
+ */
+public interface XMLWritable {
+
+	/**
+	 * Write the XML representation to the given Writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeXML(Writer out) throws IOException;
+
+	/**
+	 * Render the XML representation to a String.
+	 * @param writable
+	 * @return XML String
+	 */
+	static String toXML(XMLWritable writable) {
+		StringWriter out = new StringWriter();
+		try {
+			writable.writeXML(out);
+		} catch (IOException e) {
+			e.printStackTrace(); //not thrown by StringWriter
+		}
+		return out.toString();
+	}
+}
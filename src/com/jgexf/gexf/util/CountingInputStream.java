@@ -0,0 +1,56 @@
+package com.jgexf.gexf.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it, for progress reports. The count may be read from another thread.
+ * @author bskarin
+ *
+ */
+class CountingInputStream extends FilterInputStream {
+
+	private volatile long count = 0;
+
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return bytes read so far
+	 */
+	long getCount() {
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if(b >= 0) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if(read > 0) {
+			count += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+}
@@ -0,0 +1,62 @@
+package com.jgexf.gexf.util;
+
+/**
+ * {@link GraphHandler} that ignores every callback and reads the whole document.
+ * @author bskarin
+ *
+ */
+public class DefaultGraphHandler implements GraphHandler {
+
+	@Override
+	public void graph(String defaultEdgeType, String timeFormat, String mode, String startTime) {
+	}
+
+	@Override
+	public void startAttributes(String elementClass, String mode) {
+	}
+
+	@Override
+	public void attribute(String id, String title, String type, String dataMode) {
+	}
+
+	@Override
+	public void endAttributes() {
+	}
+
+	@Override
+	public void startNodes() {
+	}
+
+	@Override
+	public void startNode(String id, String label, String start, String end) {
+	}
+
+	@Override
+	public void endNode() {
+	}
+
+	@Override
+	public void startEdges() {
+	}
+
+	@Override
+	public void startEdge(String id, String source, String target, String weight, String start, String end) {
+	}
+
+	@Override
+	public void endEdge() {
+	}
+
+	@Override
+	public void spell(String start, String end) {
+	}
+
+	@Override
+	public void attvalue(String id, String value, String start, String end) {
+	}
+
+	@Override
+	public boolean isDone() {
+		return false;
+	}
+}
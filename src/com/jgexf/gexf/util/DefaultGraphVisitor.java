@@ -0,0 +1,36 @@
+package com.jgexf.gexf.util;
+
+import com.jgexf.gexf.GraphData;
+
+/**
+ * {@link GraphVisitor} that ignores every element and scans the whole document.
+ * @author bskarin
+ *
+ */
+public class DefaultGraphVisitor implements GraphVisitor {
+
+	@Override
+	public void visitGraph(GraphData header) {
+	}
+
+	@Override
+	public void visitNode(GraphElementEvent node) {
+	}
+
+	@Override
+	public void visitEdge(GraphElementEvent edge) {
+	}
+
+	@Override
+	public void visitSpell(GraphSpellEvent spell) {
+	}
+
+	@Override
+	public void visitAttvalue(GraphValueEvent value) {
+	}
+
+	@Override
+	public boolean isDone() {
+		return false;
+	}
+}
@@ -0,0 +1,290 @@
+package com.jgexf.gexf.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+
+/**
+ * Builds a graph that may not fit in memory and writes it as GEXF.
+ * <p>
+ * Added elements are held as they arrive until their estimated size reaches the memory budget, and
+ * are then spilled to disk as a run: a {@link GraphSnapshotWriter} snapshot with nodes and edges
+ * sorted by id, keeping arrival order among the occurrences of an id. {@link #finish(String)} k-way
+ * merges the runs and what is still in memory by id and replays the occurrences of each element in
+ * arrival order with {@link GraphData#appendElement(GraphElement, GraphElement)}, as
+ * {@link GraphData#addOrAppendElement(GraphElement)} would have, and streams the merged elements
+ * through an {@link IncrementalGraphWriter}. Only one element per run is held during the merge.
+ * </p>
+ * Occurrences are not aggregated before they are spilled: appending is order sensitive (attribute
+ * values fold into the first value they overlap), so partial aggregates could not be combined into
+ * the same result as an in-memory build.
+ * @author bskarin
+ *
+ */
+public class ExternalGraphBuilder implements Closeable {
+
+	/**
+	 * Rough heap cost of an element, a spell and an attribute value before their strings
+	 */
+	private static final int ELEMENT_BYTES = 400;
+	private static final int SPELL_BYTES = 80;
+	private static final int VALUE_BYTES = 160;
+
+	private static final Comparator<GraphElement> BY_ID = new Comparator<GraphElement>() {
+		@Override
+		public int compare(GraphElement ge1, GraphElement ge2) {
+			return ge1.getId().compareTo(ge2.getId());
+		}
+	};
+
+	private final GraphData header;
+	private final long memoryBudget;
+	private final File spoolDirectory;
+	private final List<File> runs = new ArrayList<File>();
+	private List<GraphNode> nodeBuffer = new ArrayList<GraphNode>();
+	private List<GraphEdge> edgeBuffer = new ArrayList<GraphEdge>();
+	private long estimatedBytes = 0;
+
+	/**
+	 * Spill to the system temporary directory with a quarter of the maximum heap as the budget.
+	 * @param header graph attributes and attribute lists for the output
+	 */
+	public ExternalGraphBuilder(GraphData header) {
+		this(header, Runtime.getRuntime().maxMemory() / 4, null);
+	}
+
+	/**
+	 * @param header graph attributes and attribute lists for the output; its own elements are not used
+	 * @param memoryBudget estimated bytes of elements to hold before spilling a run
+	 * @param spoolDirectory where to keep runs and spooled output, null for the system default
+	 */
+	public ExternalGraphBuilder(GraphData header, long memoryBudget, File spoolDirectory) {
+		this.header = header;
+		this.memoryBudget = memoryBudget;
+		this.spoolDirectory = spoolDirectory;
+	}
+
+	/**
+	 * Add an element, to be appended to any earlier occurrence when the graph is merged,
+	 * spilling a run if the budget is reached. The element must not be modified afterwards.
+	 * @param newElement
+	 * @throws IOException if a run cannot be written
+	 */
+	public void addOrAppendElement(GraphElement newElement) throws IOException {
+		if(newElement instanceof GraphNode) {
+			nodeBuffer.add((GraphNode) newElement);
+		}
+		else {
+			edgeBuffer.add((GraphEdge) newElement);
+		}
+		estimatedBytes += estimateSize(newElement);
+		if(estimatedBytes >= memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * @return number of runs spilled to disk so far
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Merge everything added and write it as a GEXF file (gzip compressed for names ending in .gz).
+	 * The runs are deleted afterwards.
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void finish(String fileName) throws IOException {
+		IncrementalGraphWriter out = new IncrementalGraphWriter(spoolDirectory);
+		List<GraphSnapshotReader> readers = new ArrayList<GraphSnapshotReader>();
+		try {
+			for(File run : runs) {
+				GraphSnapshotReader reader = GraphSnapshotReader.open(run.getPath());
+				reader.disableStringCache();
+				readers.add(reader);
+			}
+			List<Iterator<? extends GraphElement>> nodeSources = new ArrayList<Iterator<? extends GraphElement>>();
+			List<Iterator<? extends GraphElement>> edgeSources = new ArrayList<Iterator<? extends GraphElement>>();
+			for(GraphSnapshotReader reader : readers) {
+				nodeSources.add(runIterator(reader, true));
+				edgeSources.add(runIterator(reader, false));
+			}
+			nodeSources.add(sorted(nodeBuffer).iterator());
+			edgeSources.add(sorted(edgeBuffer).iterator());
+			nodeBuffer = new ArrayList<GraphNode>();
+			edgeBuffer = new ArrayList<GraphEdge>();
+			estimatedBytes = 0;
+
+			GraphElement merged = null;
+			MergeQueue nodes = new MergeQueue(nodeSources);
+			while((merged = nodes.next()) != null) {
+				out.writeNode((GraphNode) merged);
+			}
+			MergeQueue edges = new MergeQueue(edgeSources);
+			while((merged = edges.next()) != null) {
+				out.writeEdge((GraphEdge) merged);
+			}
+			out.finish(header, fileName);
+		} finally {
+			for(GraphSnapshotReader reader : readers) {
+				reader.close();
+			}
+			out.close();
+			close();
+		}
+	}
+
+	/**
+	 * Discard the runs and anything still in memory.
+	 */
+	@Override
+	public void close() {
+		for(File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		nodeBuffer = new ArrayList<GraphNode>();
+		edgeBuffer = new ArrayList<GraphEdge>();
+		estimatedBytes = 0;
+	}
+
+	/**
+	 * Write the in-memory elements as a run sorted by id and start over.
+	 */
+	private void spill() throws IOException {
+		File run = File.createTempFile("jgexf-run", ".jgxb", spoolDirectory);
+		runs.add(run);
+		GraphSnapshotWriter.write(header, sorted(nodeBuffer), sorted(edgeBuffer), run.getPath());
+		nodeBuffer = new ArrayList<GraphNode>();
+		edgeBuffer = new ArrayList<GraphEdge>();
+		estimatedBytes = 0;
+	}
+
+	/**
+	 * Sort by id; the sort is stable, so occurrences of an id stay in arrival order.
+	 */
+	private static <T extends GraphElement> List<T> sorted(List<T> elements) {
+		Collections.sort(elements, BY_ID);
+		return elements;
+	}
+
+	/**
+	 * Heap an element holds.
+	 */
+	private static long estimateSize(GraphElement elem) {
+		long size = ELEMENT_BYTES + 2L * elem.getId().length();
+		if(elem instanceof GraphNode && ((GraphNode) elem).getLabel() != null) {
+			size += 2L * ((GraphNode) elem).getLabel().length();
+		}
+		size += (long) SPELL_BYTES * elem.getSpellView().size();
+		for(GraphAttributeValue gav : elem.getAttributeView()) {
+			size += VALUE_BYTES;
+			if(!gav.isAccumulated() && gav.getValue() != null) {
+				size += 2L * gav.getValue().length();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * The nodes or edges of a run, decoded one at a time.
+	 */
+	private static Iterator<GraphElement> runIterator(final GraphSnapshotReader reader, final boolean nodes) {
+		return new Iterator<GraphElement>() {
+			private final int count = (nodes ? reader.getNodeCount() : reader.getEdgeCount());
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < count;
+			}
+
+			@Override
+			public GraphElement next() {
+				return (nodes ? reader.getNode(index++) : reader.getEdge(index++));
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Merges id-sorted sources, replaying the occurrences of an id in source order (and within
+	 * a source in the order given) onto the first.
+	 */
+	private static final class MergeQueue {
+
+		private final PriorityQueue<Source> queue;
+
+		MergeQueue(List<Iterator<? extends GraphElement>> sources) {
+			queue = new PriorityQueue<Source>(Math.max(1, sources.size()), new Comparator<Source>() {
+				@Override
+				public int compare(Source s1, Source s2) {
+					int c = s1.current.getId().compareTo(s2.current.getId());
+					return (c != 0 ? c : s1.order - s2.order);
+				}
+			});
+			for(int i = 0; i < sources.size(); i++) {
+				Source source = new Source(i, sources.get(i));
+				if(source.advance()) {
+					queue.add(source);
+				}
+			}
+		}
+
+		/**
+		 * @return the next element with all of its occurrences appended, or null when done
+		 */
+		GraphElement next() {
+			Source source = queue.poll();
+			if(source == null) {
+				return null;
+			}
+			GraphElement merged = source.current;
+			if(source.advance()) {
+				queue.add(source);
+			}
+			while(!queue.isEmpty() && queue.peek().current.getId().equals(merged.getId())) {
+				source = queue.poll();
+				GraphData.appendElement(merged, source.current);
+				if(source.advance()) {
+					queue.add(source);
+				}
+			}
+			return merged;
+		}
+	}
+
+	private static final class Source {
+		final int order;
+		final Iterator<? extends GraphElement> elements;
+		GraphElement current;
+
+		Source(int order, Iterator<? extends GraphElement> elements) {
+			this.order = order;
+			this.elements = elements;
+		}
+
+		boolean advance() {
+			current = (elements.hasNext() ? elements.next() : null);
+			return current != null;
+		}
+	}
+}
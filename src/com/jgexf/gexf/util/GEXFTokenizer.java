@@ -0,0 +1,659 @@
+package com.jgexf.gexf.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.jgexf.gexf.GraphData;
+
+/**
+ * Byte-level scanner for the GEXF element vocabulary, an alternative to StAX for
+ * {@link GraphParser#parseGEXF(String, GraphHandler)}.
+ * <p>
+ * It reads UTF-8 (or ASCII) bytes through one large buffer, finds tags with plain byte scans,
+ * matches element and attribute names against byte constants and decodes only the attribute
+ * values a {@link GraphHandler} callback takes, straight from the buffer into Strings (a plain
+ * copy for ASCII values without entities). Text, comments, processing instructions, CDATA and
+ * elements outside the vocabulary (e.g. viz) are skipped. Attribute values are normalized and
+ * entities decoded as an XML parser would.
+ * </p>
+ * Documents in other encodings or with a DOCTYPE (and so possibly custom entities) are declined
+ * before any callback is made; {@link #replay()} then gives the stream back from its start for StAX.
+ * The scanner does not check well-formedness beyond what it needs to find tags.
+ * @author bskarin
+ *
+ */
+public class GEXFTokenizer {
+
+	/**
+	 * Default initial buffer size, grown for larger tags
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private static final byte[] GRAPH = bytes("graph");
+	private static final byte[] ATTRIBUTES = bytes("attributes");
+	private static final byte[] ATTRIBUTE = bytes("attribute");
+	private static final byte[] NODES = bytes("nodes");
+	private static final byte[] NODE = bytes("node");
+	private static final byte[] EDGES = bytes("edges");
+	private static final byte[] EDGE = bytes("edge");
+	private static final byte[] ATTVALUE = bytes("attvalue");
+	private static final byte[] SPELL = bytes("spell");
+
+	private static final byte[] ID = bytes("id");
+	private static final byte[] LABEL = bytes("label");
+	private static final byte[] START = bytes("start");
+	private static final byte[] END = bytes("end");
+	private static final byte[] SOURCE = bytes("source");
+	private static final byte[] TARGET = bytes("target");
+	private static final byte[] WEIGHT = bytes("weight");
+	private static final byte[] FOR = bytes("for");
+	private static final byte[] VALUE = bytes("value");
+	private static final byte[] TITLE = bytes("title");
+	private static final byte[] TYPE = bytes("type");
+	private static final byte[] DATAMODE = bytes("datamode");
+	private static final byte[] CLASS = bytes("class");
+	private static final byte[] MODE = bytes("mode");
+	private static final byte[] DEFAULTEDGETYPE = bytes("defaultedgetype");
+	private static final byte[] TIMEFORMAT = bytes("timeformat");
+	private static final byte[] STARTTIME = bytes("starttime");
+	private static final byte[] ENCODING = bytes("encoding");
+
+	private static final byte[] COMMENT_END = bytes("-->");
+	private static final byte[] CDATA_END = bytes("]]>");
+	private static final byte[] PI_END = bytes("?>");
+
+	private static final int PLAIN = 0;
+	private static final int NON_ASCII = 1; //needs UTF-8 decoding
+	private static final int ESCAPED = 2; //has entities or whitespace to normalize
+
+	private final InputStream in;
+	private byte[] buf;
+	private int pos = 0;
+	private int limit = 0;
+	private long discarded = 0; //bytes dropped from the front of the buffer, for offsets into the stream
+	private long tagStart = 0;
+	private long tagEnd = 0;
+	private boolean eof = false;
+	private boolean prolog = true; //nothing may be discarded until the document is accepted
+
+	//attributes of the current start tag, as buffer offsets
+	private int attributeCount;
+	private int[] nameStart = new int[16];
+	private int[] nameEnd = new int[16];
+	private int[] valueStart = new int[16];
+	private int[] valueEnd = new int[16];
+	private int[] valueKind = new int[16];
+
+	/**
+	 * Benchmark against StAX: loads a GEXF file with each parser, checks they read the same graph,
+	 * then times callback-only scans and full loads.
+	 * @param args file name, optional number of timed rounds (default 5)
+	 */
+	public static void main(String args[]) {
+		if(args.length < 1) {
+			System.out.println("Usage: GEXFTokenizer <file.gexf> [rounds]");
+			return;
+		}
+		String filename = args[0];
+		int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+		boolean enabled = GraphParser.isTokenizerEnabled();
+		try {
+			GraphParser.setTokenizerEnabled(false);
+			String stax = toXML(GraphParser.readGEXF(filename));
+			GraphParser.setTokenizerEnabled(true);
+			String tokens = toXML(GraphParser.readGEXF(filename));
+			System.out.println("Same graph: " + stax.equals(tokens));
+			stax = null;
+			tokens = null;
+
+			long[] scan = new long[2];
+			long[] load = new long[2];
+			for(int r = 0; r <= rounds; r++) {
+				for(int p = 0; p < 2; p++) {
+					GraphParser.setTokenizerEnabled(p == 1);
+					long start = System.nanoTime();
+					GraphParser.parseGEXF(filename, new DefaultGraphHandler());
+					long scanned = System.nanoTime();
+					GraphParser.readGEXF(filename);
+					long loaded = System.nanoTime();
+					if(r > 0) { //first round warms up
+						scan[p] += scanned - start;
+						load[p] += loaded - scanned;
+					}
+				}
+			}
+			System.out.println(String.format("Scan: StAX %d ms, tokenizer %d ms, speedup %.2fx",
+					scan[0] / rounds / 1000000, scan[1] / rounds / 1000000, (double) scan[0] / scan[1]));
+			System.out.println(String.format("Load: StAX %d ms, tokenizer %d ms, speedup %.2fx",
+					load[0] / rounds / 1000000, load[1] / rounds / 1000000, (double) load[0] / load[1]));
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		} finally {
+			GraphParser.setTokenizerEnabled(enabled);
+		}
+	}
+
+	private static String toXML(GraphData graphData) throws IOException {
+		StringWriter out = new StringWriter();
+		graphData.toXML(out);
+		return out.toString();
+	}
+
+	/**
+	 * @param in the document, not closed by the tokenizer
+	 */
+	public GEXFTokenizer(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in the document, not closed by the tokenizer
+	 * @param bufferSize initial buffer size
+	 */
+	public GEXFTokenizer(InputStream in, int bufferSize) {
+		this.in = in;
+		this.buf = new byte[Math.max(bufferSize, 1 << 10)];
+	}
+
+	/**
+	 * Scan the document, sending its contents to the handler.
+	 * @param handler
+	 * @return false, without any callback, if the document needs a full XML parser
+	 * @throws IOException
+	 * @throws XMLStreamException if the document is malformed
+	 */
+	public boolean parse(GraphHandler handler) throws IOException, XMLStreamException {
+		if(!readProlog()) {
+			return false;
+		}
+		prolog = false;
+		while(!handler.isDone()) {
+			if(!nextTag()) {
+				break;
+			}
+			byte b = buf[pos + 1];
+			if(b == '/') {
+				endTag(handler);
+			}
+			else if(b == '?') {
+				skipPast(PI_END);
+			}
+			else if(b == '!') {
+				if(startsWith("<!--")) {
+					skipPast(COMMENT_END);
+				}
+				else if(startsWith("<![CDATA[")) {
+					skipPast(CDATA_END);
+				}
+				else {
+					throw error("Unexpected markup declaration");
+				}
+			}
+			else {
+				startTag(handler);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The stream from its start, for a parser to take over after {@link #parse(GraphHandler)} declined.
+	 * @return stream of the whole document
+	 */
+	public InputStream replay() {
+		return new SequenceInputStream(new ByteArrayInputStream(buf, 0, limit), in);
+	}
+
+	/**
+	 * @return stream offset of the tag being reported, valid during a callback
+	 */
+	long getTagStart() {
+		return tagStart;
+	}
+
+	/**
+	 * @return stream offset just past the tag being reported, valid during a callback
+	 */
+	long getTagEnd() {
+		return tagEnd;
+	}
+
+	/**
+	 * Check everything before the root element.
+	 * @return false if the document must go to a full parser
+	 */
+	private boolean readProlog() throws IOException, XMLStreamException {
+		ensure(3);
+		if(limit - pos >= 3 && buf[0] == (byte) 0xEF && buf[1] == (byte) 0xBB && buf[2] == (byte) 0xBF) {
+			pos = 3; //UTF-8 byte order mark
+		}
+		while(true) {
+			skipWhitespace();
+			if(!ensure(2) || buf[pos] != '<') {
+				return false; //other encodings, or not a document at all
+			}
+			if(startsWith("<?xml") && ensure(6) && isWhitespace(buf[pos + 5])) {
+				int end = findTagEnd();
+				String encoding = findValue(pos, end, ENCODING);
+				if(encoding != null && !encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("US-ASCII")
+						&& !encoding.equalsIgnoreCase("ASCII")) {
+					return false;
+				}
+				pos = end + 1;
+			}
+			else if(buf[pos + 1] == '?') {
+				skipPast(PI_END);
+			}
+			else if(startsWith("<!--")) {
+				skipPast(COMMENT_END);
+			}
+			else if(buf[pos + 1] == '!') {
+				return false; //DOCTYPE
+			}
+			else {
+				return true;
+			}
+		}
+	}
+
+	private void startTag(GraphHandler handler) throws IOException, XMLStreamException {
+		int end = findTagEnd();
+		tagStart = discarded + pos;
+		tagEnd = discarded + end + 1;
+		int nameFrom = pos + 1;
+		int nameTo = nameFrom;
+		int local = nameFrom;
+		while(nameTo < end && !isWhitespace(buf[nameTo]) && buf[nameTo] != '/') {
+			if(buf[nameTo] == ':') {
+				local = nameTo + 1;
+			}
+			nameTo++;
+		}
+		boolean empty = (buf[end - 1] == '/');
+		parseAttributes(nameTo, empty ? end - 1 : end);
+		if(is(local, nameTo, NODE)) {
+			handler.startNode(value(ID), value(LABEL), value(START), value(END));
+			if(empty) {
+				handler.endNode();
+			}
+		}
+		else if(is(local, nameTo, EDGE)) {
+			handler.startEdge(value(ID), value(SOURCE), value(TARGET), value(WEIGHT), value(START), value(END));
+			if(empty) {
+				handler.endEdge();
+			}
+		}
+		else if(is(local, nameTo, ATTVALUE)) {
+			handler.attvalue(value(FOR), value(VALUE), value(START), value(END));
+		}
+		else if(is(local, nameTo, SPELL)) {
+			handler.spell(value(START), value(END));
+		}
+		else if(is(local, nameTo, ATTRIBUTE)) {
+			handler.attribute(value(ID), value(TITLE), value(TYPE), value(DATAMODE));
+		}
+		else if(is(local, nameTo, ATTRIBUTES)) {
+			handler.startAttributes(value(CLASS), value(MODE));
+			if(empty) {
+				handler.endAttributes();
+			}
+		}
+		else if(is(local, nameTo, NODES)) {
+			handler.startNodes();
+		}
+		else if(is(local, nameTo, EDGES)) {
+			handler.startEdges();
+		}
+		else if(is(local, nameTo, GRAPH)) {
+			handler.graph(value(DEFAULTEDGETYPE), value(TIMEFORMAT), value(MODE), value(STARTTIME));
+		}
+		pos = end + 1;
+	}
+
+	private void endTag(GraphHandler handler) throws IOException, XMLStreamException {
+		int end = findTagEnd();
+		tagStart = discarded + pos;
+		tagEnd = discarded + end + 1;
+		int nameTo = pos + 2;
+		int local = nameTo;
+		while(nameTo < end && !isWhitespace(buf[nameTo])) {
+			if(buf[nameTo] == ':') {
+				local = nameTo + 1;
+			}
+			nameTo++;
+		}
+		if(is(local, nameTo, NODE)) {
+			handler.endNode();
+		}
+		else if(is(local, nameTo, EDGE)) {
+			handler.endEdge();
+		}
+		else if(is(local, nameTo, ATTRIBUTES)) {
+			handler.endAttributes();
+		}
+		pos = end + 1;
+	}
+
+	/**
+	 * Record the attributes between the element name and the end of the tag.
+	 */
+	private void parseAttributes(int from, int to) throws XMLStreamException {
+		attributeCount = 0;
+		int i = from;
+		while(true) {
+			while(i < to && isWhitespace(buf[i])) {
+				i++;
+			}
+			if(i >= to) {
+				return;
+			}
+			int ns = i;
+			while(i < to && buf[i] != '=' && !isWhitespace(buf[i])) {
+				i++;
+			}
+			int ne = i;
+			while(i < to && isWhitespace(buf[i])) {
+				i++;
+			}
+			if(i >= to || buf[i] != '=') {
+				throw error("Attribute without value");
+			}
+			i++;
+			while(i < to && isWhitespace(buf[i])) {
+				i++;
+			}
+			if(i >= to || (buf[i] != '"' && buf[i] != '\'')) {
+				throw error("Unquoted attribute value");
+			}
+			byte quote = buf[i++];
+			int vs = i;
+			int kind = PLAIN;
+			while(i < to && buf[i] != quote) {
+				byte b = buf[i];
+				if(b < 0) {
+					kind |= NON_ASCII;
+				}
+				else if(b == '&' || b == '\t' || b == '\n' || b == '\r') {
+					kind |= ESCAPED;
+				}
+				i++;
+			}
+			if(i >= to) {
+				throw error("Unterminated attribute value");
+			}
+			if(attributeCount == nameStart.length) {
+				growAttributes();
+			}
+			nameStart[attributeCount] = ns;
+			nameEnd[attributeCount] = ne;
+			valueStart[attributeCount] = vs;
+			valueEnd[attributeCount] = i;
+			valueKind[attributeCount] = kind;
+			attributeCount++;
+			i++;
+		}
+	}
+
+	/**
+	 * Decode the value of an unprefixed attribute of the current tag.
+	 * @return the value, null if absent
+	 */
+	private String value(byte[] name) throws XMLStreamException {
+		for(int a = 0; a < attributeCount; a++) {
+			if(nameEnd[a] - nameStart[a] == name.length && is(nameStart[a], nameEnd[a], name)) {
+				return decode(valueStart[a], valueEnd[a], valueKind[a]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Value of an attribute inside a tag that has not been split into attributes (the XML declaration).
+	 */
+	private String findValue(int from, int to, byte[] name) throws XMLStreamException {
+		parseAttributes(from + 5, buf[to - 1] == '?' ? to - 1 : to);
+		return value(name);
+	}
+
+	private String decode(int from, int to, int kind) throws XMLStreamException {
+		if(kind == PLAIN) {
+			return new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+		}
+		String text = new String(buf, from, to - from, StandardCharsets.UTF_8);
+		if((kind & ESCAPED) == 0) {
+			return text;
+		}
+		StringBuilder buddy = new StringBuilder(text.length());
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c == '\r') {
+				//line ends are normalized first, then whitespace to spaces
+				if(i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+				buddy.append(' ');
+			}
+			else if(c == '\n' || c == '\t') {
+				buddy.append(' ');
+			}
+			else if(c == '&') {
+				int semi = text.indexOf(';', i);
+				if(semi < 0) {
+					throw error("Unterminated entity reference");
+				}
+				String entity = text.substring(i + 1, semi);
+				switch(entity) {
+				case "lt":
+					buddy.append('<');
+					break;
+				case "gt":
+					buddy.append('>');
+					break;
+				case "amp":
+					buddy.append('&');
+					break;
+				case "quot":
+					buddy.append('"');
+					break;
+				case "apos":
+					buddy.append('\'');
+					break;
+				default:
+					if(!entity.startsWith("#")) {
+						throw error("Undeclared entity &" + entity + ";");
+					}
+					try {
+						int code = (entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1)));
+						buddy.appendCodePoint(code);
+					} catch (IllegalArgumentException e) {
+						throw error("Bad character reference &" + entity + ";");
+					}
+					break;
+				}
+				i = semi;
+			}
+			else {
+				buddy.append(c);
+			}
+		}
+		return buddy.toString();
+	}
+
+	/**
+	 * Move to the next '<', reading more as needed.
+	 * @return false at the end of the document
+	 */
+	private boolean nextTag() throws IOException {
+		while(true) {
+			for(int i = pos; i < limit; i++) {
+				if(buf[i] == '<') {
+					pos = i;
+					return ensure(2);
+				}
+			}
+			pos = limit;
+			if(!fill()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Make sure the whole tag starting at pos is buffered.
+	 * @return index of the closing '>'
+	 */
+	private int findTagEnd() throws IOException, XMLStreamException {
+		while(true) {
+			byte quote = 0;
+			for(int i = pos + 1; i < limit; i++) {
+				byte b = buf[i];
+				if(quote != 0) {
+					if(b == quote) {
+						quote = 0;
+					}
+				}
+				else if(b == '"' || b == '\'') {
+					quote = b;
+				}
+				else if(b == '>') {
+					return i;
+				}
+			}
+			if(!fill()) {
+				throw error("Unterminated tag");
+			}
+		}
+	}
+
+	/**
+	 * Move past the next occurrence of the terminator.
+	 */
+	private void skipPast(byte[] terminator) throws IOException, XMLStreamException {
+		int from = pos + 1;
+		while(true) {
+			outer:
+			for(int i = from; i <= limit - terminator.length; i++) {
+				for(int j = 0; j < terminator.length; j++) {
+					if(buf[i + j] != terminator[j]) {
+						continue outer;
+					}
+				}
+				pos = i + terminator.length;
+				return;
+			}
+			//Keep what could be the start of the terminator
+			from = Math.max(from, limit - terminator.length + 1);
+			if(!prolog) {
+				pos = from;
+			}
+			if(!fill()) {
+				throw error("Unterminated markup");
+			}
+			if(!prolog) {
+				from = pos;
+			}
+		}
+	}
+
+	private void skipWhitespace() throws IOException {
+		while(ensure(1) && isWhitespace(buf[pos])) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Make sure n bytes from pos are buffered.
+	 * @return false if the document ends first
+	 */
+	private boolean ensure(int n) throws IOException {
+		while(limit - pos < n) {
+			if(!fill()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read more of the stream, dropping the bytes before pos (except in the prolog) and growing
+	 * the buffer if it is full.
+	 * @return false if nothing more could be read
+	 */
+	private boolean fill() throws IOException {
+		if(eof) {
+			return false;
+		}
+		if(!prolog && pos > 0) {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			discarded += pos;
+			limit -= pos;
+			pos = 0;
+		}
+		if(limit == buf.length) {
+			byte[] grown = new byte[buf.length * 2];
+			System.arraycopy(buf, 0, grown, 0, limit);
+			buf = grown;
+		}
+		int read = in.read(buf, limit, buf.length - limit);
+		if(read <= 0) {
+			eof = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	private boolean startsWith(String prefix) throws IOException {
+		if(!ensure(prefix.length())) {
+			return false;
+		}
+		for(int i = 0; i < prefix.length(); i++) {
+			if(buf[pos + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean is(int from, int to, byte[] name) {
+		if(to - from != name.length) {
+			return false;
+		}
+		for(int i = 0; i < name.length; i++) {
+			if(buf[from + i] != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void growAttributes() {
+		int size = nameStart.length * 2;
+		nameStart = Arrays.copyOf(nameStart, size);
+		nameEnd = Arrays.copyOf(nameEnd, size);
+		valueStart = Arrays.copyOf(valueStart, size);
+		valueEnd = Arrays.copyOf(valueEnd, size);
+		valueKind = Arrays.copyOf(valueKind, size);
+	}
+
+	private XMLStreamException error(String message) {
+		return new XMLStreamException(message + " at byte " + (discarded + pos));
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,259 @@
+package com.jgexf.gexf.util;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSchema;
+import com.jgexf.gexf.GraphSpell;
+import com.jgexf.gexf.GraphSpellList;
+
+/**
+ * {@link GraphHandler} that builds a {@link GraphData} from the parsed document,
+ * optionally stopping once a number of nodes or edges has been read.
+ * <p>
+ * Element times are only read for dynamic graphs. Attribute values are resolved against the
+ * declared attributes and added through {@link GraphElement#addAttribute(GraphAttributeValue)},
+ * so values at duplicate times are dropped.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class GraphDataHandler extends DefaultGraphHandler {
+
+	private final int maxNodes;
+	private final int maxEdges;
+	private GraphData graphData;
+	private boolean dynamicGraph = false;
+	private String timeFormat = "";
+	private GraphSchema nodeSchema;
+	private GraphSchema edgeSchema;
+	private GraphAttributeList attributeList;
+	private GraphElement element;
+	private GraphSpellList spells;
+	private int nodeCount = 0;
+	private int edgeCount = 0;
+	private boolean sharedHeader = false;
+	private boolean keepDataModes = false;
+
+	/**
+	 * Read the whole graph.
+	 */
+	public GraphDataHandler() {
+		this(Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxNodes stop once this many nodes have been read
+	 * @param maxEdges stop once this many edges have been read
+	 */
+	public GraphDataHandler(int maxNodes, int maxEdges) {
+		this.maxNodes = maxNodes;
+		this.maxEdges = maxEdges;
+	}
+
+	/**
+	 * Read the elements of part of a document against a header parsed beforehand, e.g. a chunk of a
+	 * section parsed in parallel. The graph and attribute declarations in the document are ignored
+	 * and the elements are collected in a new graph without attribute lists.
+	 * @param header the graph's header
+	 * @param nodeSchema resolved from the header, shared read-only between chunks
+	 * @param edgeSchema resolved from the header, shared read-only between chunks
+	 */
+	GraphDataHandler(GraphData header, GraphSchema nodeSchema, GraphSchema edgeSchema) {
+		this();
+		this.sharedHeader = true;
+		this.timeFormat = header.getTimeFormat();
+		this.dynamicGraph = "dynamic".equals(header.getMode());
+		this.nodeSchema = nodeSchema;
+		this.edgeSchema = edgeSchema;
+		graphData = new GraphData();
+	}
+
+	/**
+	 * @return the graph read so far, null before the graph element
+	 */
+	public GraphData getGraphData() {
+		return graphData;
+	}
+
+	/**
+	 * @return true if declared attributes keep their data mode (e.g. mean, sum)
+	 */
+	public boolean isKeepDataModes() {
+		return keepDataModes;
+	}
+
+	/**
+	 * Data modes only matter to graphs that will aggregate more values, such as the parameter
+	 * file of a compiler, so they are dropped unless asked for.
+	 * @param keepDataModes true for declared attributes to keep their data mode
+	 */
+	public void setKeepDataModes(boolean keepDataModes) {
+		this.keepDataModes = keepDataModes;
+	}
+
+	/**
+	 * @return nodes added to the graph so far
+	 */
+	int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return edges added to the graph so far
+	 */
+	int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @return the attribute list being declared, null outside an attributes element
+	 */
+	protected GraphAttributeList getAttributeList() {
+		return attributeList;
+	}
+
+	@Override
+	public void graph(String defaultEdgeType, String timeFormat, String mode, String startTime) {
+		if(sharedHeader) {
+			return;
+		}
+		this.timeFormat = timeFormat;
+		dynamicGraph = "dynamic".equals(mode);
+		graphData = new GraphData(defaultEdgeType, timeFormat, mode);
+		graphData.setStartTime(dynamicGraph ? startTime : "");
+	}
+
+	@Override
+	public void startAttributes(String elementClass, String mode) {
+		if(sharedHeader) {
+			return;
+		}
+		attributeList = new GraphAttributeList(elementClass, mode);
+	}
+
+	@Override
+	public void attribute(String id, String title, String type, String dataMode) {
+		if(sharedHeader) {
+			return;
+		}
+		GraphAttribute graphAttribute = new GraphAttribute(id, title, type);
+		if(keepDataModes) {
+			graphAttribute.setDataMode(dataMode);
+		}
+		attributeList.add(graphAttribute);
+	}
+
+	@Override
+	public void endAttributes() {
+		if(sharedHeader) {
+			return;
+		}
+		graphData.getAttributeLists().add(attributeList);
+		attributeList = null;
+	}
+
+	@Override
+	public void startNodes() {
+		if(sharedHeader) {
+			return;
+		}
+		nodeSchema = graphData.getSchema(GraphAttributeList.NODE);
+		edgeSchema = graphData.getSchema(GraphAttributeList.EDGE);
+	}
+
+	@Override
+	public void startNode(String id, String label, String start, String end) {
+		GraphNode graphNode = new GraphNode(id, label);
+		setTime(graphNode, start, end);
+		element = graphNode;
+	}
+
+	@Override
+	public void endNode() {
+		endElement();
+		graphData.addNode((GraphNode) element);
+		element = null;
+		nodeCount++;
+	}
+
+	@Override
+	public void startEdges() {
+		startNodes();
+	}
+
+	@Override
+	public void startEdge(String id, String source, String target, String weight, String start, String end) {
+		if(id == null) // all edges must have an ID of some kind; this quick fix doesn't allow multigraphs
+			id = source + "||" + target;
+		GraphEdge graphEdge = new GraphEdge(id, source, target);
+		graphEdge.setWeight(weight);
+		setTime(graphEdge, start, end);
+		element = graphEdge;
+	}
+
+	@Override
+	public void endEdge() {
+		endElement();
+		graphData.addEdge((GraphEdge) element);
+		element = null;
+		edgeCount++;
+	}
+
+	@Override
+	public void spell(String start, String end) {
+		if(element == null) {
+			return;
+		}
+		//Collected for the element and set once at its end
+		if(spells == null) {
+			spells = element.getSpells();
+		}
+		spells.addOrAppendSpell(new GraphSpell(orBlank(start), orBlank(end), timeFormat));
+	}
+
+	@Override
+	public void attvalue(String id, String value, String start, String end) {
+		if(element == null) {
+			return;
+		}
+		GraphAttributeValue gav = new GraphAttributeValue(id, value);
+		GraphSchema schema = (element instanceof GraphNode ? nodeSchema : edgeSchema);
+		gav.setGraphAttribute(schema == null ? null : schema.getAttributeByID(id));
+		if(dynamicGraph) {
+			gav.setFormat(timeFormat);
+			gav.setStart(orBlank(start)); gav.setEnd(orBlank(end));
+		}
+		element.addAttribute(gav);
+	}
+
+	@Override
+	public boolean isDone() {
+		return nodeCount >= maxNodes || edgeCount >= maxEdges;
+	}
+
+	private void setTime(GraphElement elem, String start, String end) {
+		if(dynamicGraph) {
+			elem.setFormat(timeFormat);
+			elem.setStart(orBlank(start)); elem.setEnd(orBlank(end));
+		}
+	}
+
+	private void endElement() {
+		if(spells != null) {
+			element.setSpells(spells);
+			spells = null;
+		}
+	}
+
+	/**
+	 * Missing start/end values are read as blank.
+	 */
+	private static String orBlank(String time) {
+		return (time == null ? "" : time);
+	}
+}
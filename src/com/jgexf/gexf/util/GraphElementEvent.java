@@ -0,0 +1,84 @@
+package com.jgexf.gexf.util;
+
+/**
+ * A streamed node or edge. Reused by the parser for every element of its kind.
+ * @author bskarin
+ *
+ */
+public class GraphElementEvent extends GraphTimeEvent {
+
+	private final boolean edge;
+	private String id;
+	private String label;
+	private String source;
+	private String target;
+	private String weight;
+
+	GraphElementEvent(boolean edge) {
+		this.edge = edge;
+	}
+
+	void set(String id, String label, String source, String target, String weight) {
+		this.id = id;
+		this.label = label;
+		this.source = source;
+		this.target = target;
+		this.weight = weight;
+	}
+
+	/**
+	 * @return true for an edge, false for a node
+	 */
+	public boolean isEdge() {
+		return edge;
+	}
+
+	/**
+	 * @return the id; for edges without one, source||target as when loading
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the node label, null for edges
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * @return the edge source, null for nodes
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the edge target, null for nodes
+	 */
+	public String getTarget() {
+		return target;
+	}
+
+	/**
+	 * @return the edge weight as written, null if absent
+	 */
+	public String getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the edge weight, 1 if absent as in GEXF, NaN if not a number
+	 */
+	public double getWeightAsDouble() {
+		if(weight == null || weight.isEmpty()) {
+			return 1;
+		}
+		try {
+			return Double.parseDouble(weight);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Decides from its id, label, endpoints and times whether a node or edge is loaded,
+ * before its spells and attribute values are read. See {@link GraphLoadOptions}.
+ * @author bskarin
+ *
+ */
+public interface GraphElementFilter {
+
+	/**
+	 * @param element reused for every element, only valid during the call
+	 * @return true to keep the element
+	 */
+	boolean accept(GraphElementEvent element);
+}
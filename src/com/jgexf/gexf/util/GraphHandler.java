@@ -0,0 +1,107 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Receives the contents of a GEXF document from {@link GraphParser#parseGEXF(String, GraphHandler)}
+ * as typed callbacks, in document order.
+ * <p>
+ * XML attributes are passed as they appear in the document, null when absent. Spells and attribute
+ * values belong to the node or edge most recently started. Extend {@link DefaultGraphHandler} to
+ * implement only the callbacks of interest.
+ * </p>
+ * @author bskarin
+ *
+ */
+public interface GraphHandler {
+
+	/**
+	 * The graph element.
+	 * @param defaultEdgeType
+	 * @param timeFormat
+	 * @param mode static or dynamic
+	 * @param startTime
+	 */
+	void graph(String defaultEdgeType, String timeFormat, String mode, String startTime);
+
+	/**
+	 * Start of an attribute declaration list.
+	 * @param elementClass node or edge
+	 * @param mode
+	 */
+	void startAttributes(String elementClass, String mode);
+
+	/**
+	 * An attribute declaration in the current list.
+	 * @param id
+	 * @param title
+	 * @param type
+	 * @param dataMode
+	 */
+	void attribute(String id, String title, String type, String dataMode);
+
+	/**
+	 * End of the current attribute declaration list.
+	 */
+	void endAttributes();
+
+	/**
+	 * Start of the nodes section, after all attribute declarations.
+	 */
+	void startNodes();
+
+	/**
+	 * Start of a node; its spells and attribute values follow.
+	 * @param id
+	 * @param label
+	 * @param start
+	 * @param end
+	 */
+	void startNode(String id, String label, String start, String end);
+
+	/**
+	 * End of the current node.
+	 */
+	void endNode();
+
+	/**
+	 * Start of the edges section.
+	 */
+	void startEdges();
+
+	/**
+	 * Start of an edge; its spells and attribute values follow.
+	 * @param id
+	 * @param source
+	 * @param target
+	 * @param weight
+	 * @param start
+	 * @param end
+	 */
+	void startEdge(String id, String source, String target, String weight, String start, String end);
+
+	/**
+	 * End of the current edge.
+	 */
+	void endEdge();
+
+	/**
+	 * A spell of the current node or edge.
+	 * @param start
+	 * @param end
+	 */
+	void spell(String start, String end);
+
+	/**
+	 * An attribute value of the current node or edge.
+	 * @param id the attribute it is for
+	 * @param value
+	 * @param start
+	 * @param end
+	 */
+	void attvalue(String id, String value, String start, String end);
+
+	/**
+	 * Checked before every event, so a handler can stop the parse early.
+	 * @return true if no more of the document is needed
+	 */
+	boolean isDone();
+}
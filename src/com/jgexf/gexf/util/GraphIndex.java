@@ -0,0 +1,430 @@
+package com.jgexf.gexf.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.jgexf.gexf.GraphData;
+
+/**
+ * Sidecar index of a GEXF file mapping node and edge ids to the byte range of their elements,
+ * so single elements can be read without parsing the whole file.
+ * <p>
+ * {@link #build(String)} makes one pass over the file with the {@link GEXFTokenizer} and writes
+ * the index next to it ({@link #getIndexFileName(String)}). {@link #read(Collection, Collection)}
+ * then finds the requested ids by binary search in the index file, reads just their elements and
+ * parses them behind the file's header, with the same result for those elements as a full load.
+ * </p>
+ * Layout (big-endian, version {@value #VERSION}):
+ * <pre>
+ * header   int magic "JGXI", int version, long source length, long source modification time,
+ *          long end of the GEXF header (the first section tag, -1 if none), int node count, int edge count
+ * nodes    one record per node id in id order: long id offset, long element offset, int element length
+ * edges    one record per edge id, as nodes
+ * ids      int length and UTF-8 bytes of each id
+ * </pre>
+ * Where an id repeats, the first element wins, as when loading. Only plain UTF-8 files can be
+ * indexed; the index is rejected once the GEXF file changes.
+ * @author bskarin
+ *
+ */
+public class GraphIndex implements Closeable {
+
+	/**
+	 * "JGXI"
+	 */
+	public static final int MAGIC = 0x4A475849;
+
+	/**
+	 * Current format version, bumped on incompatible changes
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 4;
+	private static final int RECORD_SIZE = 8 + 8 + 4;
+
+	private final String gexfFile;
+	private final RandomAccessFile index;
+	private final long headerEnd;
+	private final int nodeCount;
+	private final int edgeCount;
+
+	private GraphIndex(String gexfFile, RandomAccessFile index, long headerEnd, int nodeCount, int edgeCount) {
+		this.gexfFile = gexfFile;
+		this.index = index;
+		this.headerEnd = headerEnd;
+		this.nodeCount = nodeCount;
+		this.edgeCount = edgeCount;
+	}
+
+	/**
+	 * @param gexfFile
+	 * @return the sidecar file name used for a GEXF file
+	 */
+	public static String getIndexFileName(String gexfFile) {
+		return gexfFile + ".idx";
+	}
+
+	/**
+	 * Index a GEXF file into its sidecar file.
+	 * @param gexfFile
+	 * @throws IOException if the file can't be indexed (compressed, not UTF-8) or written
+	 * @throws XMLStreamException if the file is malformed
+	 */
+	public static void build(String gexfFile) throws IOException, XMLStreamException {
+		build(gexfFile, getIndexFileName(gexfFile));
+	}
+
+	/**
+	 * Index a GEXF file.
+	 * @param gexfFile
+	 * @param indexFile
+	 * @throws IOException if the file can't be indexed (compressed, not UTF-8) or written
+	 * @throws XMLStreamException if the file is malformed
+	 */
+	public static void build(String gexfFile, String indexFile) throws IOException, XMLStreamException {
+		File source = new File(gexfFile);
+		long length = source.length();
+		long modified = source.lastModified();
+		final List<Entry> nodes = new ArrayList<Entry>();
+		final List<Entry> edges = new ArrayList<Entry>();
+		final long[] header = { -1 };
+		InputStream in = new BufferedInputStream(new FileInputStream(source), 1 << 16);
+		try {
+			in.mark(2);
+			if(in.read() == 0x1f && in.read() == 0x8b) {
+				throw new IOException("Can't index a compressed file: " + gexfFile);
+			}
+			in.reset();
+			final GEXFTokenizer tokenizer = new GEXFTokenizer(in);
+			GraphHandler handler = new DefaultGraphHandler() {
+				private final ArrayDeque<Entry> open = new ArrayDeque<Entry>(); //nodes can nest
+
+				@Override
+				public void startNodes() {
+					startSection();
+				}
+
+				@Override
+				public void startEdges() {
+					startSection();
+				}
+
+				@Override
+				public void startNode(String id, String label, String start, String end) {
+					startElement(id, nodes);
+				}
+
+				@Override
+				public void endNode() {
+					endElement();
+				}
+
+				@Override
+				public void startEdge(String id, String source, String target, String weight, String start, String end) {
+					if(id == null)
+						id = source + "||" + target;
+					startElement(id, edges);
+				}
+
+				@Override
+				public void endEdge() {
+					endElement();
+				}
+
+				private void startSection() {
+					if(header[0] < 0) {
+						header[0] = tokenizer.getTagStart();
+					}
+				}
+
+				private void startElement(String id, List<Entry> entries) {
+					Entry element = new Entry(id, tokenizer.getTagStart());
+					if(id != null) {
+						entries.add(element);
+					}
+					open.push(element);
+				}
+
+				private void endElement() {
+					if(!open.isEmpty()) {
+						Entry element = open.pop();
+						element.length = (int) (tokenizer.getTagEnd() - element.start);
+					}
+				}
+			};
+			if(!tokenizer.parse(handler)) {
+				throw new IOException("Can't index a file that is not plain UTF-8 GEXF: " + gexfFile);
+			}
+		} finally {
+			in.close();
+		}
+
+		List<Entry> nodeIds = sortUnique(nodes);
+		List<Entry> edgeIds = sortUnique(edges);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(length);
+			out.writeLong(modified);
+			out.writeLong(header[0]);
+			out.writeInt(nodeIds.size());
+			out.writeInt(edgeIds.size());
+			long idOffset = HEADER_SIZE + (long) RECORD_SIZE * (nodeIds.size() + edgeIds.size());
+			List<byte[]> ids = new ArrayList<byte[]>(nodeIds.size() + edgeIds.size());
+			idOffset = writeRecords(out, nodeIds, ids, idOffset);
+			writeRecords(out, edgeIds, ids, idOffset);
+			for(byte[] id : ids) {
+				out.writeInt(id.length);
+				out.write(id);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Open the sidecar index of a GEXF file.
+	 * @param gexfFile
+	 * @return the index
+	 * @throws IOException if there is no usable index for the file as it is now
+	 */
+	public static GraphIndex open(String gexfFile) throws IOException {
+		File source = new File(gexfFile);
+		RandomAccessFile index = new RandomAccessFile(getIndexFileName(gexfFile), "r");
+		try {
+			if(index.length() < HEADER_SIZE || index.readInt() != MAGIC) {
+				throw new IOException("Not a graph index");
+			}
+			int version = index.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported graph index version " + version);
+			}
+			if(index.readLong() != source.length() || index.readLong() != source.lastModified()) {
+				throw new IOException("Graph index is out of date: " + gexfFile);
+			}
+			long headerEnd = index.readLong();
+			int nodeCount = index.readInt();
+			int edgeCount = index.readInt();
+			return new GraphIndex(gexfFile, index, headerEnd, nodeCount, edgeCount);
+		} catch (IOException e) {
+			index.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open the sidecar index of a GEXF file, building it first if it is missing or out of date.
+	 * @param gexfFile
+	 * @return the index
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static GraphIndex openOrBuild(String gexfFile) throws IOException, XMLStreamException {
+		try {
+			return open(gexfFile);
+		} catch (IOException e) {
+			build(gexfFile);
+			return open(gexfFile);
+		}
+	}
+
+	/**
+	 * @return number of distinct node ids
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return number of distinct edge ids
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @param id
+	 * @return true if the file has a node with this id
+	 * @throws IOException
+	 */
+	public boolean hasNode(String id) throws IOException {
+		return find(id, 0, nodeCount) >= 0;
+	}
+
+	/**
+	 * @param id edge id, source||target for edges without one
+	 * @return true if the file has an edge with this id
+	 * @throws IOException
+	 */
+	public boolean hasEdge(String id) throws IOException {
+		return find(id, nodeCount, edgeCount) >= 0;
+	}
+
+	/**
+	 * Read just the given elements (and the header) of the indexed file. Unknown ids are ignored.
+	 * @param nodeIds nodes to read, may be null
+	 * @param edgeIds edges to read (source||target for edges without an id), may be null
+	 * @return graph with the header and the elements found, in file order
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public GraphData read(Collection<String> nodeIds, Collection<String> edgeIds) throws IOException, XMLStreamException {
+		if(headerEnd < 0) {
+			//No sections, so nothing to find and the file is all header
+			return GraphParser.readGEXF(gexfFile, 0, 0);
+		}
+		List<long[]> nodes = locate(nodeIds, 0, nodeCount);
+		List<long[]> edges = locate(edgeIds, nodeCount, edgeCount);
+		ByteArrayOutputStream document = new ByteArrayOutputStream();
+		RandomAccessFile file = new RandomAccessFile(gexfFile, "r");
+		try {
+			copy(file, 0, headerEnd, document);
+			document.write("<nodes>".getBytes(StandardCharsets.UTF_8));
+			for(long[] range : nodes) {
+				copy(file, range[0], range[1], document);
+			}
+			document.write("</nodes><edges>".getBytes(StandardCharsets.UTF_8));
+			for(long[] range : edges) {
+				copy(file, range[0], range[1], document);
+			}
+			document.write("</edges></graph></gexf>".getBytes(StandardCharsets.UTF_8));
+		} finally {
+			file.close();
+		}
+		GraphDataHandler handler = new GraphDataHandler();
+		GraphParser.parseGEXF(new ByteArrayInputStream(document.toByteArray()), handler);
+		return handler.getGraphData();
+	}
+
+	@Override
+	public void close() throws IOException {
+		index.close();
+	}
+
+	/**
+	 * Byte ranges of the ids found, in file order.
+	 */
+	private List<long[]> locate(Collection<String> ids, int first, int count) throws IOException {
+		List<long[]> ranges = new ArrayList<long[]>();
+		if(ids == null) {
+			return ranges;
+		}
+		for(String id : ids) {
+			int record = find(id, first, count);
+			if(record >= 0) {
+				index.seek(HEADER_SIZE + (long) record * RECORD_SIZE + 8);
+				long start = index.readLong();
+				ranges.add(new long[] { start, start + index.readInt() });
+			}
+		}
+		Collections.sort(ranges, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				return Long.compare(a[0], b[0]);
+			}
+		});
+		//Requested twice, read once
+		for(int i = ranges.size() - 1; i > 0; i--) {
+			if(ranges.get(i)[0] == ranges.get(i - 1)[0]) {
+				ranges.remove(i);
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Binary search over the records [first, first + count).
+	 * @return the record number, -1 if not found
+	 */
+	private int find(String id, int first, int count) throws IOException {
+		int low = first;
+		int high = first + count - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			index.seek(HEADER_SIZE + (long) mid * RECORD_SIZE);
+			index.seek(index.readLong());
+			byte[] bytes = new byte[index.readInt()];
+			index.readFully(bytes);
+			int c = new String(bytes, StandardCharsets.UTF_8).compareTo(id);
+			if(c < 0) {
+				low = mid + 1;
+			}
+			else if(c > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private static void copy(RandomAccessFile file, long start, long end, ByteArrayOutputStream out) throws IOException {
+		byte[] bytes = new byte[(int) (end - start)];
+		file.seek(start);
+		file.readFully(bytes);
+		out.write(bytes);
+	}
+
+	private static long writeRecords(DataOutputStream out, List<Entry> entries, List<byte[]> ids, long idOffset) throws IOException {
+		for(Entry entry : entries) {
+			byte[] id = entry.id.getBytes(StandardCharsets.UTF_8);
+			out.writeLong(idOffset);
+			out.writeLong(entry.start);
+			out.writeInt(entry.length);
+			ids.add(id);
+			idOffset += 4 + id.length;
+		}
+		return idOffset;
+	}
+
+	/**
+	 * Sort by id, keeping the first element of each id.
+	 */
+	private static List<Entry> sortUnique(List<Entry> entries) {
+		Collections.sort(entries, new Comparator<Entry>() { //stable, so document order within an id
+			@Override
+			public int compare(Entry a, Entry b) {
+				return a.id.compareTo(b.id);
+			}
+		});
+		List<Entry> unique = new ArrayList<Entry>(entries.size());
+		for(Entry entry : entries) {
+			if(unique.isEmpty() || !unique.get(unique.size() - 1).id.equals(entry.id)) {
+				unique.add(entry);
+			}
+		}
+		return unique;
+	}
+
+	private static final class Entry {
+		final String id;
+		final long start;
+		int length;
+
+		Entry(String id, long start) {
+			this.id = id;
+			this.start = start;
+		}
+	}
+}
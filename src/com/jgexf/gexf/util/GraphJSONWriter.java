@@ -0,0 +1,445 @@
+package com.jgexf.gexf.util;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSpell;
+import com.jgexf.gexf.GraphTime;
+
+/**
+ * Streams {@link GraphData} to a Writer as JSON, escaping every string in a single pass with
+ * {@link JSONEscaper} and never building a String per element.
+ * <p>
+ * Each element's "attributes" hold one value per attribute title (the latest one added, which is what
+ * parsers kept from the duplicate keys written before). The element's spells and its time-stamped
+ * attribute values can be added as "spells" and "attvalues" arrays.
+ * </p>
+ * Not thread safe, use one instance per output.
+ * @author bskarin
+ *
+ */
+public class GraphJSONWriter {
+
+	/**
+	 * JSON document layouts
+	 */
+	public enum Layout {
+		/**
+		 * {"edges":[...],"nodes":[...]} with sigma.js style id/label/size members and string valued attributes,
+		 * as {@link GraphData#toJSON(Writer)} has always written
+		 */
+		SIGMA,
+		/**
+		 * graphology's serialized graph ({"attributes","options","nodes","edges"} with keys and typed attributes),
+		 * which sigma.js v2 loads with Graph.import
+		 */
+		GRAPHOLOGY,
+		/**
+		 * Newline delimited JSON: a graph line followed by one node or edge per line, in the
+		 * {@link #GRAPHOLOGY} shape plus a "type" member
+		 */
+		NDJSON
+	}
+
+	/**
+	 * Node size written when none is set, so nodes are visible
+	 */
+	public static final double DEFAULT_NODE_SIZE = 10;
+
+	private static final Pattern JSON_NUMBER = Pattern.compile("-?(?:0|[1-9][0-9]*)(?:\\.[0-9]+)?(?:[eE][+-]?[0-9]+)?");
+
+	private final Layout layout;
+	private final boolean includeSpells;
+	private final boolean includeDynamicValues;
+	private final boolean typed;
+	//latest value per attribute title of the element being written, reused between elements
+	private final Map<String, GraphAttributeValue> latest = new LinkedHashMap<String, GraphAttributeValue>();
+
+	/**
+	 * Writer for the {@link Layout#SIGMA} layout without spells or dynamic values.
+	 */
+	public GraphJSONWriter() {
+		this(Layout.SIGMA, false, false);
+	}
+
+	/**
+	 * @param layout document layout
+	 * @param includeSpells write each element's spells
+	 * @param includeDynamicValues write each element's time-stamped attribute values
+	 */
+	public GraphJSONWriter(Layout layout, boolean includeSpells, boolean includeDynamicValues) {
+		this.layout = layout;
+		this.includeSpells = includeSpells;
+		this.includeDynamicValues = includeDynamicValues;
+		this.typed = (layout != Layout.SIGMA);
+	}
+
+	/**
+	 * @return the layout
+	 */
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * @return true if spells are written
+	 */
+	public boolean isIncludeSpells() {
+		return includeSpells;
+	}
+
+	/**
+	 * @return true if time-stamped attribute values are written
+	 */
+	public boolean isIncludeDynamicValues() {
+		return includeDynamicValues;
+	}
+
+	/**
+	 * Write the whole graph.
+	 * @param gd
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(GraphData gd, Writer out) throws IOException {
+		switch(layout) {
+		case SIGMA:
+			out.write("{\"edges\":[");
+			writeEdges(gd, out, ",");
+			out.write("],\"nodes\":[");
+			writeNodes(gd, out, ",");
+			out.write("]}");
+			break;
+		case GRAPHOLOGY:
+			out.write("{");
+			writeGraphHeader(gd, out);
+			out.write(",\"nodes\":[");
+			writeNodes(gd, out, ",");
+			out.write("],\"edges\":[");
+			writeEdges(gd, out, ",");
+			out.write("]}");
+			break;
+		case NDJSON:
+			out.write("{\"type\":\"graph\",");
+			writeGraphHeader(gd, out);
+			out.write("}\n");
+			writeNodes(gd, out, "\n");
+			if(gd.getNodeCount() > 0) {
+				out.write('\n');
+			}
+			writeEdges(gd, out, "\n");
+			if(gd.getEdgeCount() > 0) {
+				out.write('\n');
+			}
+			break;
+		}
+	}
+
+	private void writeNodes(GraphData gd, Writer out, String separator) throws IOException {
+		boolean first = true;
+		for(GraphNode gn : gd.getNodeView()) {
+			if(!first) {
+				out.write(separator);
+			}
+			writeNode(gn, out);
+			first = false;
+		}
+	}
+
+	private void writeEdges(GraphData gd, Writer out, String separator) throws IOException {
+		boolean first = true;
+		for(GraphEdge ge : gd.getEdgeView()) {
+			if(!first) {
+				out.write(separator);
+			}
+			writeEdge(ge, out);
+			first = false;
+		}
+	}
+
+	/**
+	 * Graph level "attributes" and "options" members of the graphology layouts.
+	 */
+	private void writeGraphHeader(GraphData gd, Writer out) throws IOException {
+		out.write("\"attributes\":{");
+		boolean first = true;
+		first = writeOptionalMember(out, "mode", gd.getMode(), first);
+		first = writeOptionalMember(out, "defaultedgetype", gd.getDefaultEdgeType(), first);
+		first = writeOptionalMember(out, "timeformat", gd.getTimeFormat(), first);
+		out.write("},\"options\":{\"type\":\"");
+		String edgeType = gd.getDefaultEdgeType();
+		if("directed".equals(edgeType) || "undirected".equals(edgeType)) {
+			out.write(edgeType);
+		}
+		else {
+			out.write("mixed");
+		}
+		out.write("\",\"multi\":false,\"allowSelfLoops\":true}");
+	}
+
+	private static boolean writeOptionalMember(Writer out, String name, String value, boolean first) throws IOException {
+		if(value == null) {
+			return first;
+		}
+		if(!first) {
+			out.write(',');
+		}
+		out.write('"');
+		out.write(name);
+		out.write("\":");
+		JSONEscaper.writeString(out, value);
+		return false;
+	}
+
+	/**
+	 * Write a single node in this writer's layout.
+	 * @param gn
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeNode(GraphNode gn, Writer out) throws IOException {
+		double size = (gn.getSize() == 0 ? DEFAULT_NODE_SIZE : gn.getSize());
+		if(layout == Layout.SIGMA) {
+			out.write("{\"id\":");
+			JSONEscaper.writeString(out, gn.getId());
+			out.write(",\"label\":");
+			JSONEscaper.writeString(out, gn.getLabel());
+			out.write(",\"size\":");
+			writeNumber(out, size);
+			writeTimes(gn, out);
+			if(!gn.getAttributeView().isEmpty()) {
+				out.write(",\"attributes\":{");
+				writeAttributes(gn, out, true);
+				out.write('}');
+			}
+			writeDynamics(gn, out);
+			out.write('}');
+			return;
+		}
+		out.write(layout == Layout.NDJSON ? "{\"type\":\"node\",\"key\":" : "{\"key\":");
+		JSONEscaper.writeString(out, gn.getId());
+		out.write(",\"attributes\":{\"label\":");
+		JSONEscaper.writeString(out, gn.getLabel());
+		out.write(",\"x\":");
+		writeNumber(out, gn.getxPos());
+		out.write(",\"y\":");
+		writeNumber(out, gn.getyPos());
+		out.write(",\"size\":");
+		writeNumber(out, size);
+		Color color = gn.getColor();
+		if(color != null) {
+			out.write(",\"color\":\"#");
+			String hex = Integer.toHexString(color.getRGB() & 0xffffff);
+			for(int i = hex.length(); i < 6; i++) {
+				out.write('0');
+			}
+			out.write(hex);
+			out.write('"');
+		}
+		writeTimes(gn, out);
+		writeAttributes(gn, out, false);
+		writeDynamics(gn, out);
+		out.write("}}");
+	}
+
+	/**
+	 * Write a single edge in this writer's layout.
+	 * @param ge
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeEdge(GraphEdge ge, Writer out) throws IOException {
+		if(layout == Layout.SIGMA) {
+			out.write("{\"id\":");
+		}
+		else {
+			out.write(layout == Layout.NDJSON ? "{\"type\":\"edge\",\"key\":" : "{\"key\":");
+		}
+		JSONEscaper.writeString(out, ge.getId());
+		out.write(",\"source\":");
+		JSONEscaper.writeString(out, ge.getSource());
+		out.write(",\"target\":");
+		JSONEscaper.writeString(out, ge.getTarget());
+		if(layout == Layout.SIGMA) {
+			writeTimes(ge, out);
+			if(ge.hasWeight() || !ge.getAttributeView().isEmpty()) {
+				out.write(",\"attributes\":{");
+				boolean first = true;
+				if(ge.hasWeight()) {
+					out.write("\"Weight\":");
+					JSONEscaper.writeString(out, ge.getWeight());
+					first = false;
+				}
+				writeAttributes(ge, out, first);
+				out.write('}');
+			}
+			writeDynamics(ge, out);
+			out.write('}');
+			return;
+		}
+		out.write(",\"attributes\":{");
+		boolean first = true;
+		if(ge.hasWeight()) {
+			out.write("\"weight\":");
+			writeTyped(out, ge.getWeight(), true);
+			first = false;
+		}
+		if(ge.hasStart() || ge.hasEnd()) {
+			if(first) {
+				writeTimesFirst(ge, out);
+			}
+			else {
+				writeTimes(ge, out);
+			}
+			first = false;
+		}
+		writeAttributes(ge, out, first);
+		writeDynamics(ge, out);
+		out.write("}}");
+	}
+
+	/**
+	 * ,"start":..,"end":.. for whichever ends the interval has.
+	 */
+	private void writeTimes(GraphTime gt, Writer out) throws IOException {
+		if(gt.hasStart()) {
+			out.write(",\"start\":");
+			writeTyped(out, gt.getStartXML(), typed);
+		}
+		if(gt.hasEnd()) {
+			out.write(",\"end\":");
+			writeTyped(out, gt.getEndXML(), typed);
+		}
+	}
+
+	/**
+	 * {@link #writeTimes(GraphTime, Writer)} as the first members of an object.
+	 */
+	private void writeTimesFirst(GraphTime gt, Writer out) throws IOException {
+		if(gt.hasStart()) {
+			out.write("\"start\":");
+			writeTyped(out, gt.getStartXML(), typed);
+			if(gt.hasEnd()) {
+				out.write(',');
+			}
+		}
+		if(gt.hasEnd()) {
+			out.write("\"end\":");
+			writeTyped(out, gt.getEndXML(), typed);
+		}
+	}
+
+	/**
+	 * Write the latest value of each attribute as title:value members.
+	 * @param first true if no member precedes them in the object
+	 */
+	private void writeAttributes(GraphElement elem, Writer out, boolean first) throws IOException {
+		latest.clear();
+		for(GraphAttributeValue gav : elem.getAttributeView()) {
+			latest.put(titleOf(gav), gav);
+		}
+		for(Map.Entry<String, GraphAttributeValue> entry : latest.entrySet()) {
+			if(!first) {
+				out.write(',');
+			}
+			JSONEscaper.writeString(out, entry.getKey());
+			out.write(':');
+			writeValue(out, entry.getValue());
+			first = false;
+		}
+		latest.clear();
+	}
+
+	/**
+	 * Write the optional "spells" and "attvalues" arrays, each preceded by a comma.
+	 */
+	private void writeDynamics(GraphElement elem, Writer out) throws IOException {
+		if(includeSpells && !elem.getSpellView().isEmpty()) {
+			out.write(",\"spells\":[");
+			boolean first = true;
+			for(GraphSpell gs : elem.getSpellView()) {
+				out.write(first ? "{" : ",{");
+				writeTimesFirst(gs, out);
+				out.write('}');
+				first = false;
+			}
+			out.write(']');
+		}
+		if(includeDynamicValues) {
+			boolean first = true;
+			for(GraphAttributeValue gav : elem.getAttributeView()) {
+				if(!gav.hasStart() && !gav.hasEnd()) {
+					continue;
+				}
+				out.write(first ? ",\"attvalues\":[{\"attribute\":" : ",{\"attribute\":");
+				JSONEscaper.writeString(out, titleOf(gav));
+				out.write(",\"value\":");
+				writeValue(out, gav);
+				writeTimes(gav, out);
+				out.write('}');
+				first = false;
+			}
+			if(!first) {
+				out.write(']');
+			}
+		}
+	}
+
+	private static String titleOf(GraphAttributeValue gav) {
+		GraphAttribute ga = gav.getGraphAttribute();
+		return (ga != null && ga.getTitle() != null ? ga.getTitle() : gav.getId());
+	}
+
+	/**
+	 * Attribute values are strings in the {@link Layout#SIGMA} layout, and typed by their attribute otherwise.
+	 */
+	private void writeValue(Writer out, GraphAttributeValue gav) throws IOException {
+		String value = gav.getValue();
+		if(!typed || value == null) {
+			JSONEscaper.writeString(out, value);
+			return;
+		}
+		GraphAttribute ga = gav.getGraphAttribute();
+		String type = (ga == null ? null : ga.getType());
+		if("boolean".equals(type) && ("true".equals(value) || "false".equals(value))) {
+			out.write(value);
+		}
+		else {
+			writeTyped(out, value, GraphAttribute.isNumericType(type));
+		}
+	}
+
+	/**
+	 * Write text as a bare JSON number if asked to and it is one, or as a string otherwise.
+	 */
+	private static void writeTyped(Writer out, String text, boolean numeric) throws IOException {
+		if(numeric && text != null && JSON_NUMBER.matcher(text).matches()) {
+			out.write(text);
+		}
+		else {
+			JSONEscaper.writeString(out, text);
+		}
+	}
+
+	/**
+	 * JSON has no NaN or infinity, those are written as null.
+	 */
+	private static void writeNumber(Writer out, double d) throws IOException {
+		if(Double.isNaN(d) || Double.isInfinite(d)) {
+			out.write("null");
+		}
+		else {
+			out.write(Double.toString(d));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.jgexf.gexf.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphSchema;
+
+/**
+ * Applies {@link GraphLoadOptions} in front of {@link GraphDataHandler}: the document text of an element,
+ * its spells and its attribute values is held until the element ends, and only elements that pass the
+ * filters and the time window reach the {@link GraphDataHandler} and get built.
+ * @author bskarin
+ *
+ */
+class GraphLoadHandler extends GraphDataHandler {
+
+	private final GraphLoadOptions options;
+	private final GraphElementEvent node = new GraphElementEvent(false);
+	private final GraphElementEvent edge = new GraphElementEvent(true);
+	private final GraphSpellEvent spell = new GraphSpellEvent();
+	private final GraphValueEvent value = new GraphValueEvent();
+	private String timeFormat = "";
+	private boolean dynamicGraph = false;
+	private double windowStart = Double.NEGATIVE_INFINITY;
+	private double windowEnd = Double.POSITIVE_INFINITY;
+
+	//Every declared attribute, projected or not, for the value filters
+	private String attributeClass;
+	private List<GraphAttribute> declared;
+	private GraphSchema nodeSchema;
+	private GraphSchema edgeSchema;
+
+	//The pending element, null outside an element or once it has been dropped
+	private GraphElementEvent element;
+	private int spellCount;
+	private final List<String> spellTimes = new ArrayList<String>(); //start, end pairs
+	private final List<String> values = new ArrayList<String>(); //id, value, start, end quads
+
+	GraphLoadHandler(GraphLoadOptions options) {
+		super(options.getMaxNodes(), options.getMaxEdges());
+		this.options = options;
+	}
+
+	@Override
+	public void graph(String defaultEdgeType, String timeFormat, String mode, String startTime) {
+		super.graph(defaultEdgeType, timeFormat, mode, startTime);
+		this.timeFormat = timeFormat;
+		dynamicGraph = "dynamic".equals(mode);
+		if(options.hasTimeWindow()) {
+			spell.setTime(timeFormat, options.getWindowStart(), options.getWindowEnd());
+			windowStart = lower(spell);
+			windowEnd = upper(spell);
+		}
+	}
+
+	@Override
+	public void startAttributes(String elementClass, String mode) {
+		super.startAttributes(elementClass, mode);
+		attributeClass = elementClass;
+		declared = new ArrayList<GraphAttribute>();
+	}
+
+	@Override
+	public void attribute(String id, String title, String type, String dataMode) {
+		declared.add(new GraphAttribute(id, title, type));
+		if(isProjected(attributeClass, id)) {
+			super.attribute(id, title, type, dataMode);
+		}
+	}
+
+	@Override
+	public void endAttributes() {
+		GraphSchema schema = new GraphSchema(attributeClass, declared);
+		if(GraphAttributeList.NODE.equals(attributeClass) && nodeSchema == null) {
+			nodeSchema = schema;
+		}
+		else if(GraphAttributeList.EDGE.equals(attributeClass) && edgeSchema == null) {
+			edgeSchema = schema;
+		}
+		declared = null;
+		super.endAttributes();
+	}
+
+	@Override
+	public void startNode(String id, String label, String start, String end) {
+		node.set(id, label, null, null, null);
+		node.setTime(timeFormat, start, end);
+		startElement(node, options.getNodeFilter());
+	}
+
+	@Override
+	public void endNode() {
+		if(keep()) {
+			super.startNode(node.getId(), node.getLabel(), node.getStart(), node.getEnd());
+			replay();
+			super.endNode();
+		}
+		element = null;
+	}
+
+	@Override
+	public void startEdge(String id, String source, String target, String weight, String start, String end) {
+		if(id == null)
+			id = source + "||" + target;
+		edge.set(id, null, source, target, weight);
+		edge.setTime(timeFormat, start, end);
+		startElement(edge, options.getEdgeFilter());
+	}
+
+	@Override
+	public void endEdge() {
+		if(keep()) {
+			super.startEdge(edge.getId(), edge.getSource(), edge.getTarget(), edge.getWeight(), edge.getStart(), edge.getEnd());
+			replay();
+			super.endEdge();
+		}
+		element = null;
+	}
+
+	@Override
+	public void spell(String start, String end) {
+		if(element == null) {
+			return;
+		}
+		spellCount++;
+		spell.setElement(element);
+		spell.setTime(timeFormat, start, end);
+		if(inWindow(spell)) {
+			spellTimes.add(start);
+			spellTimes.add(end);
+		}
+	}
+
+	@Override
+	public void attvalue(String id, String val, String start, String end) {
+		if(element == null) {
+			return;
+		}
+		value.setTime(timeFormat, start, end);
+		if(dynamicGraph && !inWindow(value)) {
+			return;
+		}
+		boolean isNode = !element.isEdge();
+		GraphValueFilter filter = (isNode ? options.getNodeValueFilter() : options.getEdgeValueFilter());
+		if(filter != null) {
+			GraphSchema schema = (isNode ? nodeSchema : edgeSchema);
+			value.set(element, id, (schema == null ? null : schema.getAttributeByID(id)), val);
+			if(!filter.accept(value)) {
+				element = null;
+				return;
+			}
+		}
+		if(isProjected(isNode ? GraphAttributeList.NODE : GraphAttributeList.EDGE, id)) {
+			values.add(id);
+			values.add(val);
+			values.add(start);
+			values.add(end);
+		}
+	}
+
+	private void startElement(GraphElementEvent event, GraphElementFilter filter) {
+		spellCount = 0;
+		spellTimes.clear();
+		values.clear();
+		boolean keep = (!dynamicGraph || inWindow(event)) && (filter == null || filter.accept(event));
+		element = (keep ? event : null);
+	}
+
+	/**
+	 * @return true if the pending element passed everything; those with spells need one in the window
+	 */
+	private boolean keep() {
+		return element != null && (spellCount == 0 || !spellTimes.isEmpty());
+	}
+
+	/**
+	 * Send the kept spells and values of the pending element on to be built.
+	 */
+	private void replay() {
+		for(int i = 0; i < spellTimes.size(); i += 2) {
+			super.spell(spellTimes.get(i), spellTimes.get(i + 1));
+		}
+		for(int i = 0; i < values.size(); i += 4) {
+			super.attvalue(values.get(i), values.get(i + 1), values.get(i + 2), values.get(i + 3));
+		}
+	}
+
+	private boolean isProjected(String elementClass, String id) {
+		Set<String> ids = (GraphAttributeList.EDGE.equals(elementClass) ? options.getEdgeAttributes() : options.getNodeAttributes());
+		return ids == null || ids.contains(id);
+	}
+
+	/**
+	 * Overlap with the window, reading missing or unreadable bounds as open.
+	 */
+	private boolean inWindow(GraphTimeEvent time) {
+		if(!options.hasTimeWindow()) {
+			return true;
+		}
+		return lower(time) <= windowEnd && upper(time) >= windowStart;
+	}
+
+	private static double lower(GraphTimeEvent time) {
+		double start = time.getStartValue();
+		return (Double.isNaN(start) ? Double.NEGATIVE_INFINITY : start);
+	}
+
+	private static double upper(GraphTimeEvent time) {
+		double end = time.getEndValue();
+		return (Double.isNaN(end) ? Double.POSITIVE_INFINITY : end);
+	}
+}
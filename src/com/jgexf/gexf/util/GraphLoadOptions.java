@@ -0,0 +1,178 @@
+package com.jgexf.gexf.util;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Options for {@link GraphParser#readGEXF(String, GraphLoadOptions)}, applied while parsing so
+ * that skipped attributes and elements are never materialized.
+ * <ul>
+ * <li>Attribute projection: only the given attribute ids are declared and have their values kept.</li>
+ * <li>Time window: spells and attribute values outside it are skipped, as are elements whose own
+ * interval, or all of whose spells, fall outside it. Missing bounds are open.</li>
+ * <li>Filters: element filters see ids and endpoints, value filters see every attribute value
+ * (projected or not) in the window. Both run before the {@link com.jgexf.gexf.GraphNode} or
+ * {@link com.jgexf.gexf.GraphEdge} is created.</li>
+ * <li>Limits: stop after this many nodes or edges have been kept.</li>
+ * </ul>
+ * The default options load the whole graph.
+ * @author bskarin
+ *
+ */
+public class GraphLoadOptions {
+
+	private Set<String> nodeAttributes = null;
+	private Set<String> edgeAttributes = null;
+	private String windowStart = null;
+	private String windowEnd = null;
+	private GraphElementFilter nodeFilter = null;
+	private GraphElementFilter edgeFilter = null;
+	private GraphValueFilter nodeValueFilter = null;
+	private GraphValueFilter edgeValueFilter = null;
+	private int maxNodes = Integer.MAX_VALUE;
+	private int maxEdges = Integer.MAX_VALUE;
+
+	/**
+	 * @return ids of the node attributes to load, null for all
+	 */
+	public Set<String> getNodeAttributes() {
+		return nodeAttributes;
+	}
+
+	/**
+	 * @param ids ids of the node attributes to load, null for all
+	 */
+	public void setNodeAttributes(Collection<String> ids) {
+		this.nodeAttributes = (ids == null ? null : new HashSet<String>(ids));
+	}
+
+	/**
+	 * @return ids of the edge attributes to load, null for all
+	 */
+	public Set<String> getEdgeAttributes() {
+		return edgeAttributes;
+	}
+
+	/**
+	 * @param ids ids of the edge attributes to load, null for all
+	 */
+	public void setEdgeAttributes(Collection<String> ids) {
+		this.edgeAttributes = (ids == null ? null : new HashSet<String>(ids));
+	}
+
+	/**
+	 * Keep only what overlaps the window.
+	 * @param start in the graph's time format, null for no lower bound
+	 * @param end in the graph's time format, null for no upper bound
+	 */
+	public void setTimeWindow(String start, String end) {
+		this.windowStart = start;
+		this.windowEnd = end;
+	}
+
+	/**
+	 * @return start of the time window, null if unbounded
+	 */
+	public String getWindowStart() {
+		return windowStart;
+	}
+
+	/**
+	 * @return end of the time window, null if unbounded
+	 */
+	public String getWindowEnd() {
+		return windowEnd;
+	}
+
+	/**
+	 * @return true if a time window is set
+	 */
+	public boolean hasTimeWindow() {
+		return windowStart != null || windowEnd != null;
+	}
+
+	/**
+	 * @return the node filter, null to keep all
+	 */
+	public GraphElementFilter getNodeFilter() {
+		return nodeFilter;
+	}
+
+	/**
+	 * @param nodeFilter the node filter, null to keep all
+	 */
+	public void setNodeFilter(GraphElementFilter nodeFilter) {
+		this.nodeFilter = nodeFilter;
+	}
+
+	/**
+	 * @return the edge filter, null to keep all
+	 */
+	public GraphElementFilter getEdgeFilter() {
+		return edgeFilter;
+	}
+
+	/**
+	 * @param edgeFilter the edge filter, null to keep all
+	 */
+	public void setEdgeFilter(GraphElementFilter edgeFilter) {
+		this.edgeFilter = edgeFilter;
+	}
+
+	/**
+	 * @return the node attribute value filter, null to keep all
+	 */
+	public GraphValueFilter getNodeValueFilter() {
+		return nodeValueFilter;
+	}
+
+	/**
+	 * @param nodeValueFilter the node attribute value filter, null to keep all
+	 */
+	public void setNodeValueFilter(GraphValueFilter nodeValueFilter) {
+		this.nodeValueFilter = nodeValueFilter;
+	}
+
+	/**
+	 * @return the edge attribute value filter, null to keep all
+	 */
+	public GraphValueFilter getEdgeValueFilter() {
+		return edgeValueFilter;
+	}
+
+	/**
+	 * @param edgeValueFilter the edge attribute value filter, null to keep all
+	 */
+	public void setEdgeValueFilter(GraphValueFilter edgeValueFilter) {
+		this.edgeValueFilter = edgeValueFilter;
+	}
+
+	/**
+	 * @return maximum number of nodes kept
+	 */
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * @param maxNodes maximum number of nodes kept
+	 */
+	public void setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * @return maximum number of edges kept
+	 */
+	public int getMaxEdges() {
+		return maxEdges;
+	}
+
+	/**
+	 * @param maxEdges maximum number of edges kept
+	 */
+	public void setMaxEdges(int maxEdges) {
+		this.maxEdges = maxEdges;
+	}
+}
@@ -0,0 +1,288 @@
+package com.jgexf.gexf.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+
+/**
+ * Combines several {@link GraphData}s (e.g. one per election cycle) into one on a fork-join pool.
+ * Missing (null) graphs are skipped.
+ * <p>
+ * The result is the same as adding every element of the graphs, in order, to the first one with
+ * {@link GraphData#addOrAppendElement(GraphElement)}: the first occurrence of an id is kept and later
+ * ones are folded in with {@link GraphData#appendElement(GraphElement, GraphElement)} (spells,
+ * attribute data modes, edge weights), and elements stay in order of first occurrence.
+ * </p>
+ * To do so in parallel, each graph's elements are routed to hash partitions of their ids in one pass,
+ * then each partition is folded by its own task; an element is only ever touched by the task of its id. The partitions are then interleaved back into
+ * first-occurrence order. As with addOrAppendElement, the first occurrence of each element is reused
+ * and updated in place, so the inputs should be discarded afterwards.
+ * @author bskarin
+ *
+ */
+public class GraphMerger {
+
+	private final ForkJoinPool pool;
+	private final int partitions;
+
+	/**
+	 * Merge on the common pool, one partition per worker.
+	 */
+	public GraphMerger() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool the pool folding partitions, one partition per worker
+	 */
+	public GraphMerger(ForkJoinPool pool) {
+		this(pool, pool.getParallelism());
+	}
+
+	/**
+	 * @param pool the pool folding partitions
+	 * @param partitions number of id partitions
+	 */
+	public GraphMerger(ForkJoinPool pool, int partitions) {
+		this.pool = pool;
+		this.partitions = Math.max(1, partitions);
+	}
+
+	/**
+	 * Load GEXF files concurrently on the pool and merge them in the order given.
+	 * @param filenames
+	 * @return merged network, null if none could be read
+	 * @see GraphParser#readGEXF(List, ForkJoinPool)
+	 */
+	public GraphData read(List<String> filenames) {
+		return merge(GraphParser.readGEXF(filenames, pool));
+	}
+
+	/**
+	 * Merge graphs in order into a new graph with the header (and attribute declarations) of the first;
+	 * attributes only declared by later graphs are added to it.
+	 * @param graphs
+	 * @return merged network, null if there are no graphs
+	 */
+	public GraphData merge(List<GraphData> graphs) {
+		List<GraphData> present = new ArrayList<GraphData>();
+		for(GraphData graph : graphs) {
+			if(graph != null) {
+				present.add(graph);
+			}
+		}
+		if(present.isEmpty()) {
+			return null;
+		}
+		GraphData first = present.get(0);
+		GraphData merged = new GraphData(first.getDefaultEdgeType(), first.getTimeFormat(), first.getMode());
+		merged.setStartTime(first.getStartTime());
+		mergeAttributeLists(merged, present);
+
+		List<Collection<? extends GraphElement>> nodes = new ArrayList<Collection<? extends GraphElement>>();
+		List<Collection<? extends GraphElement>> edges = new ArrayList<Collection<? extends GraphElement>>();
+		for(GraphData graph : present) {
+			nodes.add(graph.getNodeView());
+			edges.add(graph.getEdgeView());
+		}
+		for(GraphElement element : fold(nodes)) {
+			merged.addNode((GraphNode) element);
+		}
+		for(GraphElement element : fold(edges)) {
+			merged.addEdge((GraphEdge) element);
+		}
+		return merged;
+	}
+
+	/**
+	 * Fold the elements of one class, partitioned by id.
+	 * @return the merged elements in order of first occurrence
+	 */
+	private List<GraphElement> fold(List<Collection<? extends GraphElement>> graphs) {
+		//Route each graph's elements to their partitions, one pass per graph
+		List<Future<Routed>> routing = new ArrayList<Future<Routed>>(graphs.size());
+		for(int g = 0; g < graphs.size(); g++) {
+			routing.add(pool.submit(new RouteTask(graphs.get(g), g, partitions)));
+		}
+		List<Routed> routed = getAll(routing);
+
+		//Then fold each partition's own elements, graph by graph
+		List<Future<Partition>> futures = new ArrayList<Future<Partition>>(partitions);
+		for(int p = 0; p < partitions; p++) {
+			futures.add(pool.submit(new FoldTask(routed, p)));
+		}
+		List<Partition> folded = getAll(futures);
+
+		//Interleave the partitions back into order of first occurrence
+		int total = 0;
+		PriorityQueue<Partition> queue = new PriorityQueue<Partition>(partitions);
+		for(Partition partition : folded) {
+			total += partition.elements.size();
+			if(!partition.elements.isEmpty()) {
+				queue.add(partition);
+			}
+		}
+		List<GraphElement> elements = new ArrayList<GraphElement>(total);
+		while(!queue.isEmpty()) {
+			Partition partition = queue.poll();
+			elements.add(partition.elements.get(partition.next++));
+			if(partition.next < partition.elements.size()) {
+				queue.add(partition);
+			}
+		}
+		return elements;
+	}
+
+	/**
+	 * Wait for every task, in order.
+	 */
+	private static <T> List<T> getAll(List<Future<T>> futures) {
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for(Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while merging graphs", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Failed to merge graphs", e.getCause());
+		} finally {
+			for(Future<T> future : futures) {
+				future.cancel(false);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Declarations of the first graph, plus those of later graphs with ids not declared yet.
+	 */
+	private static void mergeAttributeLists(GraphData merged, List<GraphData> graphs) {
+		for(GraphData graph : graphs) {
+			for(GraphAttributeList gal : graph.getAttributeLists()) {
+				GraphAttributeList target = merged.getGraphAttributeListByClass(gal.getAttributeClass());
+				if(target == null) {
+					target = new GraphAttributeList(gal.getAttributeClass(), gal.getMode());
+					merged.getAttributeLists().add(target);
+				}
+				for(GraphAttribute ga : gal) {
+					if(target.getAttributeByID(ga.getId()) == null) {
+						target.add(ga);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merged elements of one partition in order of first occurrence, with their positions.
+	 */
+	private static final class Partition implements Comparable<Partition> {
+		final List<GraphElement> elements = new ArrayList<GraphElement>();
+		final List<Long> order = new ArrayList<Long>();
+		int next = 0;
+
+		@Override
+		public int compareTo(Partition other) {
+			return Long.compare(order.get(next), other.order.get(other.next));
+		}
+	}
+
+	/**
+	 * The elements of one graph split by partition, each with its position in the graph.
+	 */
+	private static final class Routed {
+		final List<List<GraphElement>> elements;
+		final List<List<Long>> order;
+
+		Routed(int partitions) {
+			elements = new ArrayList<List<GraphElement>>(partitions);
+			order = new ArrayList<List<Long>>(partitions);
+			for(int p = 0; p < partitions; p++) {
+				elements.add(new ArrayList<GraphElement>());
+				order.add(new ArrayList<Long>());
+			}
+		}
+	}
+
+	/**
+	 * Splits the elements of one graph by the partition of their id.
+	 */
+	private static final class RouteTask implements Callable<Routed> {
+		private final Collection<? extends GraphElement> graph;
+		private final int index;
+		private final int partitions;
+
+		RouteTask(Collection<? extends GraphElement> graph, int index, int partitions) {
+			this.graph = graph;
+			this.index = index;
+			this.partitions = partitions;
+		}
+
+		@Override
+		public Routed call() {
+			Routed result = new Routed(partitions);
+			long position = (long) index << 32;
+			for(GraphElement element : graph) {
+				int p = Math.floorMod(element.getId().hashCode(), partitions);
+				result.elements.get(p).add(element);
+				result.order.get(p).add(position++);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Folds the elements routed to one partition, graph by graph.
+	 */
+	private static final class FoldTask implements Callable<Partition> {
+		private final List<Routed> graphs;
+		private final int partition;
+
+		FoldTask(List<Routed> graphs, int partition) {
+			this.graphs = graphs;
+			this.partition = partition;
+		}
+
+		@Override
+		public Partition call() {
+			Partition result = new Partition();
+			Map<String, GraphElement> byId = new HashMap<String, GraphElement>();
+			for(Routed graph : graphs) {
+				List<GraphElement> elements = graph.elements.get(partition);
+				List<Long> order = graph.order.get(partition);
+				for(int i = 0; i < elements.size(); i++) {
+					GraphElement element = elements.get(i);
+					GraphElement existing = byId.get(element.getId());
+					if(existing == null) {
+						byId.put(element.getId(), element);
+						result.elements.add(element);
+						result.order.add(order.get(i));
+					}
+					else {
+						GraphData.appendElement(existing, element);
+					}
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Follows a parse run under a {@link GraphParseMonitor}: receives progress samples and can cancel.
+ * @author bskarin
+ *
+ */
+public interface GraphParseListener {
+
+	/**
+	 * A progress sample, sent at the monitor's interval and once when the parse ends.
+	 * @param progress reused for every sample of a parse, only valid during the call
+	 */
+	void progress(GraphParseProgress progress);
+
+	/**
+	 * Polled every few thousand events; the parse stops with a {@link GraphParseStoppedException}
+	 * soon after this returns true.
+	 * @return true to stop the parse
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,74 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Settings for watching a parse: a listener for progress and cancellation, how often it is sampled,
+ * and a heap budget that stops the parse before it runs out of memory.
+ * <p>
+ * A monitor holds no state of its own and can be shared by any number of parses;
+ * {@link GraphParser#setMonitor(GraphParseMonitor)} sets the one used by default.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class GraphParseMonitor {
+
+	/**
+	 * Default milliseconds between progress samples
+	 */
+	public static final long DEFAULT_INTERVAL = 1000;
+
+	/**
+	 * Default share of the maximum heap that a parse may fill
+	 */
+	public static final double DEFAULT_MEMORY_SHARE = 0.9;
+
+	private final GraphParseListener listener;
+	private final long interval;
+	private final long memoryBudget;
+
+	/**
+	 * No listener, stopping only at the default memory budget.
+	 */
+	public GraphParseMonitor() {
+		this(null, DEFAULT_INTERVAL, getDefaultMemoryBudget());
+	}
+
+	/**
+	 * @param listener receives progress and may cancel, null for none
+	 * @param interval milliseconds between progress samples
+	 * @param memoryBudget bytes of heap the parse may fill, 0 for no limit
+	 */
+	public GraphParseMonitor(GraphParseListener listener, long interval, long memoryBudget) {
+		this.listener = listener;
+		this.interval = interval;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @return {@value #DEFAULT_MEMORY_SHARE} of the maximum heap
+	 */
+	public static long getDefaultMemoryBudget() {
+		return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_SHARE);
+	}
+
+	/**
+	 * @return the listener, null if none
+	 */
+	public GraphParseListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return milliseconds between progress samples
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return bytes of heap the parse may fill, 0 for no limit
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+}
@@ -0,0 +1,217 @@
+package com.jgexf.gexf.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Progress of one parse under a {@link GraphParseMonitor}, as sent to its {@link GraphParseListener}.
+ * Values are those of the latest sample.
+ * @author bskarin
+ *
+ */
+public class GraphParseProgress {
+
+	private final GraphParseMonitor monitor;
+	private final CountingInputStream counter;
+	private final long totalBytes;
+	private final long startTime = System.nanoTime();
+	private long lastSample = startTime;
+
+	//Updated as the parse runs
+	private long bytes = 0;
+	private long nodes = 0;
+	private long edges = 0;
+	private long events = 0;
+
+	//Sampled
+	private long bytesRead = 0;
+	private long elapsed = 0;
+	private long usedMemory = 0;
+	private boolean finished = false;
+	private GraphParseStoppedException stop = null;
+
+	/**
+	 * @param monitor
+	 * @param counter counts the bytes of the document, null if they are set by the caller
+	 * @param totalBytes size of the document, -1 if unknown
+	 */
+	GraphParseProgress(GraphParseMonitor monitor, CountingInputStream counter, long totalBytes) {
+		this.monitor = monitor;
+		this.counter = counter;
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * @return bytes of the document read (compressed bytes for compressed files)
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return size of the document, -1 if unknown
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return nodes read, or added to the graph when building one
+	 */
+	public long getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * @return edges read, or added to the graph when building one
+	 */
+	public long getEdgeCount() {
+		return edges;
+	}
+
+	/**
+	 * @return nodes and edges read, or added to the graph when building one
+	 */
+	public long getElementCount() {
+		return nodes + edges;
+	}
+
+	/**
+	 * @return parse events (tags and text) handled
+	 */
+	public long getEventCount() {
+		return events;
+	}
+
+	/**
+	 * @return milliseconds since the parse started
+	 */
+	public long getElapsedMillis() {
+		return elapsed / 1000000;
+	}
+
+	/**
+	 * @return events per second since the parse started
+	 */
+	public double getEventsPerSecond() {
+		return (elapsed == 0 ? 0 : events * 1e9 / elapsed);
+	}
+
+	/**
+	 * @return share of the document read, -1 if its size is unknown
+	 */
+	public double getFractionDone() {
+		if(finished) {
+			return 1;
+		}
+		return (totalBytes <= 0 ? -1 : Math.min(1, (double) bytesRead / totalBytes));
+	}
+
+	/**
+	 * @return estimated milliseconds until the parse completes at the rate so far, -1 if unknown
+	 */
+	public long getEstimatedRemainingMillis() {
+		double done = getFractionDone();
+		if(done <= 0) {
+			return -1;
+		}
+		return (long) (getElapsedMillis() * (1 - done) / done);
+	}
+
+	/**
+	 * @return bytes of heap in use
+	 */
+	public long getUsedMemory() {
+		return usedMemory;
+	}
+
+	/**
+	 * @return true for the last sample of a parse
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	void setBytesRead(long bytes) {
+		this.bytes = bytes;
+	}
+
+	void addNodes(long count) {
+		nodes += count;
+	}
+
+	void addEdges(long count) {
+		edges += count;
+	}
+
+	void addEvents(long count) {
+		events += count;
+	}
+
+	/**
+	 * Poll for cancellation and the memory budget, and send a sample if one is due.
+	 * @return true if the parse has to stop
+	 */
+	boolean check() {
+		GraphParseListener listener = monitor.getListener();
+		if(listener != null && listener.isCancelled()) {
+			stop = new GraphParseStoppedException("Parse cancelled", true);
+			return true;
+		}
+		if(isOverBudget()) {
+			stop = new GraphParseStoppedException("Parse stopped at the memory budget of " + monitor.getMemoryBudget() + " bytes", false);
+			return true;
+		}
+		long now = System.nanoTime();
+		if(listener != null && now - lastSample >= monitor.getInterval() * 1000000) {
+			lastSample = now;
+			sample(now);
+			listener.progress(this);
+		}
+		return false;
+	}
+
+	/**
+	 * Send the last sample.
+	 * @throws GraphParseStoppedException if the parse was stopped
+	 */
+	void finish() throws GraphParseStoppedException {
+		finished = (stop == null);
+		sample(System.nanoTime());
+		if(monitor.getListener() != null) {
+			monitor.getListener().progress(this);
+		}
+		if(stop != null) {
+			throw stop;
+		}
+	}
+
+	private void sample(long now) {
+		elapsed = now - startTime;
+		bytesRead = (counter == null ? bytes : counter.getCount());
+		Runtime runtime = Runtime.getRuntime();
+		usedMemory = runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private boolean isOverBudget() {
+		long budget = monitor.getMemoryBudget();
+		if(budget <= 0) {
+			return false;
+		}
+		Runtime runtime = Runtime.getRuntime();
+		if(runtime.totalMemory() - runtime.freeMemory() <= budget) {
+			return false;
+		}
+		//The heap in use includes garbage; confirm with what was still live after the last collections
+		long live = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				MemoryUsage afterGC = pool.getCollectionUsage();
+				live += (afterGC != null ? afterGC : pool.getUsage()).getUsed();
+			}
+		}
+		return live > budget;
+	}
+}
@@ -0,0 +1,32 @@
+package com.jgexf.gexf.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link GraphParseMonitor} stops a parse, because its listener cancelled it or the
+ * heap went over the memory budget. Whatever had been read is left in the handler.
+ * @author bskarin
+ *
+ */
+public class GraphParseStoppedException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final boolean cancelled;
+
+	/**
+	 * @param message
+	 * @param cancelled true if cancelled by the listener, false if over the memory budget
+	 */
+	public GraphParseStoppedException(String message, boolean cancelled) {
+		super(message);
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * @return true if cancelled by the listener, false if stopped by the memory budget
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -1,16 +1,24 @@
 package com.jgexf.gexf.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
-import java.util.Stack;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLInputFactory;
@@ -19,15 +27,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import com.jgexf.gexf.GraphAttribute;
-import com.jgexf.gexf.GraphAttributeList;
-import com.jgexf.gexf.GraphAttributeValue;
-import com.jgexf.gexf.GraphAttributeValueList;
 import com.jgexf.gexf.GraphData;
-import com.jgexf.gexf.GraphEdge;
-import com.jgexf.gexf.GraphElement;
-import com.jgexf.gexf.GraphNode;
-import com.jgexf.gexf.GraphSpell;
-import com.jgexf.gexf.GraphSpellList;
 
 /**
  * Parse network stored as .GEXF file and convert to {@link GraphData}.
@@ -39,6 +39,20 @@ public class GraphParser {
 	
 	private static Date startDate;
 	
+	/**
+	 * Factories are costly to look up and create, and not safe to share between parsing threads
+	 */
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			return XMLInputFactory.newInstance();
+		}
+	};
+	
+	private static volatile boolean tokenizerEnabled = false;
+	
+	private static volatile GraphParseMonitor monitor = new GraphParseMonitor();
+	
 	public GraphParser() {
 		setStartDate(Calendar.getInstance().getTime());
 	}
@@ -70,13 +84,14 @@ public class GraphParser {
 	
 	/**
 	 * Writes {@link GraphData} to specified filename. I only wrote this b/c of the {@link BufferedWriter}/{@link FileWriter} mess.
+	 * Names ending in .gz are written gzip compressed.
 	 * @param graphData
 	 * @param fileName
 	 */
 	public static void writeGraph(GraphData graphData, String fileName) {
-		BufferedWriter out = null;
+		Writer out = null;
 		try {
-			out = new BufferedWriter(new FileWriter(fileName));
+			out = GraphWriter.openWriter(fileName, null);
 			graphData.toXML(out);
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -106,7 +121,6 @@ public class GraphParser {
 	}
 	
 	
-	
 	/**
 	 * Convert GEXF to {@link GraphData} with streaming reader to save memory/runtime.
 	 * <p></p>
@@ -115,31 +129,7 @@ public class GraphParser {
 	 * @return network
 	 */
 	public static GraphData readGEXF(String filename) {
-		FileInputStream fis = null;
-		GraphData graphData = null;
-		try 
-		{
-			fis = new FileInputStream(new File(filename));
-			graphData = readGEXF(fis);
-		}
-		catch (FileNotFoundException e)
-		{
-			e.printStackTrace();
-		} 
-		catch (OutOfMemoryError e)
-		{
-			e.printStackTrace();
-		}
-		finally {
-			if(fis != null)
-				try {
-					fis.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-		}
-		// finishing touch = update GraphAttribute ranges
-		return graphData;
+		return readGEXF(filename, Integer.MAX_VALUE, Integer.MAX_VALUE);
 	}
 
 	/**
@@ -154,194 +144,115 @@ public class GraphParser {
 	 * @return network
 	 */
 	public static GraphData readGEXF(String filename, int maxNodes, int maxEdges) {
+		GraphDataHandler handler = new GraphDataHandler(maxNodes, maxEdges);
+		readGEXF(filename, handler);
+		return handler.getGraphData();
+	}
+
+	/**
+	 * Convert GEXF to {@link GraphData}, keeping only the attributes, time window and elements selected
+	 * by the options. Everything else is skipped during the parse, so a selective load costs a fraction
+	 * of a full one.
+	 * @param filename full path to input file
+	 * @param options projection, time window, filters and limits
+	 * @return network
+	 */
+	public static GraphData readGEXF(String filename, GraphLoadOptions options) {
+		GraphDataHandler handler = new GraphLoadHandler(options);
+		readGEXF(filename, handler);
+		return handler.getGraphData();
+	}
+
+	/**
+	 * Read only the given nodes and edges of a large GEXF file, seeking to them through its
+	 * {@link GraphIndex} sidecar file, which is built by one pass over the file if missing or out of date.
+	 * @param filename full path to an uncompressed input file
+	 * @param nodeIds nodes to read, may be null
+	 * @param edgeIds edges to read (source||target for edges without an id), may be null
+	 * @return network with the header and the elements found
+	 */
+	public static GraphData readGEXF(String filename, Collection<String> nodeIds, Collection<String> edgeIds) {
 		GraphData graphData = null;
-		Stack<GraphAttributeList> graphAttributeListStack = new Stack<GraphAttributeList>();
-		Stack<GraphAttributeValueList> graphAttributeValueListStack = new Stack<GraphAttributeValueList>();
-		Stack<GraphElement> elementStack = new Stack<GraphElement>();
-		Stack<GraphSpell> spellStack = new Stack<GraphSpell>();
-		boolean dynamicGraph = false;
-		FileInputStream fis = null;
-		int nodeCount = 0; 
-		int edgeCount = 0;
 		try {
-			fis = new FileInputStream(new File(filename));
-			XMLStreamReader reader = XMLInputFactory.newInstance().
-					createXMLStreamReader(fis);
-			int ctr = 1;
-			String timeFormat = "";
-			while(reader.hasNext() && nodeCount < maxNodes && edgeCount < maxEdges) {
-				int event = reader.next();
-				//String namespaceURI = reader.getNamespaceURI();
-				switch(event) {
-				case XMLStreamConstants.START_DOCUMENT:
-					break;
-				case XMLStreamConstants.START_ELEMENT:
-					String elementName = reader.getLocalName();
-					switch(elementName){
-					case "graph":
-						String edgeType = getAttr(reader,"defaultedgetype");
-						timeFormat = getAttr(reader,"timeformat");
-						String graphMode = getAttr(reader,"mode");
-						String startTime = "";
-						if(graphMode.equals("dynamic")) {
-							dynamicGraph = true;
-							startTime = getAttr(reader,"starttime");
-						}
-						graphData = new GraphData(edgeType, timeFormat, graphMode);
-						graphData.setStartTime(startTime);
-						break;
-					case "attributes":
-						String elementClass = getAttr(reader,"class");
-						String elementMode = getAttr(reader,"mode");
-						graphAttributeListStack.push(new GraphAttributeList(elementClass, elementMode));
-						break;
-					case "attribute":
-						String id = getAttr(reader,"id");
-						String title = getAttr(reader,"title");
-						String type = getAttr(reader,"type");
-						GraphAttribute graphAttribute = new GraphAttribute(id, title, type);
-						graphAttributeListStack.peek().add(graphAttribute);
-						break;
-					case "nodes":
-						break; 
-					case "node":
-						String nodeID = getAttr(reader,"id");
-						String nodeLabel = getAttr(reader,"label");
-						GraphNode graphNode = new GraphNode(nodeID, nodeLabel);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphNode.setStart(start); graphNode.setEnd(end);
-							graphNode.setFormat(timeFormat);
-						}
-						elementStack.push(graphNode);
-						break;
-					case "edges":
-						break;
-					case "edge":
-						String source = getAttr(reader, "source");
-						String target = getAttr(reader,"target");
-						String weight = getAttr(reader,"weight");
-						String edgeID = getAttr(reader,"id");
-						if(edgeID == null) // all edges must have an ID of some kind; this quick fix doesn't allow multigraphs
-							edgeID = source + "||" + target;
-						GraphEdge graphEdge = new GraphEdge(edgeID, source, target);
-						graphEdge.setWeight(weight);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphEdge.setStart(start); graphEdge.setEnd(end);
-							graphEdge.setFormat(timeFormat);
-						}
-						elementStack.push(graphEdge);
-						break;
-					case "attvalues":
-						graphAttributeValueListStack.push(new GraphAttributeValueList());
-						break;
-					case "attvalue":
-						String attID = getAttr(reader,"for");
-						String attValue = getAttr(reader,"value");
-						GraphAttributeValue gav = new GraphAttributeValue(attID, attValue);
-						String attributeClass = (elementStack.peek() instanceof GraphNode ? "node" : "edge");
-						GraphAttributeList gal = graphData.getGraphAttributeListByClass(attributeClass);
-						GraphAttribute ga1 = gal.getAttributeByID(attID);
-						gav.setGraphAttribute(ga1);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							if(end == null)
-								end = "";
-							gav.setStart(start); gav.setEnd(end);
-							gav.setFormat(timeFormat);
-						}
-						graphAttributeValueListStack.peek().add(gav);
-						break;
-					case "spells":
-						break;
-					case "spell":
-						String spellStart = dateHandler(reader,"start");
-						String spellEnd = dateHandler(reader,"end");
-						GraphSpell spell = new GraphSpell(spellStart, spellEnd, graphData.getTimeFormat());
-						spellStack.push(spell);
-						break;
-					default:
-						break;
-					}
-					break;
-				case XMLStreamConstants.END_ELEMENT:
-					elementName = reader.getLocalName();
-					switch(elementName){
-					case "modelparameters":
-						break;
-					case "modelparameter":
-						break;
-					case "attributeparameters":
-						break;
-					case "attributeparameter":
-						break;
-					case "attributes": // dump attribute list to GraphData and get ready for next round of attributes
-						graphData.getAttributeLists().add(graphAttributeListStack.pop());
-						break;
-					case "node": 
-						graphData.addNode((GraphNode)elementStack.pop());
-						nodeCount++;
-						break;
-					case "nodes":
-						break;
-					case "edge":
-						graphData.addEdge((GraphEdge)elementStack.pop());
-						edgeCount++;
-						break;
-					case "edges":
-						break;
-					case "attvalue":
-						break;
-					case "attvalues":
-					GraphElement graphElement = elementStack.peek();
-					GraphAttributeValueList currValues = graphAttributeValueListStack.pop();
-					GraphAttributeValueList gavl = graphElement.getAttributes();
-					// add one by one to handle time/value conflicts
-					for(GraphAttributeValue currGav : currValues)
-						gavl.addGraphAttribute(currGav);
-					graphElement.setAttributes(gavl); 
-						break;
-					case "spell":
-						GraphElement currElem = elementStack.peek();
-						GraphSpellList spellList = currElem.getSpells(); // hack to allow correct spell adding
-						spellList.addOrAppendSpell(spellStack.pop());
-						currElem.setSpells(spellList);
-						break;
-					case "spells":
-						break;
-					default:
-						break;
-					}
-					break;
-				default:
-					break;
-				}
-				if(ctr % 1000000 == 0)
-					System.out.println(ctr + " events processed.");
-				ctr++;
+			GraphIndex index = GraphIndex.openOrBuild(filename);
+			try {
+				graphData = index.read(nodeIds, edgeIds);
+			} finally {
+				index.close();
 			}
 		} catch (XMLStreamException e) {
 			e.printStackTrace();
 		} catch (FactoryConfigurationError e) {
 			e.printStackTrace();
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
-		} catch (OutOfMemoryError e) {
+		}
+		return graphData;
+	}
+
+	/**
+	 * Convert GEXF to {@link GraphData}, parsing the nodes and edges sections in chunks on the given pool.
+	 * The result is the same as from {@link #readGEXF(String)}.
+	 * @param filename name of GEXF file
+	 * @param pool the pool parsing chunks, null for the common pool
+	 * @return network
+	 * @see ParallelGraphParser
+	 */
+	public static GraphData readGEXF(String filename, ForkJoinPool pool) {
+		GraphData graphData = null;
+		try {
+			graphData = new ParallelGraphParser(pool == null ? ForkJoinPool.commonPool() : pool,
+					ParallelGraphParser.DEFAULT_CHUNK_SIZE).read(filename);
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		} catch (FactoryConfigurationError e) {
+			e.printStackTrace();
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		finally {
-			if(fis != null)
-				try {
-					fis.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+		return graphData;
+	}
+
+	/**
+	 * Load several GEXF files concurrently, each parsed by one task on the given pool, so at most
+	 * as many files as the pool has workers are in memory being parsed at a time.
+	 * @param filenames names of GEXF files
+	 * @param pool the pool loading files, null for the common pool
+	 * @return networks in the order of the file names, null where a file could not be read
+	 * @see GraphMerger
+	 */
+	public static List<GraphData> readGEXF(List<String> filenames, ForkJoinPool pool) {
+		if(pool == null) {
+			pool = ForkJoinPool.commonPool();
+		}
+		List<Future<GraphData>> futures = new ArrayList<Future<GraphData>>(filenames.size());
+		for(final String filename : filenames) {
+			futures.add(pool.submit(new Callable<GraphData>() {
+				@Override
+				public GraphData call() {
+					return readGEXF(filename);
 				}
+			}));
 		}
-		return graphData;
+		List<GraphData> graphs = new ArrayList<GraphData>(filenames.size());
+		try {
+			for(Future<GraphData> future : futures) {
+				graphs.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			for(Future<GraphData> future : futures) {
+				future.cancel(false);
+			}
+		}
+		while(graphs.size() < filenames.size()) {
+			graphs.add(null);
+		}
+		return graphs;
 	}
 
 	/**
@@ -351,11 +262,9 @@ public class GraphParser {
 	 */
 	public static GraphData readGEXF(InputStream is) 
 	{
-		GraphData graphData = null;
+		GraphDataHandler handler = new GraphDataHandler();
 		try {
-			XMLStreamReader reader = XMLInputFactory.newInstance().
-					createXMLStreamReader(is);
-			graphData = readGEXF(reader);
+			parseGEXF(is, handler);
 		} 
 		catch (FactoryConfigurationError e) 
 		{
@@ -365,7 +274,11 @@ public class GraphParser {
 		{
 			e.printStackTrace();
 		}
-		return graphData;
+		catch (IOException e) 
+		{
+			e.printStackTrace();
+		}
+		return handler.getGraphData();
 	}
 
 	/**
@@ -375,12 +288,10 @@ public class GraphParser {
 	 */
 	public static GraphData readGEXF(Reader charReader) 
 	{
-		GraphData graphData = null;
+		GraphDataHandler handler = new GraphDataHandler();
 		try 
 		{
-			XMLStreamReader reader = XMLInputFactory.newInstance().
-					createXMLStreamReader(charReader);
-			graphData = readGEXF(reader);
+			parseGEXF(charReader, handler);
 		} 
 		catch (FactoryConfigurationError e) 
 		{
@@ -390,193 +301,7 @@ public class GraphParser {
 		{
 			e.printStackTrace();
 		}
-		return graphData;
-	}
-	
-	/**
-	 * Read network from an initialized XML reader.
-	 * @param reader initialized XML reader.
-	 * @return network
-	 */
-	private static GraphData readGEXF(XMLStreamReader reader) 
-	{
-		GraphData graphData = null;
-		Stack<GraphAttributeList> graphAttributeListStack = 
-				new Stack<GraphAttributeList>();
-		Stack<GraphAttributeValueList> graphAttributeValueListStack = 
-				new Stack<GraphAttributeValueList>();
-		Stack<GraphElement> elementStack = new Stack<GraphElement>();
-		Stack<GraphSpell> spellStack = new Stack<GraphSpell>();
-		boolean dynamicGraph = false;
-		int ctr = 1;
-		String timeFormat = "";
-		try {
-			while(reader.hasNext()) 
-			{
-				int event = reader.next();
-				//String namespaceURI = reader.getNamespaceURI();
-				switch(event) 
-				{
-				case XMLStreamConstants.START_DOCUMENT:
-					break;
-				case XMLStreamConstants.START_ELEMENT:
-					String elementName = reader.getLocalName();
-					switch(elementName)
-					{
-					case "graph":
-						String edgeType = getAttr(reader,"defaultedgetype");
-						timeFormat = getAttr(reader,"timeformat");
-						String graphMode = getAttr(reader,"mode");
-						String startTime = "";
-						if(graphMode.equals("dynamic")) 
-						{
-							dynamicGraph = true;
-							startTime = getAttr(reader,"starttime");
-						}
-						graphData = new GraphData(edgeType, timeFormat, graphMode);
-						graphData.setStartTime(startTime);
-						break;
-					case "attributes":
-						String elementClass = getAttr(reader,"class");
-						String elementMode = getAttr(reader,"mode");
-						graphAttributeListStack.push(new GraphAttributeList(elementClass, elementMode));
-						break;
-					case "attribute":
-						String id = getAttr(reader,"id");
-						String title = getAttr(reader,"title");
-						String type = getAttr(reader,"type");
-						GraphAttribute graphAttribute = new GraphAttribute(id, title, type);
-						graphAttributeListStack.peek().add(graphAttribute);
-						break;
-					case "nodes":
-						break; 
-					case "node":
-						String nodeID = getAttr(reader,"id");
-						String nodeLabel = getAttr(reader,"label");
-						GraphNode graphNode = new GraphNode(nodeID, nodeLabel);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphNode.setStart(start); graphNode.setEnd(end);
-							graphNode.setFormat(timeFormat);
-						}
-						elementStack.push(graphNode);
-						break;
-					case "edges":
-						break;
-					case "edge":
-						String source = getAttr(reader, "source");
-						String target = getAttr(reader,"target");
-						String weight = getAttr(reader,"weight");
-						String edgeID = getAttr(reader,"id");
-						if(edgeID == null) // all edges must have an ID of some kind; this quick fix doesn't allow multigraphs
-							edgeID = source + "||" + target;
-						GraphEdge graphEdge = new GraphEdge(edgeID, source, target);
-						graphEdge.setWeight(weight);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphEdge.setStart(start); graphEdge.setEnd(end);
-							graphEdge.setFormat(timeFormat);
-						}
-						elementStack.push(graphEdge);
-						break;
-					case "attvalues":
-						graphAttributeValueListStack.push(new GraphAttributeValueList());
-						break;
-					case "attvalue":
-						String attID = getAttr(reader,"for");
-						String attValue = getAttr(reader,"value");
-						GraphAttributeValue gav = new GraphAttributeValue(attID, attValue);
-						String attributeClass = (elementStack.peek() instanceof GraphNode ? "node" : "edge");
-						GraphAttributeList gal = graphData.getGraphAttributeListByClass(attributeClass);
-						GraphAttribute ga1 = gal.getAttributeByID(attID);
-						gav.setGraphAttribute(ga1);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							if(end == null)
-								end = "";
-							gav.setStart(start); gav.setEnd(end);
-							gav.setFormat(timeFormat);
-						}
-						graphAttributeValueListStack.peek().add(gav);
-						break;
-					case "spells":
-						break;
-					case "spell":
-						String spellStart = dateHandler(reader,"start");
-						String spellEnd = dateHandler(reader,"end");
-						GraphSpell spell = new GraphSpell(spellStart, spellEnd, graphData.getTimeFormat());
-						spellStack.push(spell);
-						break;
-					default:
-						break;
-					}
-					break;
-				case XMLStreamConstants.END_ELEMENT:
-					elementName = reader.getLocalName();
-					switch(elementName){
-					case "modelparameters":
-						break;
-					case "modelparameter":
-						break;
-					case "attributeparameters":
-						break;
-					case "attributeparameter":
-						break;
-					case "attributes": // dump attribute list to GraphData and get ready for next round of attributes
-						graphData.getAttributeLists().add(graphAttributeListStack.pop());
-						break;
-					case "node": 
-						graphData.addNode((GraphNode)elementStack.pop());
-						break;
-					case "nodes":
-						break;
-					case "edge":
-						graphData.addEdge((GraphEdge)elementStack.pop());
-						break;
-					case "edges":
-						break;
-					case "attvalue":
-						break;
-					case "attvalues":
-						GraphElement graphElement = elementStack.peek();
-						GraphAttributeValueList currValues = graphAttributeValueListStack.pop();
-						GraphAttributeValueList gavl = graphElement.getAttributes();
-						// add one by one to handle time/value conflicts
-						for(GraphAttributeValue currGav : currValues){
-							gavl.addGraphAttribute(currGav);
-						}
-						graphElement.setAttributes(gavl); 
-						break;
-					case "spell":
-						GraphElement currElem = elementStack.peek();
-						GraphSpellList spellList = currElem.getSpells();
-						spellList.addOrAppendSpell(spellStack.pop());
-						currElem.setSpells(spellList);
-						break;
-					case "spells":
-						break;
-					default:
-						break;
-					}
-					break;
-				default:
-					break;
-				}
-				if(ctr % 1000000 == 0)
-				{
-					System.out.println(ctr + " events processed.");
-				}
-				ctr++;
-			}
-		} 
-		catch (XMLStreamException e) 
-		{
-			e.printStackTrace();
-		}
-		return graphData;
+		return handler.getGraphData();
 	}
 	
 	/**
@@ -602,202 +327,352 @@ public class GraphParser {
 	 * @return parameterized network
 	 */
 	public static GraphData readGEXFParams(String filename) {
-		GraphData graphData = null;
-		Stack<GraphAttributeList> graphAttributeListStack = new Stack<GraphAttributeList>();
-		InputStream fis = null;
-		try {
-			fis = new FileInputStream(new File(filename));
-			XMLStreamReader reader = XMLInputFactory.newInstance().
-					createXMLStreamReader(fis);
-			int ctr = 1;
-			String timeformat = "";
-			boolean finishedCollectingParams = false;
-			while(reader.hasNext() && !finishedCollectingParams) {
-				int event = reader.next();
-				//String namespaceURI = reader.getNamespaceURI();
-				switch(event) {
-				case XMLStreamConstants.START_DOCUMENT:
-					break;
-				case XMLStreamConstants.START_ELEMENT:
-					String elementName = reader.getLocalName();
-					switch(elementName){
-					case "graph":
-						String edgeType = getAttr(reader,"defaultedgetype");
-						timeformat = getAttr(reader,"timeformat");
-						String graphMode = getAttr(reader,"mode");
-						String startTime = "";
-						if(graphMode.equals("dynamic")) {
-							startTime = getAttr(reader,"starttime");
-						}
-						graphData = new GraphData(edgeType, timeformat, graphMode);
-						graphData.setStartTime(startTime);
-						break;
-					case "attributes":
-						String elementClass = getAttr(reader,"class");
-						String elementMode = getAttr(reader,"mode");
-						graphAttributeListStack.push(new GraphAttributeList(elementClass, elementMode));
-						break;
-					case "attribute":
-						String id = getAttr(reader,"id");
-						String title = getAttr(reader,"title");
-						String type = getAttr(reader,"type");
-						String datamode = getAttr(reader, "datamode");
-						GraphAttribute graphAttribute = new GraphAttribute(id, title, type);
-						graphAttribute.setDataMode(datamode);
-						graphAttributeListStack.peek().add(graphAttribute);
-						break;
-					case "nodes":
-						finishedCollectingParams = true; // short-circuit to finish reading file early
-						break;
-					}
-					break;
-				case XMLStreamConstants.END_ELEMENT:
-					elementName = reader.getLocalName();
-					switch(elementName){
-					case "attributes": // dump attribute list to GraphData and get ready for next round of attributes
-						graphData.getAttributeLists().add(graphAttributeListStack.pop());
-						break;
-					default:
-						break;
-					}
-					break;
-				default:
-					break;
-				}
-				if(ctr % 1000000 == 0)
-					System.out.println(ctr + " events processed.");
-				ctr++;
+		GraphDataHandler handler = new GraphDataHandler() {
+			private boolean finishedCollectingParams = false;
+			
+			@Override
+			public void startNodes() {
+				finishedCollectingParams = true; // short-circuit to finish reading file early
+			}
+			
+			@Override
+			public boolean isDone() {
+				return finishedCollectingParams;
+			}
+		};
+		handler.setKeepDataModes(true);
+		readGEXF(filename, handler);
+		return handler.getGraphData();
+	}
+	
+	/**
+	 * Convert GEXF to {@link GraphData} containing only the structure (nodes and edges) to save memory.
+	 * <p></p>
+	 * Edges are identified by their source and target.
+	 * @param filename
+	 * @return graphData
+	 */
+	public static GraphData readGEXFStructure(String filename) {
+		GraphDataHandler handler = new GraphDataHandler() {
+			@Override
+			public void graph(String defaultEdgeType, String timeFormat, String mode, String startTime) {
+				super.graph(defaultEdgeType, timeFormat, mode, null);
+			}
+			
+			@Override
+			public void startAttributes(String elementClass, String mode) {
+			}
+			
+			@Override
+			public void attribute(String id, String title, String type, String dataMode) {
+			}
+			
+			@Override
+			public void endAttributes() {
+			}
+			
+			@Override
+			public void startEdge(String id, String source, String target, String weight, String start, String end) {
+				super.startEdge(null, source, target, weight, start, end);
 			}
+			
+			@Override
+			public void spell(String start, String end) {
+			}
+			
+			@Override
+			public void attvalue(String id, String value, String start, String end) {
+			}
+		};
+		readGEXF(filename, handler);
+		return handler.getGraphData();
+	}
+	
+	/**
+	 * @return true if byte streams are parsed with the {@link GEXFTokenizer}
+	 */
+	public static boolean isTokenizerEnabled() {
+		return tokenizerEnabled;
+	}
+	
+	/**
+	 * Parse files and byte streams with the {@link GEXFTokenizer} instead of StAX. Documents it
+	 * can't handle (other encodings, DOCTYPEs) still go to StAX; character readers always do.
+	 * @param tokenizerEnabled
+	 */
+	public static void setTokenizerEnabled(boolean tokenizerEnabled) {
+		GraphParser.tokenizerEnabled = tokenizerEnabled;
+	}
+	
+	/**
+	 * @return the monitor watching file and stream parses, null if none
+	 */
+	public static GraphParseMonitor getMonitor() {
+		return monitor;
+	}
+	
+	/**
+	 * Set the monitor watching file and stream parses that are not given their own. By default parses
+	 * are only stopped at {@link GraphParseMonitor#getDefaultMemoryBudget()}.
+	 * @param monitor the monitor, null for none
+	 */
+	public static void setMonitor(GraphParseMonitor monitor) {
+		GraphParser.monitor = monitor;
+	}
+	
+	/**
+	 * Parse a GEXF file into the handler, reporting rather than throwing errors,
+	 * so the loaders return what was read before a failure.
+	 * @param filename
+	 * @param handler
+	 */
+	private static void readGEXF(String filename, GraphHandler handler) {
+		try {
+			parseGEXF(filename, handler);
 		} catch (XMLStreamException e) {
 			e.printStackTrace();
 		} catch (FactoryConfigurationError e) {
 			e.printStackTrace();
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
-		}  finally {
-			if(fis != null)
-				try {
-					fis.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
 		}
-		return graphData;
 	}
 	
 	/**
-	 * Convert GEXF to {@link GraphData} containing only the structure (nodes and edges) to save memory.
-	 * <p></p>
-	 * Includes parameterization of {@link GraphAttribute}s.
+	 * Parse a GEXF file (plain or gzip compressed) and send its contents to a handler.
 	 * @param filename
-	 * @return graphData
+	 * @param handler
+	 * @throws IOException
+	 * @throws XMLStreamException
 	 */
-	public static GraphData readGEXFStructure(String filename) {
-		GraphData graphData = null;
-		Stack<GraphElement> elementStack = new Stack<GraphElement>();
-		// prevents graphData.getMode().equals("dynamic")
-		boolean dynamicGraph = false;
-		FileInputStream fis = null;
+	public static void parseGEXF(String filename, GraphHandler handler) throws IOException, XMLStreamException {
+		parseGEXF(filename, handler, monitor);
+	}
+	
+	/**
+	 * Parse a GEXF file (plain or gzip compressed) and send its contents to a handler, reporting to a monitor.
+	 * @param filename
+	 * @param handler
+	 * @param monitor the monitor, null for none
+	 * @throws GraphParseStoppedException if the monitor stopped the parse
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void parseGEXF(String filename, GraphHandler handler, GraphParseMonitor monitor) throws IOException, XMLStreamException {
+		File file = new File(filename);
+		CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+		InputStream fis = openGEXF(counter);
 		try {
-			fis = new FileInputStream(new File(filename));
-			XMLStreamReader reader = XMLInputFactory.newInstance().
-					createXMLStreamReader(fis);
-			int ctr = 1;
-			String timeformat = "";
-			while(reader.hasNext()) {
-				int event = reader.next();
-				//String namespaceURI = reader.getNamespaceURI();
-				switch(event) {
-				case XMLStreamConstants.START_DOCUMENT:
+			parseMonitored(fis, handler, monitor, counter, file.length());
+		} finally {
+			fis.close();
+		}
+	}
+	
+	/**
+	 * Parse a GEXF document (plain or gzip compressed) from a stream and send its contents to a handler.
+	 * The stream is not closed.
+	 * @param is
+	 * @param handler
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void parseGEXF(InputStream is, GraphHandler handler) throws IOException, XMLStreamException {
+		parseGEXF(is, handler, monitor);
+	}
+	
+	/**
+	 * Parse a GEXF document (plain or gzip compressed) from a stream and send its contents to a handler,
+	 * reporting to a monitor. The stream is not closed.
+	 * @param is
+	 * @param handler
+	 * @param monitor the monitor, null for none
+	 * @throws GraphParseStoppedException if the monitor stopped the parse
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void parseGEXF(InputStream is, GraphHandler handler, GraphParseMonitor monitor) throws IOException, XMLStreamException {
+		if(monitor == null) {
+			parseStream(decompressIfGzip(is), handler);
+			return;
+		}
+		CountingInputStream counter = new CountingInputStream(is);
+		parseMonitored(decompressIfGzip(counter), handler, monitor, counter, -1);
+	}
+	
+	/**
+	 * Parse a GEXF document from a character reader and send its contents to a handler.
+	 * The reader is not closed and no monitor applies.
+	 * @param charReader
+	 * @param handler
+	 * @throws XMLStreamException
+	 */
+	public static void parseGEXF(Reader charReader, GraphHandler handler) throws XMLStreamException {
+		parseGEXF(INPUT_FACTORY.get().createXMLStreamReader(charReader), handler);
+	}
+	
+	/**
+	 * Parse uncompressed bytes, checking the monitor (if any) through the handler.
+	 */
+	private static void parseMonitored(InputStream is, GraphHandler handler, GraphParseMonitor monitor,
+			CountingInputStream counter, long totalBytes) throws IOException, XMLStreamException {
+		if(monitor == null) {
+			parseStream(is, handler);
+			return;
+		}
+		MonitoredGraphHandler monitored = new MonitoredGraphHandler(handler, new GraphParseProgress(monitor, counter, totalBytes));
+		parseStream(is, monitored);
+		monitored.finish();
+	}
+	
+	/**
+	 * Parse uncompressed bytes with the {@link GEXFTokenizer} if enabled, otherwise (or if it declines
+	 * the document) with StAX.
+	 */
+	private static void parseStream(InputStream is, GraphHandler handler) throws IOException, XMLStreamException {
+		if(tokenizerEnabled) {
+			GEXFTokenizer tokenizer = new GEXFTokenizer(is);
+			if(tokenizer.parse(handler)) {
+				return;
+			}
+			is = tokenizer.replay();
+		}
+		parseGEXF(INPUT_FACTORY.get().createXMLStreamReader(is), handler);
+	}
+	
+	/**
+	 * Stream a GEXF file (plain or gzip compressed) through a visitor without building a {@link GraphData}.
+	 * Heap use does not grow with the file: events are reused and nothing is retained beyond the header.
+	 * @param filename
+	 * @param visitor
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void visitGEXF(String filename, GraphVisitor visitor) throws IOException, XMLStreamException {
+		parseGEXF(filename, new GraphVisitingHandler(visitor));
+	}
+	
+	/**
+	 * Stream a GEXF document (plain or gzip compressed) through a visitor without building a {@link GraphData}.
+	 * The stream is not closed.
+	 * @param is
+	 * @param visitor
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void visitGEXF(InputStream is, GraphVisitor visitor) throws IOException, XMLStreamException {
+		parseGEXF(is, new GraphVisitingHandler(visitor));
+	}
+	
+	/**
+	 * The parsing loop shared by every loader: turns the XML events of a GEXF document into
+	 * {@link GraphHandler} callbacks until the document ends or the handler is done.
+	 * @param reader initialized XML reader
+	 * @param handler
+	 * @throws XMLStreamException
+	 */
+	public static void parseGEXF(XMLStreamReader reader, GraphHandler handler) throws XMLStreamException {
+		while(reader.hasNext() && !handler.isDone()) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				switch(reader.getLocalName()) {
+				case "graph":
+					handler.graph(getAttr(reader, "defaultedgetype"), getAttr(reader, "timeformat"),
+							getAttr(reader, "mode"), getAttr(reader, "starttime"));
+					break;
+				case "attributes":
+					handler.startAttributes(getAttr(reader, "class"), getAttr(reader, "mode"));
+					break;
+				case "attribute":
+					handler.attribute(getAttr(reader, "id"), getAttr(reader, "title"),
+							getAttr(reader, "type"), getAttr(reader, "datamode"));
+					break;
+				case "nodes":
+					handler.startNodes();
+					break;
+				case "node":
+					handler.startNode(getAttr(reader, "id"), getAttr(reader, "label"),
+							getAttr(reader, "start"), getAttr(reader, "end"));
+					break;
+				case "edges":
+					handler.startEdges();
+					break;
+				case "edge":
+					handler.startEdge(getAttr(reader, "id"), getAttr(reader, "source"), getAttr(reader, "target"),
+							getAttr(reader, "weight"), getAttr(reader, "start"), getAttr(reader, "end"));
 					break;
-				case XMLStreamConstants.START_ELEMENT:
-					String elementName = reader.getLocalName();
-					switch(elementName){
-					case "graph":
-						String edgeType = getAttr(reader,"defaultedgetype");
-						timeformat = getAttr(reader,"timeformat");
-						String graphMode = getAttr(reader,"mode");
-						if(graphMode.equals("dynamic"))
-							dynamicGraph = true;
-						graphData = new GraphData(edgeType, timeformat, graphMode);
-						break;
-					case "nodes":
-						break; 
-					case "node":
-						String nodeID = getAttr(reader,"id");
-						String nodeLabel = getAttr(reader,"label");
-						GraphNode graphNode = new GraphNode(nodeID, nodeLabel);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphNode.setStart(start); graphNode.setEnd(end);
-							graphNode.setFormat(timeformat);
-						}
-						elementStack.push(graphNode);
-						break;
-					case "edges":
-						break;
-					case "edge":
-						String source = getAttr(reader, "source");
-						String target = getAttr(reader,"target");
-						String weight = getAttr(reader,"weight");
-						String edgeID = source + "||" + target;
-						GraphEdge graphEdge = new GraphEdge(edgeID, source, target);
-						graphEdge.setWeight(weight);
-						if(dynamicGraph) {
-							String start = dateHandler(reader,"start");
-							String end = dateHandler(reader,"end");
-							graphEdge.setStart(start); graphEdge.setEnd(end);
-							graphEdge.setFormat(timeformat);
-						}
-						elementStack.push(graphEdge);
-						break;
-					default:
-						break;
-					}
+				case "attvalue":
+					handler.attvalue(getAttr(reader, "for"), getAttr(reader, "value"),
+							getAttr(reader, "start"), getAttr(reader, "end"));
 					break;
-				case XMLStreamConstants.END_ELEMENT:
-					elementName = reader.getLocalName();
-					switch(elementName){
-					case "node": // dump current node
-						graphData.addNode((GraphNode)elementStack.pop());
-						break;
-					case "nodes":
-						break;
-					case "edge":
-						graphData.addEdge((GraphEdge)elementStack.pop());
-						break;
-					case "edges":
-						break;
-					default:
-						break;
-					}
+				case "spell":
+					handler.spell(getAttr(reader, "start"), getAttr(reader, "end"));
 					break;
 				default:
 					break;
 				}
-				if(ctr % 1000000 == 0)
-					System.out.println(ctr + " events processed.");
-				ctr++;
 			}
-		} catch (XMLStreamException e) {
-			e.printStackTrace();
-		} catch (FactoryConfigurationError e) {
-			e.printStackTrace();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (OutOfMemoryError e) {
-			e.printStackTrace();
-		}
-		finally {
-			if(fis != null)
-				try {
-					fis.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+			else if(event == XMLStreamConstants.END_ELEMENT) {
+				switch(reader.getLocalName()) {
+				case "attributes":
+					handler.endAttributes();
+					break;
+				case "node":
+					handler.endNode();
+					break;
+				case "edge":
+					handler.endEdge();
+					break;
+				default:
+					break;
 				}
+			}
 		}
-		return graphData;
+	}
+	
+	/**
+	 * Open a GEXF file for reading. Gzip compressed files (detected by their magic bytes, not their name)
+	 * are decompressed on a {@link ReadAheadInputStream} thread so inflating overlaps with parsing.
+	 * @param file the file's bytes
+	 * @return input stream, to be closed by the caller
+	 * @throws IOException
+	 */
+	private static InputStream openGEXF(InputStream file) throws IOException {
+		BufferedInputStream bis = new BufferedInputStream(file, 1 << 16);
+		if(isGzip(bis)) {
+			return new ReadAheadInputStream(new GZIPInputStream(bis, 1 << 16));
+		}
+		return bis;
+	}
+	
+	/**
+	 * Wrap a stream in a {@link GZIPInputStream} if it starts with the gzip magic bytes.
+	 * @param is
+	 * @return a stream of the uncompressed document
+	 * @throws IOException
+	 */
+	private static InputStream decompressIfGzip(InputStream is) throws IOException {
+		if(!is.markSupported()) {
+			is = new BufferedInputStream(is, 1 << 16);
+		}
+		if(isGzip(is)) {
+			return new GZIPInputStream(is, 1 << 16);
+		}
+		return is;
+	}
+	
+	/**
+	 * Peek at the first two bytes of a stream that supports mark/reset.
+	 * @param is
+	 * @return true if they are the gzip magic number
+	 * @throws IOException
+	 */
+	private static boolean isGzip(InputStream is) throws IOException {
+		is.mark(2);
+		int b1 = is.read();
+		int b2 = is.read();
+		is.reset();
+		return b1 == 0x1f && b2 == 0x8b;
 	}
 	
 	/**
@@ -827,18 +702,4 @@ public class GraphParser {
 		return map;
 	}
 	*///TODO check that it's not used and delete
-	
-	/**
-	 * Looks for start/end values in current XML node, returns blank string if nonexistent.
-	 * @param reader
-	 * @param dateType
-	 * @return date
-	 */
-	private static String dateHandler(XMLStreamReader reader, String dateType) {
-		String date = getAttr(reader,dateType);
-		if(date == null) {
-			date = "";
-		}
-		return date;
-	}
-}
\ No newline at end of file
+}
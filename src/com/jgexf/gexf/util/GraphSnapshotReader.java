@@ -0,0 +1,470 @@
+package com.jgexf.gexf.util;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphAttributeValueList;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSchema;
+import com.jgexf.gexf.GraphSpell;
+import com.jgexf.gexf.GraphSpellList;
+import com.jgexf.gexf.GraphTime;
+
+import static com.jgexf.gexf.util.GraphSnapshotWriter.*;
+
+/**
+ * Memory-maps a snapshot written by {@link GraphSnapshotWriter} and materializes elements on demand.
+ * <p>
+ * Opening only reads the footer, the graph header and the attribute lists. Nodes and edges are decoded
+ * when asked for, by position or id, and dictionary strings are decoded the first time they are
+ * referenced, so a job that looks at part of a graph only pays for that part. {@link #readGraphData()}
+ * materializes everything. Files over 2 GB are mapped in 1 GB segments.
+ * </p>
+ * Reads may come from several threads; elements returned are new objects each time.
+ * @author bskarin
+ *
+ */
+public class GraphSnapshotReader implements Closeable {
+
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long graphOffset;
+	private final long nodeIndexOffset;
+	private final int nodeCount;
+	private final long edgeIndexOffset;
+	private final int edgeCount;
+	private final long dictionaryOffset;
+	private final long stringsOffset;
+	private final String[] strings;
+	private final GraphData header;
+	private final GraphSchema nodeSchema;
+	private final GraphSchema edgeSchema;
+	private Map<String, Integer> nodeIds = null;
+	private Map<String, Integer> edgeIds = null;
+	private boolean cacheStrings = true;
+
+	/**
+	 * Map a snapshot file.
+	 * @param fileName
+	 * @return reader, to be closed when done
+	 * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+	 */
+	public static GraphSnapshotReader open(String fileName) throws IOException {
+		return new GraphSnapshotReader(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Map a snapshot file and materialize the whole graph.
+	 * @param fileName
+	 * @return network
+	 * @throws IOException
+	 */
+	public static GraphData read(String fileName) throws IOException {
+		GraphSnapshotReader reader = open(fileName);
+		try {
+			return reader.readGraphData();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private GraphSnapshotReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		try {
+			long size = channel.size();
+			if(size < 8 + FOOTER_SIZE) {
+				throw new IOException("Not a graph snapshot (too short)");
+			}
+			int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[count];
+			for(int i = 0; i < count; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, size - start));
+			}
+			Cursor cursor = new Cursor(0);
+			if(cursor.readInt() != MAGIC) {
+				throw new IOException("Not a graph snapshot (bad magic)");
+			}
+			int version = cursor.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported graph snapshot version " + version);
+			}
+			cursor = new Cursor(size - FOOTER_SIZE);
+			graphOffset = cursor.readLong();
+			nodeIndexOffset = cursor.readLong();
+			nodeCount = (int) cursor.readLong();
+			edgeIndexOffset = cursor.readLong();
+			edgeCount = (int) cursor.readLong();
+			dictionaryOffset = cursor.readLong();
+			strings = new String[(int) cursor.readLong()];
+			stringsOffset = readLong(dictionaryOffset);
+			if(cursor.readInt() != version || cursor.readInt() != MAGIC) {
+				throw new IOException("Graph snapshot is truncated");
+			}
+			header = readHeader();
+			nodeSchema = header.getSchema(GraphAttributeList.NODE);
+			edgeSchema = header.getSchema(GraphAttributeList.EDGE);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		} catch (RuntimeException e) {
+			channel.close();
+			throw new IOException("Corrupt graph snapshot", e);
+		}
+	}
+
+	/**
+	 * Stop keeping decoded strings, for a single sequential pass over a large file
+	 * where holding every string would defeat reading it from disk.
+	 */
+	void disableStringCache() {
+		cacheStrings = false;
+	}
+
+	/**
+	 * @return number of nodes in the snapshot
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return number of edges in the snapshot
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * A graph with the snapshot's header and attribute lists but no elements, e.g. for
+	 * {@link GraphParser#writeParams(GraphData, String)}. The attribute lists are shared with
+	 * the elements this reader materializes.
+	 * @return graph without nodes or edges
+	 */
+	public GraphData getGraphHeader() {
+		GraphData gd = new GraphData();
+		gd.setDefaultEdgeType(header.getDefaultEdgeType());
+		gd.setTimeFormat(header.getTimeFormat());
+		gd.setMode(header.getMode());
+		gd.setStartTime(header.getStartTime());
+		gd.setAttributeLists(header.getAttributeLists());
+		return gd;
+	}
+
+	/**
+	 * Materialize every node and edge.
+	 * @return network
+	 */
+	public GraphData readGraphData() {
+		GraphData gd = getGraphHeader();
+		for(int i = 0; i < nodeCount; i++) {
+			gd.addNode(getNode(i));
+		}
+		for(int i = 0; i < edgeCount; i++) {
+			gd.addEdge(getEdge(i));
+		}
+		return gd;
+	}
+
+	/**
+	 * @param index position of the node in the original graph
+	 * @return the node
+	 */
+	public GraphNode getNode(int index) {
+		Cursor cursor = new Cursor(readLong(nodeIndexOffset + 8L * index));
+		GraphNode gn = new GraphNode(cursor.readString(), cursor.readString());
+		String format = cursor.readString();
+		gn.setFormat(format);
+		int flags = cursor.readByte();
+		if((flags & NODE_LAYOUT) != 0) {
+			gn.setxPos(cursor.readDouble());
+			gn.setyPos(cursor.readDouble());
+			gn.setSize(cursor.readDouble());
+		}
+		if((flags & NODE_COLOR) != 0) {
+			gn.setColor(new Color(cursor.readInt(), true));
+		}
+		readContent(cursor, gn, format, nodeSchema);
+		return gn;
+	}
+
+	/**
+	 * @param index position of the edge in the original graph
+	 * @return the edge
+	 */
+	public GraphEdge getEdge(int index) {
+		Cursor cursor = new Cursor(readLong(edgeIndexOffset + 8L * index));
+		GraphEdge ge = new GraphEdge(cursor.readString(), cursor.readString(), cursor.readString());
+		String format = cursor.readString();
+		ge.setFormat(format);
+		int tag = cursor.readByte();
+		if(tag == VALUE_TOTAL) {
+			ge.setWeightTotal(cursor.readDouble());
+		}
+		else if(tag != VALUE_NULL) {
+			ge.setWeight(cursor.readValue(tag));
+		}
+		readContent(cursor, ge, format, edgeSchema);
+		return ge;
+	}
+
+	/**
+	 * Look a node up by id. The id index is built on the first lookup.
+	 * @param id
+	 * @return the node, or null if there is none
+	 */
+	public GraphNode getNode(String id) {
+		Integer index = getIds(true).get(id);
+		return (index == null ? null : getNode(index));
+	}
+
+	/**
+	 * Look an edge up by id. The id index is built on the first lookup.
+	 * @param id
+	 * @return the edge, or null if there is none
+	 */
+	public GraphEdge getEdge(String id) {
+		Integer index = getIds(false).get(id);
+		return (index == null ? null : getEdge(index));
+	}
+
+	private synchronized Map<String, Integer> getIds(boolean nodes) {
+		Map<String, Integer> ids = (nodes ? nodeIds : edgeIds);
+		if(ids == null) {
+			int count = (nodes ? nodeCount : edgeCount);
+			long index = (nodes ? nodeIndexOffset : edgeIndexOffset);
+			ids = new HashMap<String, Integer>(count * 2);
+			for(int i = 0; i < count; i++) {
+				//the id is the first field of every record
+				ids.put(new Cursor(readLong(index + 8L * i)).readString(), i);
+			}
+			if(nodes) {
+				nodeIds = ids;
+			}
+			else {
+				edgeIds = ids;
+			}
+		}
+		return ids;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private GraphData readHeader() {
+		Cursor cursor = new Cursor(graphOffset);
+		GraphData gd = new GraphData();
+		gd.setDefaultEdgeType(cursor.readString());
+		gd.setTimeFormat(cursor.readString());
+		gd.setMode(cursor.readString());
+		gd.setStartTime(cursor.readString());
+		int listCount = (int) cursor.readVarLong();
+		List<GraphAttributeList> lists = new ArrayList<GraphAttributeList>(listCount);
+		for(int l = 0; l < listCount; l++) {
+			GraphAttributeList gal = new GraphAttributeList(cursor.readString(), cursor.readString());
+			int size = (int) cursor.readVarLong();
+			for(int a = 0; a < size; a++) {
+				GraphAttribute ga = new GraphAttribute(cursor.readString(), cursor.readString(), cursor.readString());
+				ga.setDataMode(cursor.readString());
+				gal.add(ga);
+			}
+			lists.add(gal);
+		}
+		gd.setAttributeLists(lists);
+		return gd;
+	}
+
+	private void readContent(Cursor cursor, GraphElement elem, String format, GraphSchema schema) {
+		cursor.timeBase = 0;
+		cursor.readTime(elem, format);
+		int spellCount = (int) cursor.readVarLong();
+		if(spellCount > 0) {
+			GraphSpellList spells = elem.getSpells(); //an empty copy
+			for(int i = 0; i < spellCount; i++) {
+				GraphSpell gs = new GraphSpell();
+				cursor.readTime(gs, format);
+				spells.add(gs);
+			}
+			elem.setSpells(spells);
+		}
+		int valueCount = (int) cursor.readVarLong();
+		if(valueCount > 0) {
+			GraphAttributeValueList values = new GraphAttributeValueList();
+			for(int i = 0; i < valueCount; i++) {
+				int flags = cursor.readByte();
+				GraphAttributeValue gav = new GraphAttributeValue(cursor.readString(), null);
+				int tag = cursor.readByte();
+				if(tag == VALUE_TOTAL) {
+					gav.setValueTotal(cursor.readDouble());
+				}
+				else {
+					gav.setValue(cursor.readValue(tag));
+				}
+				if((flags & GAV_RESOLVED) != 0 && schema != null) {
+					gav.setGraphAttribute(schema.getAttributeByID(gav.getId()));
+				}
+				cursor.readTime(gav, format);
+				values.add(gav);
+			}
+			elem.setAttributes(values);
+		}
+	}
+
+	private String getString(int ref) {
+		if(ref == 0) {
+			return null;
+		}
+		String s = strings[ref - 1];
+		if(s == null) {
+			long start = stringsOffset + readLong(dictionaryOffset + 8L * ref);
+			long end = stringsOffset + readLong(dictionaryOffset + 8L * (ref + 1));
+			byte[] bytes = new byte[(int) (end - start)];
+			for(int i = 0; i < bytes.length; i++) {
+				bytes[i] = readByte(start + i);
+			}
+			s = new String(bytes, StandardCharsets.UTF_8);
+			if(cacheStrings) {
+				strings[ref - 1] = s; //racing threads decode the same String, either is fine
+			}
+		}
+		return s;
+	}
+
+	private byte readByte(long pos) {
+		return segments[(int) (pos >>> SEGMENT_BITS)].get((int) (pos & SEGMENT_MASK));
+	}
+
+	private long readLong(long pos) {
+		int offset = (int) (pos & SEGMENT_MASK);
+		if(offset <= SEGMENT_MASK - 7) {
+			return segments[(int) (pos >>> SEGMENT_BITS)].getLong(offset);
+		}
+		long v = 0;
+		for(int i = 0; i < 8; i++) {
+			v = (v << 8) | (readByte(pos + i) & 0xff);
+		}
+		return v;
+	}
+
+	/**
+	 * Read position within the mapped file, one per record being decoded.
+	 */
+	private class Cursor {
+		private long pos;
+		private long timeBase = 0;
+
+		Cursor(long pos) {
+			this.pos = pos;
+		}
+
+		int readByte() {
+			return GraphSnapshotReader.this.readByte(pos++) & 0xff;
+		}
+
+		int readInt() {
+			int v = 0;
+			for(int i = 0; i < 4; i++) {
+				v = (v << 8) | readByte();
+			}
+			return v;
+		}
+
+		long readLong() {
+			long v = GraphSnapshotReader.this.readLong(pos);
+			pos += 8;
+			return v;
+		}
+
+		double readDouble() {
+			return Double.longBitsToDouble(readLong());
+		}
+
+		long readVarLong() {
+			long v = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = readByte();
+				v |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return v;
+		}
+
+		long readZigZag() {
+			long v = readVarLong();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		String readString() {
+			return getString((int) readVarLong());
+		}
+
+		String readValue(int tag) {
+			switch(tag) {
+			case VALUE_STRING:
+				return readString();
+			case VALUE_LONG:
+				return Long.toString(readZigZag());
+			case VALUE_DOUBLE:
+				return Double.toString(readDouble());
+			default:
+				return null;
+			}
+		}
+
+		void readTime(GraphTime gt, String elementFormat) {
+			int flags = readByte();
+			gt.setFormat((flags & TIME_FORMAT) != 0 ? readString() : elementFormat);
+			boolean hasStart = (flags & TIME_START) != 0;
+			boolean hasEnd = (flags & TIME_END) != 0;
+			if((flags & TIME_TEXT) != 0) {
+				if(hasStart) {
+					gt.setStart(readString());
+				}
+				if(hasEnd) {
+					gt.setEnd(readString());
+				}
+			}
+			else if((flags & TIME_DELTA) != 0) {
+				if(hasStart) {
+					timeBase += readZigZag();
+					gt.setStartValue(timeBase);
+				}
+				if(hasEnd) {
+					timeBase += readZigZag();
+					gt.setEndValue(timeBase);
+				}
+			}
+			else {
+				if(hasStart) {
+					gt.setStartValue(readDouble());
+				}
+				if(hasEnd) {
+					gt.setEndValue(readDouble());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package com.jgexf.gexf.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jgexf.gexf.GraphAttribute;
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphAttributeValue;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSpell;
+import com.jgexf.gexf.GraphTime;
+
+/**
+ * Writes {@link GraphData} as a compact binary snapshot that {@link GraphSnapshotReader} maps back
+ * in far less time than re-parsing the GEXF.
+ * <p>
+ * Layout (big-endian, version {@value #VERSION}):
+ * </p>
+ * <pre>
+ * header      int magic "JGXB", int version
+ * graph       refs defaultedgetype, timeformat, mode, starttime; attribute lists
+ * nodes       one record per node
+ * edges       one record per edge
+ * strings     UTF-8 bytes of every distinct string
+ * dictionary  long offset of the strings, then a long offset per string (plus the end) relative to it
+ * node index  long offset of each node record
+ * edge index  long offset of each edge record
+ * footer      long offsets/counts of graph, node index, node count, edge index, edge count, dictionary, string count;
+ *             int version, int magic
+ * </pre>
+ * Every string is a varint reference into the dictionary (0 for null, otherwise index + 1), so ids,
+ * labels, formats and repeated values are stored once. Times are delta-encoded varlongs of epoch
+ * milliseconds, each spell relative to the one before it, with double and text fallbacks for
+ * non-datetime formats. Attribute values are typed by their attribute's column: numbers that
+ * round-trip as long or double text are stored as such, running totals as doubles, anything else
+ * as a string reference.
+ * @author bskarin
+ *
+ */
+public class GraphSnapshotWriter {
+
+	/**
+	 * "JGXB"
+	 */
+	public static final int MAGIC = 0x4A475842;
+
+	/**
+	 * Current format version, bumped on incompatible changes
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Size of the fixed footer at the end of the file
+	 */
+	public static final int FOOTER_SIZE = 7 * 8 + 2 * 4;
+
+	//GraphTime flags
+	static final int TIME_START = 1;
+	static final int TIME_END = 2;
+	static final int TIME_FORMAT = 4; //has its own format, otherwise the element's
+	static final int TIME_DELTA = 8; //integral values as varlong deltas
+	static final int TIME_TEXT = 16; //values as their text (non-datetime formats)
+	//otherwise values as raw doubles
+
+	//node flags
+	static final int NODE_LAYOUT = 1;
+	static final int NODE_COLOR = 2;
+
+	//value/weight tags
+	static final int VALUE_NULL = 0;
+	static final int VALUE_STRING = 1;
+	static final int VALUE_LONG = 2;
+	static final int VALUE_DOUBLE = 3;
+	static final int VALUE_TOTAL = 4;
+
+	//attribute value flags
+	static final int GAV_RESOLVED = 1; //has its GraphAttribute
+
+	private final OutputStream out;
+	private long position = 0;
+	private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+	private final List<String> strings = new ArrayList<String>();
+	private long timeBase = 0;
+
+	/**
+	 * Write a snapshot of the graph to a file.
+	 * @param gd
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public static void write(GraphData gd, String fileName) throws IOException {
+		write(gd, gd.getNodeView(), gd.getEdgeView(), fileName);
+	}
+
+	/**
+	 * Write a snapshot of the given elements, in the given order, under a graph's header and attribute lists.
+	 * @param header graph attributes and attribute lists; its own elements are not written
+	 * @param nodes
+	 * @param edges
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public static void write(GraphData header, Collection<GraphNode> nodes, Collection<GraphEdge> edges,
+			String fileName) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+		try {
+			new GraphSnapshotWriter(out).write(header, nodes, edges);
+		} finally {
+			out.close();
+		}
+	}
+
+	private GraphSnapshotWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	private void write(GraphData gd, Collection<GraphNode> nodes, Collection<GraphEdge> edges) throws IOException {
+		writeInt(MAGIC);
+		writeInt(VERSION);
+
+		long graphOffset = position;
+		writeRef(gd.getDefaultEdgeType());
+		writeRef(gd.getTimeFormat());
+		writeRef(gd.getMode());
+		writeRef(gd.getStartTime());
+		List<GraphAttributeList> lists = gd.getAttributeLists();
+		writeVarLong(lists == null ? 0 : lists.size());
+		if(lists != null) {
+			for(GraphAttributeList gal : lists) {
+				writeRef(gal.getAttributeClass());
+				writeRef(gal.getMode());
+				writeVarLong(gal.size());
+				for(GraphAttribute ga : gal) {
+					writeRef(ga.getId());
+					writeRef(ga.getTitle());
+					writeRef(ga.getType());
+					writeRef(ga.getDataMode());
+				}
+			}
+		}
+
+		long[] nodeOffsets = new long[nodes.size()];
+		int i = 0;
+		for(GraphNode gn : nodes) {
+			nodeOffsets[i++] = position;
+			writeNode(gn);
+		}
+		long[] edgeOffsets = new long[edges.size()];
+		i = 0;
+		for(GraphEdge ge : edges) {
+			edgeOffsets[i++] = position;
+			writeEdge(ge);
+		}
+
+		//the dictionary is only complete once every record is written
+		long[] stringOffsets = new long[strings.size() + 1];
+		long blobStart = position;
+		for(int s = 0; s < strings.size(); s++) {
+			stringOffsets[s] = position - blobStart;
+			byte[] bytes = strings.get(s).getBytes(StandardCharsets.UTF_8);
+			out.write(bytes);
+			position += bytes.length;
+		}
+		stringOffsets[strings.size()] = position - blobStart;
+		long dictionaryOffset = position;
+		writeLong(blobStart);
+		for(long offset : stringOffsets) {
+			writeLong(offset);
+		}
+
+		long nodeIndexOffset = position;
+		for(long offset : nodeOffsets) {
+			writeLong(offset);
+		}
+		long edgeIndexOffset = position;
+		for(long offset : edgeOffsets) {
+			writeLong(offset);
+		}
+
+		writeLong(graphOffset);
+		writeLong(nodeIndexOffset);
+		writeLong(nodeOffsets.length);
+		writeLong(edgeIndexOffset);
+		writeLong(edgeOffsets.length);
+		writeLong(dictionaryOffset);
+		writeLong(strings.size());
+		writeInt(VERSION);
+		writeInt(MAGIC);
+	}
+
+	private void writeNode(GraphNode gn) throws IOException {
+		writeRef(gn.getId());
+		writeRef(gn.getLabel());
+		writeRef(gn.getFormat());
+		boolean layout = (gn.getxPos() != 0 || gn.getyPos() != 0 || gn.getSize() != 0);
+		int flags = (layout ? NODE_LAYOUT : 0) | (gn.getColor() != null ? NODE_COLOR : 0);
+		out.write(flags);
+		position++;
+		if(layout) {
+			writeDouble(gn.getxPos());
+			writeDouble(gn.getyPos());
+			writeDouble(gn.getSize());
+		}
+		if(gn.getColor() != null) {
+			writeInt(gn.getColor().getRGB());
+		}
+		writeContent(gn);
+	}
+
+	private void writeEdge(GraphEdge ge) throws IOException {
+		writeRef(ge.getId());
+		writeRef(ge.getSource());
+		writeRef(ge.getTarget());
+		writeRef(ge.getFormat());
+		if(ge.isWeightAccumulated()) {
+			out.write(VALUE_TOTAL);
+			position++;
+			writeDouble(ge.getWeightAsDouble());
+		}
+		else if(ge.hasWeight()) {
+			writeValue(ge.getWeight(), true);
+		}
+		else {
+			out.write(VALUE_NULL);
+			position++;
+		}
+		writeContent(ge);
+	}
+
+	/**
+	 * The element's own interval, its spells and its attribute values.
+	 */
+	private void writeContent(GraphElement elem) throws IOException {
+		String format = elem.getFormat();
+		timeBase = 0;
+		writeTime(elem, format);
+		writeVarLong(elem.getSpellView().size());
+		for(GraphSpell gs : elem.getSpellView()) {
+			writeTime(gs, format);
+		}
+		writeVarLong(elem.getAttributeView().size());
+		for(GraphAttributeValue gav : elem.getAttributeView()) {
+			GraphAttribute ga = gav.getGraphAttribute();
+			out.write(ga != null ? GAV_RESOLVED : 0);
+			position++;
+			writeRef(gav.getId());
+			if(gav.isAccumulated()) {
+				out.write(VALUE_TOTAL);
+				position++;
+				writeDouble(gav.getValueAsDouble());
+			}
+			else {
+				writeValue(gav.getValue(), ga != null && ga.isNumeric());
+			}
+			writeTime(gav, format);
+		}
+	}
+
+	/**
+	 * Typed value: numeric column values that print back identically are stored as numbers.
+	 */
+	private void writeValue(String value, boolean numeric) throws IOException {
+		if(value == null) {
+			out.write(VALUE_NULL);
+			position++;
+			return;
+		}
+		if(numeric) {
+			try {
+				long l = Long.parseLong(value);
+				if(Long.toString(l).equals(value)) {
+					out.write(VALUE_LONG);
+					position++;
+					writeVarLong(zigZag(l));
+					return;
+				}
+			} catch (NumberFormatException e) {
+				//not a long
+			}
+			try {
+				double d = Double.parseDouble(value);
+				if(Double.toString(d).equals(value)) {
+					out.write(VALUE_DOUBLE);
+					position++;
+					writeDouble(d);
+					return;
+				}
+			} catch (NumberFormatException e) {
+				//not a number, stored as text
+			}
+		}
+		out.write(VALUE_STRING);
+		position++;
+		writeRef(value);
+	}
+
+	/**
+	 * Interval of a time, delta-encoded against the previous time written for the element.
+	 */
+	private void writeTime(GraphTime gt, String elementFormat) throws IOException {
+		String format = gt.getFormat();
+		boolean ownFormat = (format == null ? elementFormat != null : !format.equals(elementFormat));
+		boolean hasStart = gt.hasStart();
+		boolean hasEnd = gt.hasEnd();
+		double start = gt.getStartValue();
+		double end = gt.getEndValue();
+		int flags = (hasStart ? TIME_START : 0) | (hasEnd ? TIME_END : 0) | (ownFormat ? TIME_FORMAT : 0);
+		if(!"datetime".equals(format)) {
+			flags |= TIME_TEXT;
+		}
+		else if((!hasStart || isLong(start)) && (!hasEnd || isLong(end))) {
+			flags |= TIME_DELTA;
+		}
+		out.write(flags);
+		position++;
+		if(ownFormat) {
+			writeRef(format);
+		}
+		if((flags & TIME_TEXT) != 0) {
+			if(hasStart) {
+				writeRef(gt.getStart());
+			}
+			if(hasEnd) {
+				writeRef(gt.getEnd());
+			}
+		}
+		else if((flags & TIME_DELTA) != 0) {
+			if(hasStart) {
+				writeVarLong(zigZag((long) start - timeBase));
+				timeBase = (long) start;
+			}
+			if(hasEnd) {
+				writeVarLong(zigZag((long) end - timeBase));
+				timeBase = (long) end;
+			}
+		}
+		else {
+			if(hasStart) {
+				writeDouble(start);
+			}
+			if(hasEnd) {
+				writeDouble(end);
+			}
+		}
+	}
+
+	private static boolean isLong(double d) {
+		return d == Math.rint(d) && Math.abs(d) < 0x1p62;
+	}
+
+	static long zigZag(long l) {
+		return (l << 1) ^ (l >> 63);
+	}
+
+	/**
+	 * Dictionary reference, 0 for null.
+	 */
+	private void writeRef(String s) throws IOException {
+		if(s == null) {
+			writeVarLong(0);
+			return;
+		}
+		Integer index = dictionary.get(s);
+		if(index == null) {
+			index = strings.size();
+			dictionary.put(s, index);
+			strings.add(s);
+		}
+		writeVarLong(index + 1L);
+	}
+
+	private void writeVarLong(long v) throws IOException {
+		while((v & ~0x7fL) != 0) {
+			out.write((int) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+			position++;
+		}
+		out.write((int) v);
+		position++;
+	}
+
+	private void writeInt(int v) throws IOException {
+		out.write(v >>> 24);
+		out.write(v >>> 16);
+		out.write(v >>> 8);
+		out.write(v);
+		position += 4;
+	}
+
+	private void writeLong(long v) throws IOException {
+		writeInt((int) (v >>> 32));
+		writeInt((int) v);
+	}
+
+	private void writeDouble(double d) throws IOException {
+		writeLong(Double.doubleToRawLongBits(d));
+	}
+}
@@ -0,0 +1,22 @@
+package com.jgexf.gexf.util;
+
+/**
+ * A streamed spell. Reused by the parser for every spell.
+ * @author bskarin
+ *
+ */
+public class GraphSpellEvent extends GraphTimeEvent {
+
+	private GraphElementEvent element;
+
+	void setElement(GraphElementEvent element) {
+		this.element = element;
+	}
+
+	/**
+	 * @return the node or edge the spell belongs to
+	 */
+	public GraphElementEvent getElement() {
+		return element;
+	}
+}
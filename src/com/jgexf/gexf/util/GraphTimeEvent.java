@@ -0,0 +1,89 @@
+package com.jgexf.gexf.util;
+
+import java.time.format.DateTimeParseException;
+
+import com.jgexf.gexf.GraphTime;
+
+/**
+ * Interval of a streamed element, spell or attribute value, kept as document text
+ * and only parsed when asked for.
+ * @author bskarin
+ *
+ */
+public abstract class GraphTimeEvent {
+
+	private String format;
+	private String start;
+	private String end;
+
+	void setTime(String format, String start, String end) {
+		this.format = format;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @return the graph's time format
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the start as written, null if absent
+	 */
+	public String getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the end as written, null if absent
+	 */
+	public String getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return true if a start was written
+	 */
+	public boolean hasStart() {
+		return start != null && !start.isEmpty();
+	}
+
+	/**
+	 * @return true if an end was written
+	 */
+	public boolean hasEnd() {
+		return end != null && !end.isEmpty();
+	}
+
+	/**
+	 * @return the start as epoch milliseconds (datetime) or a number, NaN if absent or unreadable
+	 */
+	public double getStartValue() {
+		return parseTime(start);
+	}
+
+	/**
+	 * @return the end as epoch milliseconds (datetime) or a number, NaN if absent or unreadable
+	 */
+	public double getEndValue() {
+		return parseTime(end);
+	}
+
+	private double parseTime(String time) {
+		if(time == null || time.isEmpty()) {
+			return Double.NaN;
+		}
+		try {
+			if("datetime".equals(format)) {
+				return GraphTime.getTimeCodec().parse(time);
+			}
+			return Double.parseDouble(time);
+		} catch (DateTimeParseException e) {
+			return Double.NaN;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
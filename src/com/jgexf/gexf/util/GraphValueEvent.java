@@ -0,0 +1,65 @@
+package com.jgexf.gexf.util;
+
+import com.jgexf.gexf.GraphAttribute;
+
+/**
+ * A streamed attribute value. Reused by the parser for every value.
+ * @author bskarin
+ *
+ */
+public class GraphValueEvent extends GraphTimeEvent {
+
+	private GraphElementEvent element;
+	private String id;
+	private GraphAttribute attribute;
+	private String value;
+
+	void set(GraphElementEvent element, String id, GraphAttribute attribute, String value) {
+		this.element = element;
+		this.id = id;
+		this.attribute = attribute;
+		this.value = value;
+	}
+
+	/**
+	 * @return the node or edge the value belongs to
+	 */
+	public GraphElementEvent getElement() {
+		return element;
+	}
+
+	/**
+	 * @return the id of the attribute the value is for
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the declared attribute, null if undeclared
+	 */
+	public GraphAttribute getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * @return the value as written
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the value as a number, NaN if it is not one
+	 */
+	public double getValueAsDouble() {
+		if(value == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
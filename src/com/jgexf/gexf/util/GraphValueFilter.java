@@ -0,0 +1,16 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Decides from its attribute values whether a node or edge is loaded: an element is dropped
+ * if any of its values in the time window is rejected. See {@link GraphLoadOptions}.
+ * @author bskarin
+ *
+ */
+public interface GraphValueFilter {
+
+	/**
+	 * @param value reused for every value, only valid during the call
+	 * @return false to drop the element the value belongs to
+	 */
+	boolean accept(GraphValueEvent value);
+}
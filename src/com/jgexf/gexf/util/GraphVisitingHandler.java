@@ -0,0 +1,114 @@
+package com.jgexf.gexf.util;
+
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphSchema;
+
+/**
+ * Feeds a {@link GraphVisitor}: the header is built as a {@link GraphData} (with data modes),
+ * elements are only passed through the reusable events.
+ * @author bskarin
+ *
+ */
+class GraphVisitingHandler extends GraphDataHandler {
+
+	private final GraphVisitor visitor;
+	private final GraphElementEvent node = new GraphElementEvent(false);
+	private final GraphElementEvent edge = new GraphElementEvent(true);
+	private final GraphSpellEvent spell = new GraphSpellEvent();
+	private final GraphValueEvent value = new GraphValueEvent();
+	private GraphElementEvent element;
+	private GraphSchema nodeSchema;
+	private GraphSchema edgeSchema;
+	private String timeFormat;
+	private boolean headerVisited = false;
+
+	GraphVisitingHandler(GraphVisitor visitor) {
+		this.visitor = visitor;
+		setKeepDataModes(true);
+	}
+
+	@Override
+	public void startNodes() {
+		visitHeader();
+	}
+
+	@Override
+	public void startEdges() {
+		visitHeader();
+	}
+
+	@Override
+	public void startNode(String id, String label, String start, String end) {
+		visitHeader();
+		node.set(id, label, null, null, null);
+		node.setTime(timeFormat, start, end);
+		element = node;
+		visitor.visitNode(node);
+	}
+
+	@Override
+	public void endNode() {
+		element = null;
+	}
+
+	@Override
+	public void startEdge(String id, String source, String target, String weight, String start, String end) {
+		visitHeader();
+		if(id == null)
+			id = source + "||" + target;
+		edge.set(id, null, source, target, weight);
+		edge.setTime(timeFormat, start, end);
+		element = edge;
+		visitor.visitEdge(edge);
+	}
+
+	@Override
+	public void endEdge() {
+		element = null;
+	}
+
+	@Override
+	public void spell(String start, String end) {
+		if(element == null) {
+			return;
+		}
+		spell.setElement(element);
+		spell.setTime(timeFormat, start, end);
+		visitor.visitSpell(spell);
+	}
+
+	@Override
+	public void attvalue(String id, String val, String start, String end) {
+		if(element == null) {
+			return;
+		}
+		GraphSchema schema = (element == node ? nodeSchema : edgeSchema);
+		value.set(element, id, (schema == null ? null : schema.getAttributeByID(id)), val);
+		value.setTime(timeFormat, start, end);
+		visitor.visitAttvalue(value);
+	}
+
+	@Override
+	public boolean isDone() {
+		return visitor.isDone();
+	}
+
+	/**
+	 * Hand over the header once, before the first element.
+	 */
+	private void visitHeader() {
+		if(headerVisited) {
+			return;
+		}
+		headerVisited = true;
+		GraphData header = getGraphData();
+		if(header == null) {
+			header = new GraphData();
+		}
+		timeFormat = header.getTimeFormat();
+		nodeSchema = header.getSchema(GraphAttributeList.NODE);
+		edgeSchema = header.getSchema(GraphAttributeList.EDGE);
+		visitor.visitGraph(header);
+	}
+}
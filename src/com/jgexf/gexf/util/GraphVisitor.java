@@ -0,0 +1,51 @@
+package com.jgexf.gexf.util;
+
+import com.jgexf.gexf.GraphData;
+
+/**
+ * Visits the elements of a GEXF document streamed by {@link GraphParser#visitGEXF(String, GraphVisitor)}
+ * without building a {@link GraphData}, for jobs such as degree counts or attribute sums over files
+ * too large to load.
+ * <p>
+ * Event objects are flyweights: the parser reuses the same instances for every element, so they are
+ * only valid during the call and anything needed later must be copied out. Spells and attribute values
+ * refer to the node or edge they belong to, which is visited first. Extend {@link DefaultGraphVisitor}
+ * to implement only the callbacks of interest.
+ * </p>
+ * @author bskarin
+ *
+ */
+public interface GraphVisitor {
+
+	/**
+	 * The graph header and attribute declarations, before the first node or edge.
+	 * @param header graph attributes and attribute lists, without elements
+	 */
+	void visitGraph(GraphData header);
+
+	/**
+	 * @param node reused for every node
+	 */
+	void visitNode(GraphElementEvent node);
+
+	/**
+	 * @param edge reused for every edge
+	 */
+	void visitEdge(GraphElementEvent edge);
+
+	/**
+	 * @param spell reused for every spell
+	 */
+	void visitSpell(GraphSpellEvent spell);
+
+	/**
+	 * @param value reused for every attribute value
+	 */
+	void visitAttvalue(GraphValueEvent value);
+
+	/**
+	 * Checked before every parser event, so a visitor can stop the scan early.
+	 * @return true if no more of the document is needed
+	 */
+	boolean isDone();
+}
@@ -4,11 +4,11 @@
  */
 package com.jgexf.gexf.util;
 
-import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
 import com.jgexf.gexf.GraphData;
 
@@ -24,11 +24,21 @@ public class GraphWriter {
 	 * @param gd
 	 */
 	public static void writeToFile(String fileName, GraphData gd){
-		BufferedWriter out = null;
+		writeToFile(fileName, gd, null);
+	}
+	
+	/**
+	 * Write {@link GraphData} to file, rendering nodes and edges in parallel on the given pool.
+	 * Files ending in .gz are gzip compressed, see {@link #openWriter(String, ForkJoinPool)}.
+	 * @param fileName
+	 * @param gd
+	 * @param pool pool to render on (e.g. {@link ForkJoinPool#commonPool()}), or null for a single thread
+	 */
+	public static void writeToFile(String fileName, GraphData gd, ForkJoinPool pool){
+		Writer out = null;
 		try {
-			FileOutputStream fstream = new FileOutputStream(fileName);
-			out = new BufferedWriter(new OutputStreamWriter(fstream, "UTF-8"));
-			gd.toXML(out);
+			out = openWriter(fileName, pool);
+			gd.toXML(out, pool);
 			out.close();
 			System.out.println("GEXF written to file: "+ fileName);
 		} catch (Exception e){
@@ -41,24 +51,29 @@ public class GraphWriter {
 	}
 
 	/**
-	 * Format text to be written in XML by escaping predefined entitites and converting to UTF-8.
+	 * Open a buffered UTF-8 writer on a file, encoding through a {@link Utf8ChannelWriter}. If the name ends in .gz
+	 * the output is gzip compressed in blocks on the given pool (or the common pool if null) with {@link ParallelGzipOutputStream}.
+	 * @param fileName
+	 * @param pool pool to compress on, or null for the common pool
+	 * @return writer, to be closed by the caller
+	 * @throws IOException
+	 */
+	public static Writer openWriter(String fileName, ForkJoinPool pool) throws IOException {
+		if(fileName.endsWith(".gz")) {
+			return new Utf8ChannelWriter(new ParallelGzipOutputStream(new FileOutputStream(fileName), 
+					(pool == null ? ForkJoinPool.commonPool() : pool),
+					ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION));
+		}
+		return Utf8ChannelWriter.open(fileName);
+	}
+
+	/**
+	 * Format text to be written in XML by dropping newlines and escaping predefined entitites.
+	 * When writing to a stream prefer {@link XMLEscaper#write(java.io.Writer, String)}, which avoids the copy.
 	 * @param text text to be cleaned
-	 * @return clean text
+	 * @return clean text (the same instance if nothing needed escaping)
 	 */
 	public static String cleanText(String text) {
-		String cleanText = text.replace("\n", "");
-		cleanText = cleanText.replace("&", "&amp;");
-		cleanText = cleanText.replace("\"","&quot;");
-		cleanText = cleanText.replace("'","&apos;");
-		cleanText = cleanText.replace("<","&lt;");
-		cleanText = cleanText.replace(">","&gt;");
-		// attempt to convert text to UTF-8
-		try {
-			byte[] utf8bytes = cleanText.getBytes("UTF8");
-			cleanText = new String(utf8bytes, "UTF8");
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		}
-		return cleanText;
+		return XMLEscaper.escape(text);
 	}
 }
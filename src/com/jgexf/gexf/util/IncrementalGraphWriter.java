@@ -0,0 +1,146 @@
+package com.jgexf.gexf.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphElement;
+import com.jgexf.gexf.GraphNode;
+
+/**
+ * Writes a GEXF file element by element while the graph is still being built, so nodes and
+ * edges the caller knows to be finished can be dropped from memory.
+ * <p>
+ * Nodes and edges are spooled to two temporary files as they are handed over. {@link #finish(GraphData, String)}
+ * then writes the header (which may depend on the whole build, e.g. the graph start time), the spooled
+ * sections with their final counts and whatever elements are still in the graph.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class IncrementalGraphWriter implements Closeable {
+
+	private final File nodeSpool;
+	private final File edgeSpool;
+	private Utf8ChannelWriter nodeOut;
+	private Utf8ChannelWriter edgeOut;
+	private int nodeCount = 0;
+	private int edgeCount = 0;
+
+	/**
+	 * Spool to the system temporary directory.
+	 * @throws IOException
+	 */
+	public IncrementalGraphWriter() throws IOException {
+		this(null);
+	}
+
+	/**
+	 * @param spoolDirectory where to keep the temporary sections, e.g. next to the output; null for the system default
+	 * @throws IOException
+	 */
+	public IncrementalGraphWriter(File spoolDirectory) throws IOException {
+		nodeSpool = File.createTempFile("jgexf-nodes", ".part", spoolDirectory);
+		edgeSpool = File.createTempFile("jgexf-edges", ".part", spoolDirectory);
+		nodeOut = Utf8ChannelWriter.open(nodeSpool.getPath());
+		edgeOut = Utf8ChannelWriter.open(edgeSpool.getPath());
+	}
+
+	/**
+	 * Spool a finished node. It must not change afterwards.
+	 * @param gn
+	 * @throws IOException
+	 */
+	public void writeNode(GraphNode gn) throws IOException {
+		gn.writeXML(nodeOut);
+		nodeCount++;
+	}
+
+	/**
+	 * Spool a finished edge. It must not change afterwards.
+	 * @param ge
+	 * @throws IOException
+	 */
+	public void writeEdge(GraphEdge ge) throws IOException {
+		ge.writeXML(edgeOut);
+		edgeCount++;
+	}
+
+	/**
+	 * @return number of nodes spooled so far
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return number of edges spooled so far
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Write the GEXF file: the graph's header, the spooled nodes followed by the graph's remaining nodes,
+	 * then likewise for edges. Names ending in .gz are gzip compressed. The spool files are deleted.
+	 * @param graph header, attribute lists and any elements not yet spooled
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void finish(GraphData graph, String fileName) throws IOException {
+		nodeOut.close();
+		edgeOut.close();
+		OutputStream target = new FileOutputStream(fileName);
+		if(fileName.endsWith(".gz")) {
+			target = new ParallelGzipOutputStream(target);
+		}
+		Utf8ChannelWriter out = new Utf8ChannelWriter(Channels.newChannel(target));
+		try {
+			graph.writeXMLHeader(out);
+			GraphData.writeXMLSectionStart(out, "nodes", nodeCount + graph.getNodeCount());
+			copySpool(nodeSpool, out, target);
+			for(GraphElement gn : graph.getNodeView()) {
+				gn.writeXML(out);
+			}
+			GraphData.writeXMLSectionEnd(out, "nodes");
+			GraphData.writeXMLSectionStart(out, "edges", edgeCount + graph.getEdgeCount());
+			copySpool(edgeSpool, out, target);
+			for(GraphElement ge : graph.getEdgeView()) {
+				ge.writeXML(out);
+			}
+			GraphData.writeXMLSectionEnd(out, "edges");
+			GraphData.writeXMLFooter(out);
+		} finally {
+			out.close();
+			close();
+		}
+	}
+
+	/**
+	 * Append a spooled section to the output, bypassing the (flushed) writer.
+	 */
+	private static void copySpool(File spool, Utf8ChannelWriter out, OutputStream target) throws IOException {
+		out.flush();
+		Files.copy(spool.toPath(), target);
+	}
+
+	/**
+	 * Discard the spool files without writing the output.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			nodeOut.close();
+			edgeOut.close();
+		} finally {
+			nodeSpool.delete();
+			edgeSpool.delete();
+		}
+	}
+}
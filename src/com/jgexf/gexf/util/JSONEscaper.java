@@ -0,0 +1,109 @@
+package com.jgexf.gexf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Single pass escaping of text written into JSON string literals.
+ * <p>
+ * Quotes, backslashes and control characters are escaped as RFC 8259 requires, along with
+ * U+2028/U+2029 so the output is also safe to embed in JavaScript. Unlike {@link XMLEscaper}
+ * newlines are kept (as \n), since JSON can carry them.
+ * </p>
+ * @author bskarin
+ *
+ */
+public final class JSONEscaper {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private JSONEscaper() {
+
+	}
+
+	/**
+	 * @param text text to be escaped
+	 * @return the escaped text, or the same instance if nothing needed escaping
+	 */
+	public static String escape(String text) {
+		int i = 0;
+		while(i < text.length() && !needsEscape(text.charAt(i))) {
+			i++;
+		}
+		if(i == text.length()) {
+			return text;
+		}
+		StringBuilder buddy = new StringBuilder(text.length() + 16);
+		buddy.append(text, 0, i);
+		for(; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(needsEscape(c)) {
+				buddy.append(replacement(c));
+			}
+			else {
+				buddy.append(c);
+			}
+		}
+		return buddy.toString();
+	}
+
+	/**
+	 * Write text to the sink, escaping as it goes rather than building an escaped copy.
+	 * @param out
+	 * @param text text to be escaped
+	 * @throws IOException
+	 */
+	public static void write(Writer out, String text) throws IOException {
+		int run = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(needsEscape(c)) {
+				out.write(text, run, i - run);
+				out.write(replacement(c));
+				run = i + 1;
+			}
+		}
+		out.write(text, run, text.length() - run);
+	}
+
+	/**
+	 * Write text to the sink as a quoted JSON string, or null if there is none.
+	 * @param out
+	 * @param text
+	 * @throws IOException
+	 */
+	public static void writeString(Writer out, String text) throws IOException {
+		if(text == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		write(out, text);
+		out.write('"');
+	}
+
+	private static boolean needsEscape(char c) {
+		return c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static String replacement(char c) {
+		switch(c) {
+		case '"':
+			return "\\\"";
+		case '\\':
+			return "\\\\";
+		case '\n':
+			return "\\n";
+		case '\r':
+			return "\\r";
+		case '\t':
+			return "\\t";
+		case '\b':
+			return "\\b";
+		case '\f':
+			return "\\f";
+		default:
+			return new String(new char[] {'\\', 'u', HEX[c >> 12], HEX[(c >> 8) & 0xf], HEX[(c >> 4) & 0xf], HEX[c & 0xf]});
+		}
+	}
+}
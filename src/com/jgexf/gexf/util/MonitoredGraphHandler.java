@@ -0,0 +1,114 @@
+package com.jgexf.gexf.util;
+
+/**
+ * Counts the events and elements passing to a handler and checks its {@link GraphParseProgress}
+ * every few thousand events, from {@link #isDone()}, so the parsing loops need no progress code.
+ * For a {@link GraphDataHandler} the elements counted are those it adds to the graph, so elements
+ * dropped by load options are not; for other handlers they are the elements read.
+ * @author bskarin
+ *
+ */
+class MonitoredGraphHandler implements GraphHandler {
+
+	private static final int CHECK_EVENTS = 1 << 12;
+
+	private final GraphHandler handler;
+	private final GraphDataHandler builder; //the handler if it builds a graph, else null
+	private final GraphParseProgress progress;
+	private int nodes = 0;
+	private int edges = 0;
+	private int countdown = CHECK_EVENTS;
+	private boolean stopped = false;
+
+	MonitoredGraphHandler(GraphHandler handler, GraphParseProgress progress) {
+		this.handler = handler;
+		this.builder = (handler instanceof GraphDataHandler ? (GraphDataHandler) handler : null);
+		this.progress = progress;
+	}
+
+	/**
+	 * Send the last sample.
+	 * @throws GraphParseStoppedException if the parse was stopped
+	 */
+	void finish() throws GraphParseStoppedException {
+		progress.addEvents(CHECK_EVENTS - countdown);
+		countdown = CHECK_EVENTS;
+		progress.finish();
+	}
+
+	@Override
+	public void graph(String defaultEdgeType, String timeFormat, String mode, String startTime) {
+		handler.graph(defaultEdgeType, timeFormat, mode, startTime);
+	}
+
+	@Override
+	public void startAttributes(String elementClass, String mode) {
+		handler.startAttributes(elementClass, mode);
+	}
+
+	@Override
+	public void attribute(String id, String title, String type, String dataMode) {
+		handler.attribute(id, title, type, dataMode);
+	}
+
+	@Override
+	public void endAttributes() {
+		handler.endAttributes();
+	}
+
+	@Override
+	public void startNodes() {
+		handler.startNodes();
+	}
+
+	@Override
+	public void startNode(String id, String label, String start, String end) {
+		handler.startNode(id, label, start, end);
+	}
+
+	@Override
+	public void endNode() {
+		handler.endNode();
+		int count = (builder == null ? nodes + 1 : builder.getNodeCount());
+		progress.addNodes(count - nodes);
+		nodes = count;
+	}
+
+	@Override
+	public void startEdges() {
+		handler.startEdges();
+	}
+
+	@Override
+	public void startEdge(String id, String source, String target, String weight, String start, String end) {
+		handler.startEdge(id, source, target, weight, start, end);
+	}
+
+	@Override
+	public void endEdge() {
+		handler.endEdge();
+		int count = (builder == null ? edges + 1 : builder.getEdgeCount());
+		progress.addEdges(count - edges);
+		edges = count;
+	}
+
+	@Override
+	public void spell(String start, String end) {
+		handler.spell(start, end);
+	}
+
+	@Override
+	public void attvalue(String id, String value, String start, String end) {
+		handler.attvalue(id, value, start, end);
+	}
+
+	@Override
+	public boolean isDone() {
+		if(--countdown == 0) {
+			countdown = CHECK_EVENTS;
+			progress.addEvents(CHECK_EVENTS);
+			stopped = progress.check();
+		}
+		return stopped || handler.isDone();
+	}
+}
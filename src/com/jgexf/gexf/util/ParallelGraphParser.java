@@ -0,0 +1,348 @@
+package com.jgexf.gexf.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.jgexf.gexf.GraphAttributeList;
+import com.jgexf.gexf.GraphData;
+import com.jgexf.gexf.GraphEdge;
+import com.jgexf.gexf.GraphNode;
+import com.jgexf.gexf.GraphSchema;
+
+/**
+ * Parses a GEXF file on a fork-join pool by splitting its nodes and edges sections into chunks.
+ * <p>
+ * The file is scanned once, byte by byte, for the section tags and for node/edge start tags
+ * roughly every chunk size bytes, which are safe split points. The header is parsed as usual,
+ * then each chunk is parsed as a small document (the header bytes, the section's start tag,
+ * the chunk and closing tags) by a {@link GraphDataHandler} sharing the header's attribute
+ * schemas. Partial results are merged in file order, so the graph is the same as from
+ * {@link GraphParser#readGEXF(String)}. Only a window of chunks (two per worker) is in flight.
+ * </p>
+ * Gzip files, comments, CDATA, DOCTYPEs and nested (hierarchical) node sections can't be split
+ * safely this way and are parsed on the calling thread instead. The {@link GraphParser#getMonitor() monitor}
+ * is checked after each merged chunk; parse events are not counted.
+ * @author bskarin
+ *
+ */
+public class ParallelGraphParser {
+
+	/**
+	 * Default bytes of a section parsed per task
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	/**
+	 * Parse on the common pool with the default chunk size.
+	 */
+	public ParallelGraphParser() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param pool the pool parsing chunks
+	 * @param chunkSize approximate bytes of a section parsed per task
+	 */
+	public ParallelGraphParser(ForkJoinPool pool, int chunkSize) {
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Read a GEXF file into a {@link GraphData}.
+	 * @param filename
+	 * @return network
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public GraphData read(String filename) throws IOException, XMLStreamException {
+		Layout layout = scan(filename);
+		if(layout == null) {
+			GraphDataHandler handler = new GraphDataHandler();
+			GraphParser.parseGEXF(filename, handler);
+			return handler.getGraphData();
+		}
+
+		//The header as the serial loader reads it
+		GraphDataHandler headerHandler = new GraphDataHandler() {
+			private boolean done = false;
+
+			@Override
+			public void startNodes() {
+				done = true;
+			}
+
+			@Override
+			public boolean isDone() {
+				return done;
+			}
+		};
+		GraphParser.parseGEXF(filename, headerHandler, null);
+		GraphData graphData = headerHandler.getGraphData();
+		GraphSchema nodeSchema = graphData.getSchema(GraphAttributeList.NODE);
+		GraphSchema edgeSchema = graphData.getSchema(GraphAttributeList.EDGE);
+
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		GraphParseMonitor monitor = GraphParser.getMonitor();
+		GraphParseProgress progress = (monitor == null ? null : new GraphParseProgress(monitor, null, file.length()));
+		try {
+			byte[] header = read(file, 0, layout.nodes.tagStart);
+			boolean stopped = parseSection(file, header, layout.nodes, "nodes", graphData, nodeSchema, edgeSchema, progress);
+			if(!stopped && layout.edges != null) {
+				parseSection(file, header, layout.edges, "edges", graphData, nodeSchema, edgeSchema, progress);
+			}
+		} finally {
+			file.close();
+		}
+		if(progress != null) {
+			progress.finish();
+		}
+		return graphData;
+	}
+
+	/**
+	 * Parse the chunks of a section in parallel and add their elements to the graph in order,
+	 * checking the progress (if any) after each chunk.
+	 * @return true if the monitor stopped the parse
+	 */
+	private boolean parseSection(RandomAccessFile file, byte[] header, Section section, String name, GraphData graphData,
+			GraphSchema nodeSchema, GraphSchema edgeSchema, GraphParseProgress progress) throws IOException, XMLStreamException {
+		if(section.splits.isEmpty()) {
+			return false;
+		}
+		byte[] startTag = read(file, section.tagStart, section.contentStart);
+		byte[] endTags = ("</" + name + "></graph></gexf>").getBytes(StandardCharsets.UTF_8);
+		int window = Math.max(2, pool.getParallelism() * 2);
+		ArrayDeque<Future<GraphData>> pending = new ArrayDeque<Future<GraphData>>();
+		ArrayDeque<Long> pendingEnds = new ArrayDeque<Long>();
+		int next = 0;
+		try {
+			while(next < section.splits.size() || !pending.isEmpty()) {
+				//Keep the window full
+				while(next < section.splits.size() && pending.size() < window) {
+					long start = section.splits.get(next);
+					long end = (next + 1 < section.splits.size() ? section.splits.get(next + 1) : section.contentEnd);
+					byte[] chunk = new byte[header.length + startTag.length + (int) (end - start) + endTags.length];
+					System.arraycopy(header, 0, chunk, 0, header.length);
+					System.arraycopy(startTag, 0, chunk, header.length, startTag.length);
+					file.seek(start);
+					file.readFully(chunk, header.length + startTag.length, (int) (end - start));
+					System.arraycopy(endTags, 0, chunk, chunk.length - endTags.length, endTags.length);
+					pending.add(pool.submit(new ChunkTask(chunk, graphData, nodeSchema, edgeSchema)));
+					pendingEnds.add(end);
+					next++;
+				}
+				//Merge the oldest chunk
+				GraphData partial = pending.poll().get();
+				for(GraphNode gn : partial.getNodeView()) {
+					graphData.addNode(gn);
+				}
+				for(GraphEdge ge : partial.getEdgeView()) {
+					graphData.addEdge(ge);
+				}
+				if(progress != null) {
+					progress.setBytesRead(pendingEnds.poll());
+					progress.addNodes(partial.getNodeView().size());
+					progress.addEdges(partial.getEdgeView().size());
+					if(progress.check()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing graph");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof XMLStreamException) {
+				throw (XMLStreamException) e.getCause();
+			}
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to parse graph chunk", e.getCause());
+		} finally {
+			for(Future<GraphData> future : pending) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	private static byte[] read(RandomAccessFile file, long start, long end) throws IOException {
+		byte[] bytes = new byte[(int) (end - start)];
+		file.seek(start);
+		file.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Parses one chunk into a graph holding only its elements.
+	 */
+	private static class ChunkTask implements Callable<GraphData> {
+		private final byte[] chunk;
+		private final GraphData header;
+		private final GraphSchema nodeSchema;
+		private final GraphSchema edgeSchema;
+
+		ChunkTask(byte[] chunk, GraphData header, GraphSchema nodeSchema, GraphSchema edgeSchema) {
+			this.chunk = chunk;
+			this.header = header;
+			this.nodeSchema = nodeSchema;
+			this.edgeSchema = edgeSchema;
+		}
+
+		@Override
+		public GraphData call() throws IOException, XMLStreamException {
+			GraphDataHandler handler = new GraphDataHandler(header, nodeSchema, edgeSchema);
+			GraphParser.parseGEXF(new ByteArrayInputStream(chunk), handler, null);
+			return handler.getGraphData();
+		}
+	}
+
+	/**
+	 * Byte offsets of a section: its start tag, its content and the element starts to split at.
+	 */
+	private static final class Section {
+		long tagStart;
+		long contentStart;
+		long contentEnd;
+		final List<Long> splits = new ArrayList<Long>();
+	}
+
+	private static final class Layout {
+		Section nodes;
+		Section edges;
+	}
+
+	/**
+	 * Find the sections and split points.
+	 * @return the layout, or null if the file has to be parsed serially
+	 */
+	private Layout scan(String filename) throws IOException {
+		InputStream in = new FileInputStream(filename);
+		try {
+			Layout layout = new Layout();
+			byte[] buffer = new byte[1 << 16];
+			byte[] name = new byte[16];
+			int nameLength = -1; //-1 outside a tag name
+			long tagStart = 0;
+			Section section = null; //open section
+			Section startTag = null; //section whose start tag is being read
+			byte quote = 0;
+			byte previous = 0;
+			long position = 0;
+			boolean seenRoot = false;
+			boolean seenGraph = false;
+			int read;
+			while((read = in.read(buffer)) > 0) {
+				if(position == 0 && read > 1 && buffer[0] == (byte) 0x1f && buffer[1] == (byte) 0x8b) {
+					return null; //gzip
+				}
+				for(int i = 0; i < read; i++, position++) {
+					byte b = buffer[i];
+					if(startTag != null) {
+						//Rest of a section start tag, up to a '>' outside quotes
+						if(quote != 0) {
+							if(b == quote) {
+								quote = 0;
+							}
+						}
+						else if(b == '"' || b == '\'') {
+							quote = b;
+						}
+						else if(b == '>') {
+							startTag.contentStart = position + 1;
+							if(previous == '/') {
+								startTag.contentEnd = position + 1; //empty
+							}
+							else {
+								section = startTag;
+								section.splits.add(position + 1);
+							}
+							startTag = null;
+						}
+					}
+					else if(nameLength >= 0) {
+						boolean end = (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '>' || (b == '/' && nameLength > 0));
+						if(!end) {
+							if(nameLength < name.length) {
+								name[nameLength] = b;
+							}
+							nameLength++;
+							if(nameLength == 1 && b == '!') {
+								return null; //comment, CDATA or DOCTYPE
+							}
+						}
+						else {
+							String tag = (nameLength <= name.length ? new String(name, 0, nameLength, StandardCharsets.UTF_8) : "");
+							nameLength = -1;
+							if(tag.equals("gexf")) {
+								seenRoot = true;
+							}
+							else if(tag.equals("graph")) {
+								seenGraph = true;
+							}
+							else if(tag.equals("nodes") || tag.equals("edges")) {
+								boolean nodes = tag.equals("nodes");
+								if(section != null || !seenRoot || !seenGraph || (nodes ? layout.nodes != null : (layout.nodes == null || layout.edges != null))) {
+									return null; //nested, out of order or repeated
+								}
+								startTag = new Section();
+								startTag.tagStart = tagStart;
+								if(nodes) {
+									layout.nodes = startTag;
+								}
+								else {
+									layout.edges = startTag;
+								}
+								if(b == '>') {
+									startTag.contentStart = position + 1;
+									section = startTag;
+									section.splits.add(position + 1);
+									startTag = null;
+								}
+							}
+							else if(section != null && (tag.equals("node") || tag.equals("edge"))) {
+								if(tagStart - section.splits.get(section.splits.size() - 1) >= chunkSize) {
+									section.splits.add(tagStart);
+								}
+							}
+							else if(section != null && (tag.equals("/nodes") || tag.equals("/edges"))) {
+								section.contentEnd = tagStart;
+								section = null;
+							}
+						}
+					}
+					else if(b == '<') {
+						nameLength = 0;
+						tagStart = position;
+					}
+					previous = b;
+				}
+			}
+			if(layout.nodes == null || section != null || startTag != null) {
+				return null;
+			}
+			return layout;
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.jgexf.gexf.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses fixed size blocks on a fork-join pool.
+ * <p>
+ * Every block is written as a complete gzip member and the members are written in order, so the
+ * file is a valid concatenated gzip stream that gunzip and {@link java.util.zip.GZIPInputStream}
+ * read like any other .gz file. As with {@link ParallelWriter} only a bounded window of blocks
+ * is in flight and the block buffers are recycled.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/**
+	 * Default number of uncompressed bytes per gzip member
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final OutputStream out;
+	private final ForkJoinPool pool;
+	private final int blockSize;
+	private final int level;
+	private final int window;
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+	private final ArrayDeque<byte[]> inFlight = new ArrayDeque<byte[]>();
+	private final ArrayDeque<byte[]> buffers = new ArrayDeque<byte[]>();
+	private byte[] block;
+	private int count = 0;
+	private boolean written = false;
+	private boolean closed = false;
+
+	/**
+	 * Compress on the common pool with the default block size and compression level.
+	 * @param out the compressed output
+	 */
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param out the compressed output
+	 * @param pool the pool compressing blocks
+	 * @param blockSize number of uncompressed bytes per gzip member
+	 * @param level deflate compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+	 */
+	public ParallelGzipOutputStream(OutputStream out, ForkJoinPool pool, int blockSize, int level) {
+		this.out = out;
+		this.pool = pool;
+		this.blockSize = blockSize;
+		this.level = level;
+		this.window = Math.max(2, pool.getParallelism() * 2);
+		this.block = new byte[blockSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		block[count++] = (byte) b;
+		if(count == blockSize) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while(len > 0) {
+			int n = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if(count == blockSize) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Compress the current partial block and write out everything compressed so far.
+	 * Each flush ends a gzip member, so callers should flush sparingly.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if(count > 0) {
+			submitBlock();
+		}
+		while(!pending.isEmpty()) {
+			writeOldest();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		try {
+			//An empty file is not valid gzip, so always write at least one member
+			if(count > 0 || !written) {
+				submitBlock();
+			}
+			while(!pending.isEmpty()) {
+				writeOldest();
+			}
+		} finally {
+			closed = true;
+			for(Future<byte[]> future : pending) {
+				future.cancel(false);
+			}
+			out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Hand the current block to the pool and start filling a fresh one.
+	 */
+	private void submitBlock() throws IOException {
+		if(pending.size() >= window) {
+			writeOldest();
+		}
+		pending.add(pool.submit(new BlockTask(block, count, level)));
+		inFlight.add(block);
+		written = true;
+		block = (buffers.isEmpty() ? new byte[blockSize] : buffers.pop());
+		count = 0;
+	}
+
+	/**
+	 * Wait for the oldest block, write its member, then recycle its buffer.
+	 */
+	private void writeOldest() throws IOException {
+		try {
+			out.write(pending.poll().get());
+			buffers.push(inFlight.poll());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to compress block", e.getCause());
+		}
+	}
+
+	/**
+	 * Compresses one block into a complete gzip member.
+	 */
+	private static class BlockTask implements Callable<byte[]> {
+		private final byte[] data;
+		private final int length;
+		private final int level;
+
+		BlockTask(byte[] data, int length, int level) {
+			this.data = data;
+			this.length = length;
+			this.level = level;
+		}
+
+		@Override
+		public byte[] call() throws IOException {
+			ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+			GZIPOutputStream gzip = new GZIPOutputStream(member, 1 << 16) {
+				{
+					def.setLevel(level);
+				}
+			};
+			gzip.write(data, 0, length);
+			gzip.close();
+			return member.toByteArray();
+		}
+	}
+}
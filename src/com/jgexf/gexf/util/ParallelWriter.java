@@ -0,0 +1,123 @@
+package com.jgexf.gexf.util;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a sequence of items on a fork-join pool in fixed size chunks and writes the
+ * chunks to the output in the original order, so the result is identical to rendering
+ * them one after another on the calling thread.
+ * <p>
+ * Only a bounded window of chunks (two per worker) is in flight at a time, and the
+ * chunk buffers are recycled, so memory use does not grow with the size of the graph.
+ * </p>
+ * @author bskarin
+ *
+ * @param <T> the type of item rendered
+ */
+public class ParallelWriter<T> {
+	
+	/**
+	 * Default number of items rendered per task
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+	
+	/**
+	 * Writes one item to a Writer. Implementations are called from several threads at once.
+	 * @param <T>
+	 */
+	public interface Renderer<T> {
+		void render(T item, Writer out) throws IOException;
+	}
+	
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final Renderer<? super T> renderer;
+	
+	/**
+	 * @param pool the pool rendering chunks
+	 * @param chunkSize number of items rendered per task
+	 * @param renderer writes a single item
+	 */
+	public ParallelWriter(ForkJoinPool pool, int chunkSize, Renderer<? super T> renderer) {
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.renderer = renderer;
+	}
+	
+	/**
+	 * Render all items and write them to out in iteration order.
+	 * @param items
+	 * @param out
+	 * @throws IOException if rendering or writing fails
+	 */
+	public void write(Iterable<? extends T> items, Writer out) throws IOException {
+		int window = Math.max(2, pool.getParallelism() * 2);
+		ArrayDeque<Future<CharArrayWriter>> pending = new ArrayDeque<Future<CharArrayWriter>>();
+		ArrayDeque<CharArrayWriter> buffers = new ArrayDeque<CharArrayWriter>();
+		Iterator<? extends T> iter = items.iterator();
+		try {
+			while(iter.hasNext() || !pending.isEmpty()) {
+				//Keep the window full
+				while(iter.hasNext() && pending.size() < window) {
+					Object[] chunk = new Object[chunkSize];
+					int size = 0;
+					while(size < chunkSize && iter.hasNext()) {
+						chunk[size++] = iter.next();
+					}
+					CharArrayWriter buffer = (buffers.isEmpty() ? new CharArrayWriter(chunkSize * 256) : buffers.pop());
+					pending.add(pool.submit(new ChunkTask(chunk, size, buffer)));
+				}
+				//Write the oldest chunk, then recycle its buffer
+				CharArrayWriter buffer = pending.poll().get();
+				buffer.writeTo(out);
+				buffer.reset();
+				buffers.push(buffer);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing graph");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to render graph chunk", e.getCause());
+		} finally {
+			for(Future<CharArrayWriter> future : pending) {
+				future.cancel(false);
+			}
+		}
+	}
+	
+	/**
+	 * Renders one chunk into its buffer.
+	 */
+	private class ChunkTask implements Callable<CharArrayWriter> {
+		private final Object[] chunk;
+		private final int size;
+		private final CharArrayWriter buffer;
+		
+		ChunkTask(Object[] chunk, int size, CharArrayWriter buffer) {
+			this.chunk = chunk;
+			this.size = size;
+			this.buffer = buffer;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public CharArrayWriter call() throws IOException {
+			for(int i = 0; i < size; i++) {
+				renderer.render((T) chunk[i], buffer);
+			}
+			return buffer;
+		}
+	}
+}
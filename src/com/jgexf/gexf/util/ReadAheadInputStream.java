@@ -0,0 +1,185 @@
+package com.jgexf.gexf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream that reads its source on a background thread, a few buffers ahead of the consumer.
+ * <p>
+ * Used to overlap gzip decompression with XML parsing. The background thread stops at the end of the
+ * source, on an error (which is rethrown to the consumer) or when this stream is closed, so streams
+ * that are not read to the end must be closed.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	/**
+	 * Default size of each buffer read ahead
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Default number of buffers read ahead
+	 */
+	public static final int DEFAULT_DEPTH = 4;
+
+	private static final Chunk END = new Chunk(null, -1, null);
+
+	private final InputStream in;
+	private final BlockingQueue<Chunk> filled;
+	private final BlockingQueue<byte[]> free;
+	private final Thread reader;
+	private Chunk current = null;
+	private int pos = 0;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param in the source, read on the background thread
+	 */
+	public ReadAheadInputStream(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * @param in the source, read on the background thread
+	 * @param bufferSize size of each buffer read ahead
+	 * @param depth number of buffers read ahead
+	 */
+	public ReadAheadInputStream(InputStream in, final int bufferSize, int depth) {
+		this.in = in;
+		this.filled = new ArrayBlockingQueue<Chunk>(depth + 1);
+		this.free = new ArrayBlockingQueue<byte[]>(depth + 2);
+		this.reader = new Thread("gexf-read-ahead") {
+			@Override
+			public void run() {
+				fill(bufferSize);
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Background loop, reads the source into buffers until the end, an error or close.
+	 */
+	private void fill(int bufferSize) {
+		try {
+			while(!closed) {
+				byte[] buffer = free.poll();
+				if(buffer == null) {
+					buffer = new byte[bufferSize];
+				}
+				int n = in.read(buffer, 0, bufferSize);
+				if(n < 0) {
+					filled.put(END);
+					return;
+				}
+				if(n > 0) {
+					filled.put(new Chunk(buffer, n, null));
+				}
+			}
+		} catch (IOException e) {
+			try {
+				filled.put(new Chunk(null, -1, e));
+			} catch (InterruptedException ie) {
+				//closed while reporting, nobody is listening
+			}
+		} catch (InterruptedException e) {
+			//closed
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!nextChunk()) {
+			return -1;
+		}
+		return current.data[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!nextChunk()) {
+			return -1;
+		}
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current.data, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (current == null || current == END ? 0 : current.length - pos);
+	}
+
+	/**
+	 * Make sure current has unread bytes.
+	 * @return false at the end of the source
+	 */
+	private boolean nextChunk() throws IOException {
+		if(closed) {
+			throw new IOException("Stream closed");
+		}
+		if(current == END) {
+			return false;
+		}
+		if(current != null && pos < current.length) {
+			return true;
+		}
+		if(current != null) {
+			free.offer(current.data);
+		}
+		try {
+			current = filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading ahead");
+		}
+		pos = 0;
+		if(current.error != null) {
+			IOException error = current.error;
+			current = END;
+			throw error;
+		}
+		return current != END;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		reader.interrupt();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		in.close();
+	}
+
+	/**
+	 * A buffer read from the source, or the error reading it.
+	 */
+	private static class Chunk {
+		final byte[] data;
+		final int length;
+		final IOException error;
+
+		Chunk(byte[] data, int length, IOException error) {
+			this.data = data;
+			this.length = length;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package com.jgexf.gexf.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts between the graph's datetime text forms and epoch milliseconds.
+ * <p>
+ * Built on java.time so a single instance can be shared by any number of threads.
+ * Parsed strings are memoized in a bounded map since campaign data repeats the same
+ * few thousand timestamps over and over. Likewise each distinct instant is only rendered
+ * once; the text is kept in a direct-mapped cache keyed by the epoch milliseconds.
+ * </p>
+ * Accepted input is the Gephi form (yyyy-MM-dd HH:mm:ss, in the codec's zone) and
+ * ISO 8601 with an offset as written to GEXF (yyyy-MM-dd'T'HH:mm:ss.SSSXXX).
+ * 
+ * @author bskarin
+ *
+ */
+public class TimeCodec {
+	
+	/**
+	 * Default number of distinct strings remembered before the cache is reset
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+	
+	private static final DateTimeFormatter DATE_PARSER = DateTimeFormatter.ofPattern("yyyy-M-d H:m:s");
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final DateTimeFormatter XML_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+	
+	private final ZoneId zone;
+	private final int cacheSize;
+	private final ConcurrentHashMap<String, Long> parsed;
+	private final Rendered[] rendered;
+	private final Rendered[] renderedXML;
+	private final int renderShift;
+	
+	/**
+	 * Codec in the system default time zone.
+	 */
+	public TimeCodec() {
+		this(ZoneId.systemDefault(), DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param zone the zone local (non ISO) times are read and written in
+	 * @param cacheSize maximum number of parsed strings to remember, also sizes the render caches (0 disables caching)
+	 */
+	public TimeCodec(ZoneId zone, int cacheSize) {
+		this.zone = zone;
+		this.cacheSize = cacheSize;
+		this.parsed = new ConcurrentHashMap<String, Long>();
+		//render caches are a power of two no smaller than the cache size
+		int bits = (cacheSize > 1 ? 32 - Integer.numberOfLeadingZeros(cacheSize - 1) : 0);
+		this.renderShift = 64 - bits;
+		this.rendered = (cacheSize > 0 ? new Rendered[1 << bits] : null);
+		this.renderedXML = (cacheSize > 0 ? new Rendered[1 << bits] : null);
+	}
+	
+	/**
+	 * Parse a datetime string.
+	 * @param text local (yyyy-MM-dd HH:mm:ss) or ISO 8601 time
+	 * @return epoch milliseconds
+	 * @throws DateTimeParseException if the text is in neither form
+	 */
+	public long parse(String text) {
+		if(cacheSize > 0) {
+			Long millis = parsed.get(text);
+			if(millis != null) {
+				return millis;
+			}
+		}
+		long millis = parseUncached(text);
+		if(cacheSize > 0) {
+			if(parsed.size() >= cacheSize) {
+				parsed.clear();
+			}
+			parsed.put(text, millis);
+		}
+		return millis;
+	}
+	
+	/**
+	 * Parse without consulting the cache.
+	 * @param text
+	 * @return epoch milliseconds
+	 */
+	protected long parseUncached(String text) {
+		if(text.indexOf('T') > 0) {
+			return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+		}
+		return LocalDateTime.parse(text, DATE_PARSER).atZone(zone).toInstant().toEpochMilli();
+	}
+	
+	/**
+	 * @param millis epoch milliseconds
+	 * @return the time as yyyy-MM-dd HH:mm:ss in the codec's zone
+	 */
+	public String format(long millis) {
+		return render(rendered, DATE_FORMATTER, millis);
+	}
+	
+	/**
+	 * @param millis epoch milliseconds
+	 * @return the time in xml format (ISO 8601) in the codec's zone
+	 */
+	public String formatXML(long millis) {
+		return render(renderedXML, XML_DATE_FORMATTER, millis);
+	}
+	
+	/**
+	 * Render an instant, reusing the text from the cache when the slot holds the same instant.
+	 * Slots are replaced with immutable entries so concurrent readers always see a consistent pair.
+	 * @param cache
+	 * @param formatter
+	 * @param millis
+	 * @return the formatted time
+	 */
+	private String render(Rendered[] cache, DateTimeFormatter formatter, long millis) {
+		if(cache == null) {
+			return formatter.format(Instant.ofEpochMilli(millis).atZone(zone));
+		}
+		int slot = (renderShift == 64 ? 0 : (int) ((millis * 0x9E3779B97F4A7C15L) >>> renderShift));
+		Rendered entry = cache[slot];
+		if(entry == null || entry.millis != millis) {
+			entry = new Rendered(millis, formatter.format(Instant.ofEpochMilli(millis).atZone(zone)));
+			cache[slot] = entry;
+		}
+		return entry.text;
+	}
+	
+	/**
+	 * Add calendar days in the codec's zone (so daylight saving shifts keep the wall clock time).
+	 * @param millis epoch milliseconds
+	 * @param days number of days to add
+	 * @return epoch milliseconds
+	 */
+	public long plusDays(long millis, int days) {
+		return Instant.ofEpochMilli(millis).atZone(zone).plusDays(days).toInstant().toEpochMilli();
+	}
+	
+	/**
+	 * @return the zone local times are read and written in
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+	
+	/**
+	 * A rendered instant.
+	 */
+	private static final class Rendered {
+		final long millis;
+		final String text;
+		
+		Rendered(long millis, String text) {
+			this.millis = millis;
+			this.text = text;
+		}
+	}
+}
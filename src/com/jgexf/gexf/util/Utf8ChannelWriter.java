@@ -0,0 +1,215 @@
+package com.jgexf.gexf.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Buffered Writer that encodes UTF-8 by hand straight into a pooled direct {@link ByteBuffer}
+ * and writes it to a channel, skipping the CharsetEncoder and the extra copies of
+ * BufferedWriter/OutputStreamWriter. GEXF and JSON output is nearly all ASCII, which takes
+ * one compare per character here.
+ * <p>
+ * The buffer is only written when full, so on a {@link FileChannel} every write but the last
+ * is a whole buffer (1 MiB by default) at an offset that is a multiple of the buffer size.
+ * Malformed surrogates are written as '?', like OutputStreamWriter does.
+ * Not thread safe; closing returns the buffer to the pool and closes the channel.
+ * </p>
+ * @author bskarin
+ *
+ */
+public class Utf8ChannelWriter extends Writer {
+
+	/**
+	 * Default (and pooled) size of the direct buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	private final WritableByteChannel channel;
+	private ByteBuffer buffer;
+	//chars are encoded into a small heap array and bulk copied into the direct buffer
+	private final byte[] staging = new byte[8192];
+	private int staged = 0;
+	private char highSurrogate = 0;
+
+	/**
+	 * Open a file for writing, replacing any existing content.
+	 * @param fileName
+	 * @return writer on the file's channel
+	 * @throws IOException
+	 */
+	public static Utf8ChannelWriter open(String fileName) throws IOException {
+		return new Utf8ChannelWriter(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * @param out stream to write to, e.g. a {@link ParallelGzipOutputStream}
+	 */
+	public Utf8ChannelWriter(OutputStream out) {
+		this(Channels.newChannel(out));
+	}
+
+	/**
+	 * @param channel channel to write to
+	 */
+	public Utf8ChannelWriter(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param channel channel to write to
+	 * @param bufferSize size of the direct buffer, only buffers of the default size are pooled
+	 */
+	public Utf8ChannelWriter(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		ByteBuffer pooled = (bufferSize == DEFAULT_BUFFER_SIZE ? BUFFER_POOL.poll() : null);
+		this.buffer = (pooled != null ? pooled : ByteBuffer.allocateDirect(Math.max(bufferSize, staging.length)));
+		buffer.clear();
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if(staged > staging.length - 4) {
+			drainStaging();
+		}
+		encode((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		int end = off + len;
+		for(int i = off; i < end; i++) {
+			if(staged > staging.length - 4) {
+				drainStaging();
+			}
+			char c = cbuf[i];
+			if(c < 0x80 && highSurrogate == 0) {
+				staging[staged++] = (byte) c;
+			} else {
+				encode(c);
+			}
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		int end = off + len;
+		for(int i = off; i < end; i++) {
+			if(staged > staging.length - 4) {
+				drainStaging();
+			}
+			char c = str.charAt(i);
+			if(c < 0x80 && highSurrogate == 0) {
+				staging[staged++] = (byte) c;
+			} else {
+				encode(c);
+			}
+		}
+	}
+
+	/**
+	 * Encode one char into staging, which must have room for four bytes.
+	 */
+	private void encode(char c) {
+		if(highSurrogate != 0) {
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if(Character.isLowSurrogate(c)) {
+				int cp = Character.toCodePoint(high, c);
+				staging[staged++] = (byte) (0xf0 | (cp >> 18));
+				staging[staged++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				staging[staged++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				staging[staged++] = (byte) (0x80 | (cp & 0x3f));
+				return;
+			}
+			//a lone high surrogate, its '?' and at most three bytes for c still fit in four
+			staging[staged++] = '?';
+		}
+		if(c < 0x80) {
+			staging[staged++] = (byte) c;
+		} else if(c < 0x800) {
+			staging[staged++] = (byte) (0xc0 | (c >> 6));
+			staging[staged++] = (byte) (0x80 | (c & 0x3f));
+		} else if(Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if(Character.isLowSurrogate(c)) {
+			staging[staged++] = '?';
+		} else {
+			staging[staged++] = (byte) (0xe0 | (c >> 12));
+			staging[staged++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			staging[staged++] = (byte) (0x80 | (c & 0x3f));
+		}
+	}
+
+	/**
+	 * Move staged bytes into the direct buffer, writing the buffer out each time it fills.
+	 */
+	private void drainStaging() throws IOException {
+		int off = 0;
+		while(off < staged) {
+			int n = Math.min(staged - off, buffer.remaining());
+			buffer.put(staging, off, n);
+			off += n;
+			if(!buffer.hasRemaining()) {
+				writeBuffer();
+			}
+		}
+		staged = 0;
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if(buffer == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drainStaging();
+		writeBuffer();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(buffer == null) {
+			return;
+		}
+		try {
+			drainStaging();
+			if(highSurrogate != 0) {
+				highSurrogate = 0;
+				staging[staged++] = '?';
+			}
+			flush();
+		} finally {
+			if(buffer.capacity() == DEFAULT_BUFFER_SIZE) {
+				buffer.clear();
+				BUFFER_POOL.offer(buffer);
+			}
+			buffer = null;
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.jgexf.gexf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single pass escaping of text written into GEXF markup.
+ * <p>
+ * Newlines are dropped and the predefined XML entities (&amp;, &quot;, &apos;, &lt;, &gt;) are escaped.
+ * Text that needs no escaping (nearly all of it) is returned or written untouched, and the escaped
+ * forms of values that do are memoized since the same employers, names, etc. repeat throughout a graph.
+ * </p>
+ * @author bskarin
+ *
+ */
+public final class XMLEscaper {
+	
+	/**
+	 * Number of escaped values remembered before the cache is reset
+	 */
+	private static final int CACHE_SIZE = 1 << 14;
+	
+	private static final ConcurrentHashMap<String, String> escaped = new ConcurrentHashMap<String, String>();
+	
+	private XMLEscaper() {
+		
+	}
+	
+	/**
+	 * @param text text to be escaped
+	 * @return the escaped text, or the same instance if nothing needed escaping
+	 */
+	public static String escape(String text) {
+		int first = indexOfEscape(text);
+		if(first < 0) {
+			return text;
+		}
+		String clean = escaped.get(text);
+		if(clean == null) {
+			StringBuilder buddy = new StringBuilder(text.length() + 16);
+			buddy.append(text, 0, first);
+			for(int i = first; i < text.length(); i++) {
+				char c = text.charAt(i);
+				String replacement = replacement(c);
+				if(replacement != null) {
+					buddy.append(replacement);
+				}
+				else {
+					buddy.append(c);
+				}
+			}
+			clean = buddy.toString();
+			if(escaped.size() >= CACHE_SIZE) {
+				escaped.clear();
+			}
+			escaped.put(text, clean);
+		}
+		return clean;
+	}
+	
+	/**
+	 * Write text to the sink, escaping as it goes rather than building an escaped copy.
+	 * @param out
+	 * @param text text to be escaped
+	 * @throws IOException
+	 */
+	public static void write(Writer out, String text) throws IOException {
+		int run = 0;
+		for(int i = 0; i < text.length(); i++) {
+			String replacement = replacement(text.charAt(i));
+			if(replacement != null) {
+				out.write(text, run, i - run);
+				out.write(replacement);
+				run = i + 1;
+			}
+		}
+		out.write(text, run, text.length() - run);
+	}
+	
+	/**
+	 * @param text
+	 * @return index of the first character needing escaping, or -1
+	 */
+	public static int indexOfEscape(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			if(replacement(text.charAt(i)) != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param c
+	 * @return the text to write in place of c, or null if c is written as is
+	 */
+	private static String replacement(char c) {
+		if(c > '>') {
+			return null;
+		}
+		switch(c) {
+		case '\n':
+			return "";
+		case '&':
+			return "&amp;";
+		case '"':
+			return "&quot;";
+		case '\'':
+			return "&apos;";
+		case '<':
+			return "&lt;";
+		case '>':
+			return "&gt;";
+		default:
+			return null;
+		}
+	}
+}